@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.benchmark;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.config.ApplicationConfig;
+import com.alibaba.dubbo.config.ConsumerConfig;
+import com.alibaba.dubbo.config.ReferenceConfig;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boots a provider and a consumer through {@code DubboxAutoConfiguration} in the current JVM and
+ * connects them directly over the loopback interface, bypassing any registry. Without a registry
+ * the consumer does not get the provider URL, so its {@code serialization} is set on the reference.
+ */
+public abstract class AbstractRoundTripBenchmark {
+
+  private static final String SERIALIZATION_PROPERTY = "spring.dubbo.protocol.serialization";
+
+  private ConfigurableApplicationContext provider;
+
+  private ConfigurableApplicationContext consumer;
+
+  private ReferenceConfig<EchoService> reference;
+
+  protected EchoService start(String protocol, String... providerProperties) throws IOException {
+    return start(protocol, Collections.<String, String>emptyMap(), providerProperties);
+  }
+
+  /**
+   * @param referenceParameters URL parameters of the consumer, e.g. its {@code compression}
+   */
+  protected EchoService start(String protocol, Map<String, String> referenceParameters,
+                              String... providerProperties) throws IOException {
+    int port = freePort();
+
+    List<String> properties = new ArrayList<String>();
+    properties.add("spring.dubbo.application.name=benchmark-provider");
+    properties.add("spring.dubbo.registry.address=N/A");
+    properties.add("spring.dubbo.annotation.package=" + EchoService.class.getPackage().getName() + ".provider");
+    properties.add("spring.dubbo.protocol.name=" + protocol);
+    properties.add("spring.dubbo.protocol.host=127.0.0.1");
+    properties.add("spring.dubbo.protocol.port=" + port);
+    for (String property : providerProperties) {
+      properties.add(property);
+    }
+    provider = new SpringApplicationBuilder(BenchmarkApplication.class)
+      .web(false)
+      .properties(properties.toArray(new String[properties.size()]))
+      .run();
+
+    consumer = new SpringApplicationBuilder(BenchmarkApplication.class)
+      .web(false)
+      .properties(
+        "spring.dubbo.application.name=benchmark-consumer",
+        "spring.dubbo.registry.address=N/A")
+      .run();
+
+    reference = new ReferenceConfig<EchoService>();
+    reference.setApplication(consumer.getBean(ApplicationConfig.class));
+    reference.setConsumer(consumer.getBean(ConsumerConfig.class));
+    reference.setInterface(EchoService.class);
+    reference.setUrl(protocol + "://127.0.0.1:" + port);
+    reference.setTimeout(30000);
+    reference.setRetries(0);
+    reference.setCheck(true);
+    Map<String, String> parameters = new HashMap<String, String>(referenceParameters);
+    String serialization = getProperty(providerProperties, SERIALIZATION_PROPERTY);
+    if (serialization != null && !parameters.containsKey(Constants.SERIALIZATION_KEY)) {
+      parameters.put(Constants.SERIALIZATION_KEY, serialization);
+    }
+    reference.setParameters(parameters);
+    return reference.get();
+  }
+
+  protected void stop() {
+    if (reference != null) {
+      reference.destroy();
+    }
+    if (consumer != null) {
+      consumer.close();
+    }
+    if (provider != null) {
+      provider.close();
+    }
+  }
+
+  private static String getProperty(String[] properties, String name) {
+    for (String property : properties) {
+      if (property.startsWith(name + "=")) {
+        return property.substring(name.length() + 1);
+      }
+    }
+    return null;
+  }
+
+  private static int freePort() throws IOException {
+    ServerSocket socket = new ServerSocket(0);
+    try {
+      return socket.getLocalPort();
+    } finally {
+      socket.close();
+    }
+  }
+}
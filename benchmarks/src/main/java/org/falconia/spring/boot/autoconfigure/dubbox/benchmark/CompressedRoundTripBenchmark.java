@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.benchmark;
+
+import org.falconia.spring.boot.autoconfigure.dubbox.codec.CompressionCodecWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency with {@code spring.dubbo.protocol.compression} per payload size, both ways
+ * compressed. Loopback hides the bandwidth saved, so this shows the latency added by the CPU cost;
+ * see {@link CompressionBenchmark} for the ratio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class CompressedRoundTripBenchmark extends AbstractRoundTripBenchmark {
+
+  @Param({"none", "lz4", "zstd"})
+  public String compression;
+
+  @Param({"8192"})
+  public int threshold;
+
+  @Param({"1024", "10240", "102400", "1048576"})
+  public int payloadSize;
+
+  private EchoService echoService;
+
+  private byte[] payload;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    if ("none".equals(compression)) {
+      echoService = start("dubbo");
+    } else {
+      Map<String, String> parameters = new HashMap<String, String>();
+      parameters.put(CompressionCodecWrapper.COMPRESSION_KEY, compression);
+      parameters.put(CompressionCodecWrapper.THRESHOLD_KEY, String.valueOf(threshold));
+      echoService = start("dubbo", parameters,
+        "spring.dubbo.protocol.compression=" + compression,
+        "spring.dubbo.protocol.compression-threshold=" + threshold);
+    }
+    payload = CompressionBenchmark.records(payloadSize);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    stop();
+  }
+
+  @Benchmark
+  public byte[] echo() {
+    return echoService.echo(payload);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.benchmark;
+
+import org.falconia.spring.boot.autoconfigure.dubbox.codec.Compression;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of each {@link Compression} per payload size, on a payload resembling a serialized list
+ * of records. The compression ratio is reported as the {@code ratio} secondary result, e.g.
+ * {@code java -jar target/benchmarks.jar Compression -p payloadSize=102400}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+  @Param({"lz4", "zstd"})
+  public String compression;
+
+  @Param({"1024", "10240", "102400", "1048576"})
+  public int payloadSize;
+
+  @Param({"3"})
+  public int level;
+
+  private Compression algorithm;
+
+  private byte[] payload;
+
+  private byte[] compressed;
+
+  private byte[] decompressed;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    algorithm = Compression.forName(compression);
+    payload = records(payloadSize);
+    byte[] buffer = new byte[algorithm.maxCompressedLength(payloadSize)];
+    int length = algorithm.compress(payload, buffer, level);
+    compressed = new byte[length];
+    System.arraycopy(buffer, 0, compressed, 0, length);
+    decompressed = new byte[payloadSize];
+  }
+
+  @Benchmark
+  public int compress(Ratio ratio) throws IOException {
+    return algorithm.compress(payload, new byte[algorithm.maxCompressedLength(payload.length)], level);
+  }
+
+  @Benchmark
+  public byte[] decompress(Ratio ratio) throws IOException {
+    algorithm.decompress(compressed, decompressed);
+    return decompressed;
+  }
+
+  /**
+   * Payload size over compressed size, reported by its method since JMH resets counter fields on
+   * every iteration. Event counters are summed over threads, run with one thread.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Ratio {
+
+    private double ratio;
+
+    @Setup(Level.Trial)
+    public void setUp(CompressionBenchmark benchmark) {
+      ratio = (double) benchmark.payloadSize / benchmark.compressed.length;
+    }
+
+    public double ratio() {
+      return ratio;
+    }
+  }
+
+  /**
+   * @return text records of random ids and amounts, compressible as list responses are
+   */
+  static byte[] records(int size) {
+    Random random = new Random(size);
+    StringBuilder builder = new StringBuilder(size + 128);
+    String[] statuses = {"ACTIVE", "SUSPENDED", "CLOSED"};
+    while (builder.length() < size) {
+      int id = random.nextInt(1000000);
+      builder.append("{\"id\":").append(id)
+        .append(",\"name\":\"user-").append(id)
+        .append("\",\"status\":\"").append(statuses[random.nextInt(statuses.length)])
+        .append("\",\"balance\":").append(random.nextInt(100000)).append('.').append(random.nextInt(100))
+        .append("},");
+    }
+    byte[] bytes = builder.toString().getBytes(Charset.forName("UTF-8"));
+    byte[] records = new byte[size];
+    System.arraycopy(bytes, 0, records, 0, size);
+    return records;
+  }
+}
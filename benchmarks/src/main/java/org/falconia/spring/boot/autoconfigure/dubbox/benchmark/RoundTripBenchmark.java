@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider/consumer round-trip over a loopback socket for each combination of the
+ * {@code spring.dubbo.protocol.*} properties we tune in production.
+ *
+ * <p>{@link Mode#SampleTime} reports the p50/p99/p999 latency, {@link Mode#Throughput} the call
+ * rate. Narrow the matrix from the command line, e.g.
+ * {@code java -jar target/benchmarks.jar RoundTrip -p serialization=kryo -p payloadSize=1024 -t 16}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class RoundTripBenchmark extends AbstractRoundTripBenchmark {
+
+  @Param({"dubbo"})
+  public String protocol;
+
+  @Param({"hessian2", "java", "kryo", "fst"})
+  public String serialization;
+
+  @Param({"fixed", "cached", "virtual"})
+  public String threadpool;
+
+  @Param({"all", "message", "execution", "direct"})
+  public String dispatcher;
+
+  @Param({"100", "1024", "10240", "102400", "1048576"})
+  public int payloadSize;
+
+  private EchoService echoService;
+
+  private byte[] payload;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    echoService = start(protocol,
+      "spring.dubbo.protocol.serialization=" + serialization,
+      "spring.dubbo.protocol.threadpool=" + threadpool,
+      "spring.dubbo.protocol.dispatcher=" + dispatcher);
+    payload = new byte[payloadSize];
+    new Random(payloadSize).nextBytes(payload);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    stop();
+  }
+
+  @Benchmark
+  public byte[] echo() {
+    return echoService.echo(payload);
+  }
+}
@@ -20,6 +20,11 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Dubbo properties.
  *
@@ -49,6 +54,21 @@ public class DubboProperties {
   @NestedConfigurationProperty
   private Consumer consumer = new Consumer();
 
+  /**
+   * 按名称(即Bean ID)配置的更多注册中心，服务通过@Service(registry=...)或@Reference(registry=...)选用
+   */
+  private Map<String, Registry> registries = new LinkedHashMap<String, Registry>();
+
+  /**
+   * 按名称(即Bean ID)配置的更多服务协议，服务通过@Service(protocol=...)选用，未配置name时以名称为协议名
+   */
+  private Map<String, Protocol> protocols = new LinkedHashMap<String, Protocol>();
+
+  /**
+   * 服务端隔离的线程池(舱壁)，按名称配置，指定的服务或方法的请求由各自的线程池处理
+   */
+  private Map<String, Bulkhead> bulkheads = new LinkedHashMap<String, Bulkhead>();
+
 
   public Annotation getAnnotation() {
     return annotation;
@@ -78,11 +98,28 @@ public class DubboProperties {
     return consumer;
   }
 
+  public Map<String, Registry> getRegistries() {
+    return registries;
+  }
+
+  public Map<String, Protocol> getProtocols() {
+    return protocols;
+  }
+
+  public Map<String, Bulkhead> getBulkheads() {
+    return bulkheads;
+  }
+
 
   public static class Annotation {
 
     private String annotationPackage;
 
+    /**
+     * 是否使用编译期生成的 META-INF/dubbox.index 代替类路径扫描，默认关闭，索引中没有包内服务时仍然扫描
+     */
+    private Boolean index;
+
     public String getPackage() {
       return annotationPackage;
     }
@@ -90,6 +127,14 @@ public class DubboProperties {
     public void setPackage(String annotationPackage) {
       this.annotationPackage = annotationPackage;
     }
+
+    public Boolean getIndex() {
+      return index;
+    }
+
+    public void setIndex(Boolean index) {
+      this.index = index;
+    }
   }
 
   public static class Application {
@@ -343,6 +388,11 @@ public class DubboProperties {
      */
     private String file;
 
+    /**
+     * 存储文件格式，如：properties/binary，binary为追加写入、启动时内存映射读取的二进制格式
+     */
+    private String fileFormat;
+
     /**
      * 停止时等候完成通知时间
      */
@@ -488,6 +538,14 @@ public class DubboProperties {
       this.file = file;
     }
 
+    public String getFileFormat() {
+      return fileFormat;
+    }
+
+    public void setFileFormat(String fileFormat) {
+      this.fileFormat = fileFormat;
+    }
+
     public Boolean getCheck() {
       return check;
     }
@@ -552,7 +610,7 @@ public class DubboProperties {
     private String contextpath;
 
     /**
-     * 线程池类型
+     * 线程池类型，如：fixed/cached/limited/virtual
      */
     private String threadpool;
 
@@ -581,6 +639,21 @@ public class DubboProperties {
      */
     private String codec;
 
+    /**
+     * 请求与响应的压缩算法，如：lz4/zstd，超过压缩阈值的消息压缩后传输，消费者经注册中心获得
+     */
+    private String compression;
+
+    /**
+     * 压缩阈值（字节），缺省为8192
+     */
+    private Integer compressionThreshold;
+
+    /**
+     * 压缩级别，仅zstd使用，缺省为3
+     */
+    private Integer compressionLevel;
+
     /**
      * 序列化方式
      */
@@ -597,20 +670,45 @@ public class DubboProperties {
     private Integer payload;
 
     /**
-     * 缓存区大小
+     * 缓存区大小，netty4pooled传输时为编码缓存区的初始大小
      */
     private Integer buffer;
 
+    /**
+     * netty4pooled传输的缓存区分配器，如：pooled/unpooled，缺省为pooled
+     */
+    private String allocator;
+
+    /**
+     * netty4pooled传输是否使用直接内存缓存区，缺省为true
+     */
+    private Boolean directBuffer;
+
     /**
      * 心跳间隔
      */
     private Integer heartbeat;
 
+    /**
+     * 是否使用idle信息交换方式，仅客户端在空闲时发送心跳并回收空闲连接，未使用本starter的消费者仍使用header方式
+     */
+    private Boolean idleExchange;
+
+    /**
+     * 空闲连接回收时间（毫秒），使用idle信息交换方式时无请求超过该时间的连接被关闭，下次调用时重新建立，缺省为600000，0为不回收
+     */
+    private Integer idleTimeout;
+
     /**
      * 访问日志
      */
     private String accesslog;
 
+    /**
+     * 异步访问日志文件路径，记录写入环形缓冲后由后台线程批量写入文件，缓冲满时丢弃
+     */
+    private String asyncAccesslog;
+
     /**
      * 网络传输方式
      */
@@ -632,7 +730,7 @@ public class DubboProperties {
     private String networker;
 
     /**
-     * 服务器端实现
+     * 服务器端实现，如：netty/mina/netty4pooled
      */
     private String server;
 
@@ -763,6 +861,30 @@ public class DubboProperties {
       this.codec = codec;
     }
 
+    public String getCompression() {
+      return compression;
+    }
+
+    public void setCompression(String compression) {
+      this.compression = compression;
+    }
+
+    public Integer getCompressionThreshold() {
+      return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(Integer compressionThreshold) {
+      this.compressionThreshold = compressionThreshold;
+    }
+
+    public Integer getCompressionLevel() {
+      return compressionLevel;
+    }
+
+    public void setCompressionLevel(Integer compressionLevel) {
+      this.compressionLevel = compressionLevel;
+    }
+
     public String getSerialization() {
       return serialization;
     }
@@ -795,6 +917,22 @@ public class DubboProperties {
       this.buffer = buffer;
     }
 
+    public String getAllocator() {
+      return allocator;
+    }
+
+    public void setAllocator(String allocator) {
+      this.allocator = allocator;
+    }
+
+    public Boolean getDirectBuffer() {
+      return directBuffer;
+    }
+
+    public void setDirectBuffer(Boolean directBuffer) {
+      this.directBuffer = directBuffer;
+    }
+
     public Integer getHeartbeat() {
       return heartbeat;
     }
@@ -803,6 +941,22 @@ public class DubboProperties {
       this.heartbeat = heartbeat;
     }
 
+    public Boolean getIdleExchange() {
+      return idleExchange;
+    }
+
+    public void setIdleExchange(Boolean idleExchange) {
+      this.idleExchange = idleExchange;
+    }
+
+    public Integer getIdleTimeout() {
+      return idleTimeout;
+    }
+
+    public void setIdleTimeout(Integer idleTimeout) {
+      this.idleTimeout = idleTimeout;
+    }
+
     public String getAccesslog() {
       return accesslog;
     }
@@ -811,6 +965,14 @@ public class DubboProperties {
       this.accesslog = accesslog;
     }
 
+    public String getAsyncAccesslog() {
+      return asyncAccesslog;
+    }
+
+    public void setAsyncAccesslog(String asyncAccesslog) {
+      this.asyncAccesslog = asyncAccesslog;
+    }
+
     public String getTransporter() {
       return transporter;
     }
@@ -942,7 +1104,7 @@ public class DubboProperties {
     private String contextpath;
 
     /**
-     * 线程池类型
+     * 线程池类型，如：fixed/cached/limited/virtual
      */
     private String threadpool;
 
@@ -1041,6 +1203,11 @@ public class DubboProperties {
      */
     private Integer wait;
 
+    /**
+     * 启动时并发暴露服务的线程数，大于1时在上下文刷新后并发暴露
+     */
+    private Integer exportThreads;
+
 
     public String getHost() {
       return host;
@@ -1225,6 +1392,14 @@ public class DubboProperties {
     public void setWait(Integer wait) {
       this.wait = wait;
     }
+
+    public Integer getExportThreads() {
+      return exportThreads;
+    }
+
+    public void setExportThreads(Integer exportThreads) {
+      this.exportThreads = exportThreads;
+    }
   }
 
   public static class Consumer extends AbstractReference {
@@ -1234,6 +1409,46 @@ public class DubboProperties {
      */
     private Boolean isDefault;
 
+    /**
+     * 是否在上下文刷新时并发初始化所有@Reference引用并建立连接，完成后应用才启动完毕
+     */
+    private Boolean warmup;
+
+    /**
+     * 预热引用的并发线程数，默认为CPU核数
+     */
+    private Integer warmupThreads;
+
+    /**
+     * 预热时是否对每个引用发起一次$echo探测调用
+     */
+    private Boolean warmupProbe;
+
+    /**
+     * 是否自动将指向本上下文所暴露服务的@Reference引用改为JVM内调用，默认为true
+     */
+    private Boolean injvmDetect;
+
+    /**
+     * JVM内调用时是否序列化复制参数和返回值，以隔离调用双方，默认按引用传递
+     */
+    private Boolean injvmCopy;
+
+    /**
+     * 是否将@Batch方法的并发调用合并为一次批量方法调用，也可通过引用的batch参数单独设置
+     */
+    private Boolean batch;
+
+    /**
+     * 每批最多合并的调用数，默认为100
+     */
+    private Integer batchSize;
+
+    /**
+     * 合并调用的等待窗口（毫秒），默认为1
+     */
+    private Integer batchWindow;
+
     public Boolean getDefault() {
       return isDefault;
     }
@@ -1241,6 +1456,125 @@ public class DubboProperties {
     public void setDefault(Boolean isDefault) {
       this.isDefault = isDefault;
     }
+
+    public Boolean getWarmup() {
+      return warmup;
+    }
+
+    public void setWarmup(Boolean warmup) {
+      this.warmup = warmup;
+    }
+
+    public Integer getWarmupThreads() {
+      return warmupThreads;
+    }
+
+    public void setWarmupThreads(Integer warmupThreads) {
+      this.warmupThreads = warmupThreads;
+    }
+
+    public Boolean getWarmupProbe() {
+      return warmupProbe;
+    }
+
+    public void setWarmupProbe(Boolean warmupProbe) {
+      this.warmupProbe = warmupProbe;
+    }
+
+    public Boolean getInjvmDetect() {
+      return injvmDetect;
+    }
+
+    public void setInjvmDetect(Boolean injvmDetect) {
+      this.injvmDetect = injvmDetect;
+    }
+
+    public Boolean getInjvmCopy() {
+      return injvmCopy;
+    }
+
+    public void setInjvmCopy(Boolean injvmCopy) {
+      this.injvmCopy = injvmCopy;
+    }
+
+    public Boolean getBatch() {
+      return batch;
+    }
+
+    public void setBatch(Boolean batch) {
+      this.batch = batch;
+    }
+
+    public Integer getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public Integer getBatchWindow() {
+      return batchWindow;
+    }
+
+    public void setBatchWindow(Integer batchWindow) {
+      this.batchWindow = batchWindow;
+    }
+  }
+
+  public static class Bulkhead {
+
+    /**
+     * 服务接口或"接口.方法名"，多个用逗号分隔
+     */
+    private List<String> services = new ArrayList<String>();
+
+    /**
+     * 线程池大小(固定大小)，缺省为10
+     */
+    private Integer threads;
+
+    /**
+     * 线程池队列大小，缺省为0
+     */
+    private Integer queues;
+
+    /**
+     * 是否直接在IO线程中执行，适用于不阻塞的轻量方法，此时忽略threads和queues
+     */
+    private Boolean direct;
+
+    public List<String> getServices() {
+      return services;
+    }
+
+    public void setServices(List<String> services) {
+      this.services = services;
+    }
+
+    public Integer getThreads() {
+      return threads;
+    }
+
+    public void setThreads(Integer threads) {
+      this.threads = threads;
+    }
+
+    public Integer getQueues() {
+      return queues;
+    }
+
+    public void setQueues(Integer queues) {
+      this.queues = queues;
+    }
+
+    public Boolean getDirect() {
+      return direct;
+    }
+
+    public void setDirect(Boolean direct) {
+      this.direct = direct;
+    }
   }
 
   private static class AbstractService extends AbstractInterface {
@@ -1295,6 +1629,11 @@ public class DubboProperties {
      */
     protected String accesslog;
 
+    /**
+     * 异步访问日志文件路径，记录写入环形缓冲后由后台线程批量写入文件，缓冲满时丢弃
+     */
+    protected String asyncAccesslog;
+
     /**
      * 允许执行请求数
      */
@@ -1386,6 +1725,14 @@ public class DubboProperties {
       this.accesslog = accesslog;
     }
 
+    public String getAsyncAccesslog() {
+      return asyncAccesslog;
+    }
+
+    public void setAsyncAccesslog(String asyncAccesslog) {
+      this.asyncAccesslog = asyncAccesslog;
+    }
+
     public Integer getExecutes() {
       return executes;
     }
@@ -1542,7 +1889,17 @@ public class DubboProperties {
     private Integer actives;
 
     /**
-     * 负载均衡
+     * 并发限制算法，如：adaptive，按响应时间自动调整每个方法的并发上限，actives/executes仍为硬上限
+     */
+    private String limiter;
+
+    /**
+     * 是否分块传输InputStream类型的参数和返回值，块大小由参数stream.chunk设置，缺省为65536字节，同时在途的块数由参数stream.window设置，缺省为8
+     */
+    private Boolean stream;
+
+    /**
+     * 负载均衡策略，如：random/roundrobin/leastactive/consistenthash/p2c
      */
     private String loadbalance;
 
@@ -1567,7 +1924,7 @@ public class DubboProperties {
     private String merger;
 
     /**
-     * 服务接口的失败mock实现类名
+     * 结果缓存类型，如：lru/threadlocal/jcache/bounded
      */
     private String cache;
 
@@ -1597,7 +1954,7 @@ public class DubboProperties {
     private String cluster;
 
     /**
-     * 过滤器
+     * 过滤器，多个用逗号分隔，如：-metrics 关闭调用指标采集
      */
     private String filter;
 
@@ -1631,6 +1988,11 @@ public class DubboProperties {
      */
     private String scope;
 
+    /**
+     * 自定义参数，如bounded结果缓存的cache.size/cache.weight/cache.ttl/cache.refresh（毫秒）
+     */
+    private Map<String, String> parameters;
+
 
     public Integer getTimeout() {
       return timeout;
@@ -1656,6 +2018,22 @@ public class DubboProperties {
       this.actives = actives;
     }
 
+    public String getLimiter() {
+      return limiter;
+    }
+
+    public void setLimiter(String limiter) {
+      this.limiter = limiter;
+    }
+
+    public Boolean getStream() {
+      return stream;
+    }
+
+    public void setStream(Boolean stream) {
+      this.stream = stream;
+    }
+
     public String getLoadbalance() {
       return loadbalance;
     }
@@ -1799,5 +2177,13 @@ public class DubboProperties {
     public void setScope(String scope) {
       this.scope = scope;
     }
+
+    public Map<String, String> getParameters() {
+      return parameters;
+    }
+
+    public void setParameters(Map<String, String> parameters) {
+      this.parameters = parameters;
+    }
   }
 }
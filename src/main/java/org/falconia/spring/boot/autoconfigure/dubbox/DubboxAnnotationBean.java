@@ -0,0 +1,785 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.config.ApplicationConfig;
+import com.alibaba.dubbo.config.ConsumerConfig;
+import com.alibaba.dubbo.config.ModuleConfig;
+import com.alibaba.dubbo.config.MonitorConfig;
+import com.alibaba.dubbo.config.ProtocolConfig;
+import com.alibaba.dubbo.config.ProviderConfig;
+import com.alibaba.dubbo.config.ReferenceConfig;
+import com.alibaba.dubbo.config.RegistryConfig;
+import com.alibaba.dubbo.config.ServiceConfig;
+import com.alibaba.dubbo.config.annotation.Reference;
+import com.alibaba.dubbo.config.annotation.Service;
+import com.alibaba.dubbo.config.spring.AnnotationBean;
+import com.alibaba.dubbo.config.spring.ReferenceBean;
+import com.alibaba.dubbo.config.spring.ServiceBean;
+import com.alibaba.dubbo.rpc.service.EchoService;
+import com.alibaba.dubbo.rpc.service.GenericService;
+import org.falconia.spring.boot.autoconfigure.dubbox.async.AsyncFor;
+import org.falconia.spring.boot.autoconfigure.dubbox.async.AsyncReferenceProxy;
+import org.falconia.spring.boot.autoconfigure.dubbox.async.AsyncServiceAdapter;
+import org.falconia.spring.boot.autoconfigure.dubbox.batch.Batch;
+import org.falconia.spring.boot.autoconfigure.dubbox.batch.BatchingProxy;
+import org.falconia.spring.boot.autoconfigure.dubbox.index.ServiceIndex;
+import org.falconia.spring.boot.autoconfigure.dubbox.startup.StartupRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.AnnotationBeanNameGenerator;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@link AnnotationBean} registering the {@code @Service} classes listed in the compile-time
+ * {@link ServiceIndex} instead of scanning the classpath, once the index is enabled. Every class of
+ * the packages must then be compiled with the index processor: only scans when the index lists no
+ * service in the packages, e.g. it comes from a library only.
+ *
+ * <p>With more than one {@link #setExportThreads(int) export thread} the services are exported
+ * once the context is refreshed: one service per protocol first, so each protocol server is bound
+ * before anything is registered, then all remaining services concurrently.
+ *
+ * <p>With {@link #setWarmup(boolean) warm-up} enabled the {@code @Reference} members receive a
+ * proxy and the references are initialized concurrently once the context is refreshed, together
+ * with their connections and an optional {@code $echo} probe. The refresh, and so the application
+ * start, completes only after the warm-up.
+ *
+ * <p>With {@link #setInjvmDetect(boolean) in-JVM detection} a {@code @Reference} to a service whose
+ * {@code @Service} class is defined in the same context is referred in-JVM, skipping the protocol,
+ * unless the reference sets {@code injvm}, {@code url} or {@code generic} itself.
+ *
+ * <p>With {@link #setBatch(boolean) batching}, or the {@code batch} parameter of a reference, the
+ * {@code @Reference} members of an interface with {@link Batch @Batch} methods receive a
+ * {@link BatchingProxy}, shared by all members of the same reference.
+ *
+ * <p>A {@code @Reference} member of an {@link AsyncFor @AsyncFor} interface refers to its service
+ * and receives an {@link AsyncReferenceProxy}, whose methods return a {@code CompletableFuture},
+ * {@code Mono} or {@code Flux}. A {@code @Service} bean implementing such an interface first is
+ * exported as its service, through an {@link AsyncServiceAdapter}.
+ */
+public class DubboxAnnotationBean extends AnnotationBean
+  implements BeanClassLoaderAware, ApplicationListener<ContextRefreshedEvent> {
+
+  private static final long serialVersionUID = 1L;
+
+  private static Logger logger = LoggerFactory.getLogger(DubboxAnnotationBean.class);
+
+  public static final String BATCH_KEY = "batch";
+
+  public static final String BATCH_SIZE_KEY = "batch.size";
+
+  public static final String BATCH_WINDOW_KEY = "batch.window";
+
+  private boolean index;
+
+  private int exportThreads = 1;
+
+  private boolean warmup;
+
+  private int warmupThreads = Runtime.getRuntime().availableProcessors();
+
+  private boolean warmupProbe;
+
+  private boolean injvmDetect = true;
+
+  private boolean batch;
+
+  private int batchSize = 100;
+
+  private int batchWindow = 1;
+
+  private volatile boolean refreshed;
+
+  private String[] annotationPackages;
+
+  private final Set<ServiceConfig<?>> serviceConfigs = new ConcurrentHashSet<ServiceConfig<?>>();
+
+  private final List<ServiceBean<?>> pendingExports = new ArrayList<ServiceBean<?>>();
+
+  private final ConcurrentMap<String, ReferenceBean<?>> referenceConfigs = new ConcurrentHashMap<String, ReferenceBean<?>>();
+
+  private final Set<ReferenceConfig<?>> initializedReferences = new ConcurrentHashSet<ReferenceConfig<?>>();
+
+  private final ConcurrentMap<String, Object> batchingProxies = new ConcurrentHashMap<String, Object>();
+
+  private final List<ReferenceBean<?>> pendingWarmups = new ArrayList<ReferenceBean<?>>();
+
+  private volatile Set<String> localServices;
+
+  private transient ApplicationContext applicationContext;
+
+  private transient ConfigurableListableBeanFactory beanFactory;
+
+  private transient ClassLoader classLoader;
+
+  public boolean isIndex() {
+    return index;
+  }
+
+  public void setIndex(boolean index) {
+    this.index = index;
+  }
+
+  public int getExportThreads() {
+    return exportThreads;
+  }
+
+  public void setExportThreads(int exportThreads) {
+    this.exportThreads = exportThreads;
+  }
+
+  public boolean isWarmup() {
+    return warmup;
+  }
+
+  public void setWarmup(boolean warmup) {
+    this.warmup = warmup;
+  }
+
+  public int getWarmupThreads() {
+    return warmupThreads;
+  }
+
+  public void setWarmupThreads(int warmupThreads) {
+    this.warmupThreads = warmupThreads;
+  }
+
+  public boolean isWarmupProbe() {
+    return warmupProbe;
+  }
+
+  public void setWarmupProbe(boolean warmupProbe) {
+    this.warmupProbe = warmupProbe;
+  }
+
+  public boolean isInjvmDetect() {
+    return injvmDetect;
+  }
+
+  public void setInjvmDetect(boolean injvmDetect) {
+    this.injvmDetect = injvmDetect;
+  }
+
+  public boolean isBatch() {
+    return batch;
+  }
+
+  public void setBatch(boolean batch) {
+    this.batch = batch;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public int getBatchWindow() {
+    return batchWindow;
+  }
+
+  public void setBatchWindow(int batchWindow) {
+    this.batchWindow = batchWindow;
+  }
+
+  @Override
+  public void setPackage(String annotationPackage) {
+    super.setPackage(annotationPackage);
+    this.annotationPackages = StringUtils.hasLength(annotationPackage)
+      ? Constants.COMMA_SPLIT_PATTERN.split(annotationPackage) : null;
+  }
+
+  @Override
+  public void setApplicationContext(ApplicationContext applicationContext) {
+    super.setApplicationContext(applicationContext);
+    this.applicationContext = applicationContext;
+  }
+
+  @Override
+  public void setBeanClassLoader(ClassLoader classLoader) {
+    this.classLoader = classLoader;
+  }
+
+  @Override
+  public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+    this.beanFactory = beanFactory;
+    String annotationPackage = getPackage();
+    if (!StringUtils.hasLength(annotationPackage) || !(beanFactory instanceof BeanDefinitionRegistry)) {
+      return;
+    }
+    long start = System.nanoTime();
+    ServiceIndex serviceIndex = index ? ServiceIndex.load(getClassLoader()) : null;
+    List<String> services = serviceIndex != null ? serviceIndex.getServices(annotationPackages) : null;
+    if (services == null || services.isEmpty()) {
+      logger.info("Dubbox: scanning package {} for @Service classes", annotationPackage);
+      super.postProcessBeanFactory(beanFactory);
+      StartupRecorder.record(StartupRecorder.SCAN, annotationPackage, start);
+      return;
+    }
+
+    logger.info("Dubbox: registering {} @Service classes from {}", services.size(), ServiceIndex.INDEX_LOCATION);
+    registerServices((BeanDefinitionRegistry) beanFactory, services);
+    StartupRecorder.record(StartupRecorder.SCAN, ServiceIndex.INDEX_LOCATION, start);
+  }
+
+  private void registerServices(BeanDefinitionRegistry registry, List<String> classNames) {
+    DefaultResourceLoader resourceLoader = new DefaultResourceLoader(getClassLoader());
+    MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory(resourceLoader);
+    AnnotationBeanNameGenerator beanNameGenerator = new AnnotationBeanNameGenerator();
+    for (String className : classNames) {
+      Resource resource = resourceLoader.getResource(ResourceLoader.CLASSPATH_URL_PREFIX
+        + ClassUtils.convertClassNameToResourcePath(className) + ClassUtils.CLASS_FILE_SUFFIX);
+      if (!resource.exists()) {
+        logger.warn("Dubbox: ignoring stale index entry {}, class not found", className);
+        continue;
+      }
+      try {
+        MetadataReader metadataReader = metadataReaderFactory.getMetadataReader(resource);
+        ScannedGenericBeanDefinition definition = new ScannedGenericBeanDefinition(metadataReader);
+        definition.setResource(resource);
+        definition.setSource(resource);
+        String beanName = beanNameGenerator.generateBeanName(definition, registry);
+        if (registry.containsBeanDefinition(beanName)) {
+          continue;
+        }
+        AnnotationConfigUtils.processCommonDefinitionAnnotations(definition);
+        registry.registerBeanDefinition(beanName, definition);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to read indexed class " + className, e);
+      }
+    }
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+    if (!isMatchPackage(bean)) {
+      return bean;
+    }
+    Service service = bean.getClass().getAnnotation(Service.class);
+    if (service == null) {
+      return bean;
+    }
+    ServiceBean<Object> serviceConfig = createServiceBean(bean, service);
+    serviceConfigs.add(serviceConfig);
+    if (exportThreads > 1) {
+      synchronized (pendingExports) {
+        pendingExports.add(serviceConfig);
+      }
+    } else {
+      export(serviceConfig);
+    }
+    return bean;
+  }
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+    if (!isMatchPackage(bean)) {
+      return bean;
+    }
+    for (Method method : bean.getClass().getMethods()) {
+      String name = method.getName();
+      if (name.length() > 3 && name.startsWith("set") && method.getParameterTypes().length == 1
+        && Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())) {
+        try {
+          Reference reference = method.getAnnotation(Reference.class);
+          if (reference != null) {
+            Object value = refer(reference, method.getParameterTypes()[0]);
+            if (value != null) {
+              method.invoke(bean, value);
+            }
+          }
+        } catch (Throwable e) {
+          logger.error("Failed to init remote service reference at method " + name
+            + " in class " + bean.getClass().getName() + ", cause: " + e.getMessage(), e);
+        }
+      }
+    }
+    for (Field field : bean.getClass().getDeclaredFields()) {
+      try {
+        Reference reference = field.getAnnotation(Reference.class);
+        if (reference != null) {
+          Object value = refer(reference, field.getType());
+          if (value != null) {
+            if (!field.isAccessible()) {
+              field.setAccessible(true);
+            }
+            field.set(bean, value);
+          }
+        }
+      } catch (Throwable e) {
+        logger.error("Failed to init remote service reference at field " + field.getName()
+          + " in class " + bean.getClass().getName() + ", cause: " + e.getMessage(), e);
+      }
+    }
+    return bean;
+  }
+
+  @Override
+  public void onApplicationEvent(ContextRefreshedEvent event) {
+    if (applicationContext == null || event.getApplicationContext() == applicationContext) {
+      exportPending();
+      warmUpPending();
+      refreshed = true;
+    }
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    for (ServiceConfig<?> serviceConfig : serviceConfigs) {
+      try {
+        serviceConfig.unexport();
+      } catch (Throwable e) {
+        logger.error(e.getMessage(), e);
+      }
+    }
+    for (ReferenceConfig<?> referenceConfig : referenceConfigs.values()) {
+      try {
+        referenceConfig.destroy();
+      } catch (Throwable e) {
+        logger.error(e.getMessage(), e);
+      }
+    }
+    super.destroy();
+  }
+
+  private ServiceBean<Object> createServiceBean(Object bean, Service service) {
+    ServiceBean<Object> serviceConfig = new ServiceBean<Object>(service);
+    if (void.class.equals(service.interfaceClass()) && "".equals(service.interfaceName())) {
+      if (bean.getClass().getInterfaces().length > 0) {
+        serviceConfig.setInterface(serviceInterface(bean.getClass().getInterfaces()[0]));
+      } else {
+        throw new IllegalStateException("Failed to export remote service class " + bean.getClass().getName()
+          + ", cause: The @Service undefined interfaceClass or interfaceName, and the service class unimplemented any interfaces.");
+      }
+    }
+    if (applicationContext != null) {
+      serviceConfig.setApplicationContext(applicationContext);
+      if (service.registry().length > 0) {
+        List<RegistryConfig> registryConfigs = new ArrayList<RegistryConfig>();
+        for (String registryId : service.registry()) {
+          if (StringUtils.hasLength(registryId)) {
+            registryConfigs.add(applicationContext.getBean(registryId, RegistryConfig.class));
+          }
+        }
+        serviceConfig.setRegistries(registryConfigs);
+      }
+      if (StringUtils.hasLength(service.provider())) {
+        serviceConfig.setProvider(applicationContext.getBean(service.provider(), ProviderConfig.class));
+      }
+      if (StringUtils.hasLength(service.monitor())) {
+        serviceConfig.setMonitor(applicationContext.getBean(service.monitor(), MonitorConfig.class));
+      }
+      if (StringUtils.hasLength(service.application())) {
+        serviceConfig.setApplication(applicationContext.getBean(service.application(), ApplicationConfig.class));
+      }
+      if (StringUtils.hasLength(service.module())) {
+        serviceConfig.setModule(applicationContext.getBean(service.module(), ModuleConfig.class));
+      }
+      if (service.protocol().length > 0) {
+        List<ProtocolConfig> protocolConfigs = new ArrayList<ProtocolConfig>();
+        for (String protocolId : service.protocol()) {
+          if (StringUtils.hasLength(protocolId)) {
+            protocolConfigs.add(applicationContext.getBean(protocolId, ProtocolConfig.class));
+          }
+        }
+        serviceConfig.setProtocols(protocolConfigs);
+      }
+      try {
+        serviceConfig.afterPropertiesSet();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalStateException(e.getMessage(), e);
+      }
+    }
+    serviceConfig.setRef(serviceRef(serviceConfig, bean));
+    return serviceConfig;
+  }
+
+  private static Class<?> serviceInterface(Class<?> interfaceClass) {
+    AsyncFor asyncFor = interfaceClass.getAnnotation(AsyncFor.class);
+    return asyncFor != null ? asyncFor.value() : interfaceClass;
+  }
+
+  private Object serviceRef(ServiceConfig<Object> serviceConfig, Object bean) {
+    if (bean instanceof GenericService) {
+      return bean;
+    }
+    Class<?> serviceClass = serviceConfig.getInterfaceClass();
+    if (serviceClass.isInstance(bean)) {
+      return bean;
+    }
+    for (Class<?> interfaceClass : ClassUtils.getAllInterfacesForClassAsSet(bean.getClass())) {
+      AsyncFor asyncFor = interfaceClass.getAnnotation(AsyncFor.class);
+      if (asyncFor != null && asyncFor.value() == serviceClass) {
+        return AsyncServiceAdapter.create(interfaceClass, bean, getClassLoader());
+      }
+    }
+    return bean;
+  }
+
+  private Object refer(Reference reference, Class<?> referenceClass) {
+    AsyncFor asyncFor = referenceClass.getAnnotation(AsyncFor.class);
+    if (asyncFor != null) {
+      return AsyncReferenceProxy.create(referenceClass, refer(reference, asyncFor.value()), getClassLoader());
+    }
+    String interfaceName;
+    if (!"".equals(reference.interfaceName())) {
+      interfaceName = reference.interfaceName();
+    } else if (!void.class.equals(reference.interfaceClass())) {
+      interfaceName = reference.interfaceClass().getName();
+    } else if (referenceClass.isInterface()) {
+      interfaceName = referenceClass.getName();
+    } else {
+      throw new IllegalStateException("The @Reference undefined interfaceClass or interfaceName, and the property type "
+        + referenceClass.getName() + " is not a interface.");
+    }
+    String key = reference.group() + "/" + interfaceName + ":" + reference.version();
+    ReferenceBean<?> referenceConfig = referenceConfigs.get(key);
+    if (referenceConfig == null) {
+      referenceConfig = createReferenceBean(reference, referenceClass, injvmDetect && isLocalService(key));
+      if (referenceConfigs.putIfAbsent(key, referenceConfig) == null && warmup && !refreshed) {
+        synchronized (pendingWarmups) {
+          pendingWarmups.add(referenceConfig);
+        }
+      }
+      referenceConfig = referenceConfigs.get(key);
+    }
+    if (!referenceClass.isInterface()) {
+      return get(referenceConfig);
+    }
+    if (isBatch(referenceConfig)) {
+      Object proxy = batchingProxies.get(key);
+      if (proxy == null) {
+        Map<String, String> parameters = referenceConfig.getParameters();
+        int size = getParameter(parameters, BATCH_SIZE_KEY, batchSize);
+        int window = getParameter(parameters, BATCH_WINDOW_KEY, batchWindow);
+        Object target = warmup && !refreshed
+          ? ReferenceProxy.create(referenceConfig, getClassLoader()) : get(referenceConfig);
+        batchingProxies.putIfAbsent(key, BatchingProxy.create(referenceConfig.getInterfaceClass(), target,
+          size, window, getClassLoader()));
+        proxy = batchingProxies.get(key);
+      }
+      return proxy;
+    }
+    if (warmup && !refreshed) {
+      return ReferenceProxy.create(referenceConfig, getClassLoader());
+    }
+    return get(referenceConfig);
+  }
+
+  private Object get(ReferenceConfig<?> referenceConfig) {
+    if (!initializedReferences.add(referenceConfig)) {
+      return referenceConfig.get();
+    }
+    long start = System.nanoTime();
+    try {
+      return referenceConfig.get();
+    } finally {
+      StartupRecorder.record(StartupRecorder.REFERENCE, referenceConfig.getInterface(), start);
+    }
+  }
+
+  private static void export(ServiceConfig<?> serviceConfig) {
+    long start = System.nanoTime();
+    serviceConfig.export();
+    StartupRecorder.record(StartupRecorder.EXPORT, serviceConfig.getInterface(), start);
+  }
+
+  private boolean isBatch(ReferenceConfig<?> referenceConfig) {
+    Map<String, String> parameters = referenceConfig.getParameters();
+    String value = parameters != null ? parameters.get(BATCH_KEY) : null;
+    return value != null ? Boolean.parseBoolean(value) : batch;
+  }
+
+  private static int getParameter(Map<String, String> parameters, String key, int defaultValue) {
+    String value = parameters != null ? parameters.get(key) : null;
+    return StringUtils.hasText(value) ? Integer.parseInt(value.trim()) : defaultValue;
+  }
+
+  @SuppressWarnings("deprecation")
+  private ReferenceBean<Object> createReferenceBean(Reference reference, Class<?> referenceClass, boolean local) {
+    ReferenceBean<Object> referenceConfig = new ReferenceBean<Object>(reference);
+    if (void.class.equals(reference.interfaceClass()) && "".equals(reference.interfaceName())
+      && referenceClass.isInterface()) {
+      referenceConfig.setInterface(referenceClass);
+    }
+    if (local && referenceConfig.isInjvm() == null && !StringUtils.hasLength(reference.url()) && !reference.generic()) {
+      logger.info("Dubbox: referring {} in-JVM, it is exported by this context", referenceConfig.getInterface());
+      referenceConfig.setInjvm(true);
+      // The service may be exported after the reference is created
+      referenceConfig.setCheck(false);
+    }
+    if (applicationContext != null) {
+      referenceConfig.setApplicationContext(applicationContext);
+      if (reference.registry().length > 0) {
+        List<RegistryConfig> registryConfigs = new ArrayList<RegistryConfig>();
+        for (String registryId : reference.registry()) {
+          if (StringUtils.hasLength(registryId)) {
+            registryConfigs.add(applicationContext.getBean(registryId, RegistryConfig.class));
+          }
+        }
+        referenceConfig.setRegistries(registryConfigs);
+      }
+      if (StringUtils.hasLength(reference.consumer())) {
+        referenceConfig.setConsumer(applicationContext.getBean(reference.consumer(), ConsumerConfig.class));
+      }
+      if (StringUtils.hasLength(reference.monitor())) {
+        referenceConfig.setMonitor(applicationContext.getBean(reference.monitor(), MonitorConfig.class));
+      }
+      if (StringUtils.hasLength(reference.application())) {
+        referenceConfig.setApplication(applicationContext.getBean(reference.application(), ApplicationConfig.class));
+      }
+      if (StringUtils.hasLength(reference.module())) {
+        referenceConfig.setModule(applicationContext.getBean(reference.module(), ModuleConfig.class));
+      }
+      try {
+        referenceConfig.afterPropertiesSet();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IllegalStateException(e.getMessage(), e);
+      }
+    }
+    return referenceConfig;
+  }
+
+  private boolean isLocalService(String key) {
+    Set<String> services = localServices;
+    if (services == null) {
+      synchronized (this) {
+        services = localServices;
+        if (services == null) {
+          services = findLocalServices();
+          localServices = services;
+        }
+      }
+    }
+    return services.contains(key);
+  }
+
+  private Set<String> findLocalServices() {
+    Set<String> keys = new HashSet<String>();
+    if (beanFactory == null) {
+      return keys;
+    }
+    for (String beanName : beanFactory.getBeanDefinitionNames()) {
+      String className = beanFactory.getBeanDefinition(beanName).getBeanClassName();
+      if (className == null || !isMatchPackage(className)) {
+        continue;
+      }
+      Class<?> beanClass;
+      try {
+        beanClass = ClassUtils.forName(className, getClassLoader());
+      } catch (Throwable e) {
+        continue;
+      }
+      Service service = beanClass.getAnnotation(Service.class);
+      if (service == null) {
+        continue;
+      }
+      String interfaceName;
+      if (!"".equals(service.interfaceName())) {
+        interfaceName = service.interfaceName();
+      } else if (!void.class.equals(service.interfaceClass())) {
+        interfaceName = service.interfaceClass().getName();
+      } else if (beanClass.getInterfaces().length > 0) {
+        interfaceName = serviceInterface(beanClass.getInterfaces()[0]).getName();
+      } else {
+        continue;
+      }
+      keys.add(service.group() + "/" + interfaceName + ":" + service.version());
+    }
+    return keys;
+  }
+
+  private void warmUpPending() {
+    List<ReferenceBean<?>> references;
+    synchronized (pendingWarmups) {
+      references = new ArrayList<ReferenceBean<?>>(pendingWarmups);
+      pendingWarmups.clear();
+    }
+    if (references.isEmpty()) {
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(warmupThreads, references.size())),
+      new NamedThreadFactory("DubboxWarmup", true));
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (final ReferenceBean<?> referenceConfig : references) {
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            Object proxy;
+            try {
+              proxy = get(referenceConfig);
+            } catch (RuntimeException e) {
+              // A failed ReferenceConfig stays uninitialized for good, the refresh fails like with check
+              throw new IllegalStateException("Failed to warm up remote service reference "
+                + referenceConfig.getInterface() + ", cause: " + e.getMessage(), e);
+            }
+            if (warmupProbe) {
+              try {
+                ((EchoService) proxy).$echo("OK");
+              } catch (RuntimeException e) {
+                logger.warn("Dubbox: warm-up probe of {} failed: {}", referenceConfig.getInterface(), e.getMessage());
+              }
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while warming up references", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof RuntimeException
+        ? (RuntimeException) cause : new IllegalStateException(cause.getMessage(), cause);
+    } finally {
+      executor.shutdown();
+    }
+    logger.info("Dubbox: warmed up {} references in {} ms", references.size(), System.currentTimeMillis() - start);
+  }
+
+  private void exportPending() {
+    List<ServiceBean<?>> services;
+    synchronized (pendingExports) {
+      services = new ArrayList<ServiceBean<?>>(pendingExports);
+      pendingExports.clear();
+    }
+    if (services.isEmpty()) {
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    // Opening a protocol server is not thread-safe, so bind every protocol with a serial export
+    Set<String> boundProtocols = new HashSet<String>();
+    List<ServiceBean<?>> concurrent = new ArrayList<ServiceBean<?>>();
+    for (ServiceBean<?> serviceConfig : services) {
+      if (boundProtocols.addAll(getProtocolKeys(serviceConfig))) {
+        export(serviceConfig);
+      } else {
+        concurrent.add(serviceConfig);
+      }
+    }
+
+    if (!concurrent.isEmpty()) {
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(exportThreads, concurrent.size()),
+        new NamedThreadFactory("DubboxExporter", true));
+      try {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final ServiceBean<?> serviceConfig : concurrent) {
+          futures.add(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+              export(serviceConfig);
+            }
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while exporting services", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        throw cause instanceof RuntimeException
+          ? (RuntimeException) cause : new IllegalStateException(cause.getMessage(), cause);
+      } finally {
+        executor.shutdown();
+      }
+    }
+    logger.info("Dubbox: exported {} services in {} ms, {} of them concurrently",
+      services.size(), System.currentTimeMillis() - start, concurrent.size());
+  }
+
+  private static Set<String> getProtocolKeys(ServiceConfig<?> serviceConfig) {
+    List<ProtocolConfig> protocols = serviceConfig.getProtocols();
+    if (protocols == null || protocols.isEmpty()) {
+      return Collections.singleton(Constants.DEFAULT_PROTOCOL);
+    }
+    Set<String> keys = new HashSet<String>();
+    for (ProtocolConfig protocol : protocols) {
+      keys.add(protocol.getName() + ":" + protocol.getPort());
+    }
+    return keys;
+  }
+
+  private boolean isMatchPackage(Object bean) {
+    return isMatchPackage(bean.getClass().getName());
+  }
+
+  private boolean isMatchPackage(String beanClassName) {
+    if (annotationPackages == null || annotationPackages.length == 0) {
+      return true;
+    }
+    for (String pkg : annotationPackages) {
+      if (beanClassName.startsWith(pkg)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ClassLoader getClassLoader() {
+    return classLoader != null ? classLoader : ClassUtils.getDefaultClassLoader();
+  }
+}
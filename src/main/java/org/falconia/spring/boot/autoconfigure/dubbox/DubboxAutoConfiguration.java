@@ -16,6 +16,8 @@
 
 package org.falconia.spring.boot.autoconfigure.dubbox;
 
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.config.AbstractMethodConfig;
 import com.alibaba.dubbo.config.ApplicationConfig;
 import com.alibaba.dubbo.config.ConsumerConfig;
 import com.alibaba.dubbo.config.ModuleConfig;
@@ -23,34 +25,103 @@ import com.alibaba.dubbo.config.ProtocolConfig;
 import com.alibaba.dubbo.config.ProviderConfig;
 import com.alibaba.dubbo.config.RegistryConfig;
 import com.alibaba.dubbo.config.spring.AnnotationBean;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Recorder;
+import org.falconia.spring.boot.autoconfigure.dubbox.accesslog.AsyncAccessLogFilter;
+import org.falconia.spring.boot.autoconfigure.dubbox.codec.CompressionCodecWrapper;
+import org.falconia.spring.boot.autoconfigure.dubbox.dispatcher.Bulkhead;
+import org.falconia.spring.boot.autoconfigure.dubbox.dispatcher.BulkheadDispatcher;
+import org.falconia.spring.boot.autoconfigure.dubbox.endpoint.DubboConnectionEndpoint;
+import org.falconia.spring.boot.autoconfigure.dubbox.endpoint.DubboLatencyEndpoint;
+import org.falconia.spring.boot.autoconfigure.dubbox.endpoint.DubboStartupEndpoint;
+import org.falconia.spring.boot.autoconfigure.dubbox.endpoint.DubboThreadPoolEndpoint;
+import org.falconia.spring.boot.autoconfigure.dubbox.exchange.IdleExchangerWrapper;
+import org.falconia.spring.boot.autoconfigure.dubbox.injvm.InjvmCopyFilter;
+import org.falconia.spring.boot.autoconfigure.dubbox.limit.AdaptiveLimiter;
+import org.falconia.spring.boot.autoconfigure.dubbox.metrics.HdrLatencyMetrics;
+import org.falconia.spring.boot.autoconfigure.dubbox.metrics.MicrometerCacheMetrics;
+import org.falconia.spring.boot.autoconfigure.dubbox.metrics.MicrometerInvocationMetrics;
+import org.falconia.spring.boot.autoconfigure.dubbox.metrics.MicrometerLimitMetrics;
+import org.falconia.spring.boot.autoconfigure.dubbox.metrics.MicrometerThreadPoolMetrics;
+import org.falconia.spring.boot.autoconfigure.dubbox.registry.BinaryCacheRegistryFactoryWrapper;
+import org.falconia.spring.boot.autoconfigure.dubbox.startup.StartupTimingPostProcessor;
+import org.falconia.spring.boot.autoconfigure.dubbox.stream.StreamStore;
+import org.falconia.spring.boot.autoconfigure.dubbox.threadpool.ThreadPoolRefresher;
+import org.falconia.spring.boot.autoconfigure.dubbox.transport.Netty4Transporter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.Endpoint;
+import org.springframework.boot.actuate.endpoint.mvc.EndpointMvcAdapter;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @SuppressWarnings("SpringAutowiredFieldsWarningInspection")
 @Configuration
 @ConditionalOnClass(AnnotationBean.class)
 @EnableConfigurationProperties(DubboProperties.class)
+@Import(DubboxConfigRegistrar.class)
+@AutoConfigureAfter(name = "io.micrometer.spring.autoconfigure.MetricsAutoConfiguration")
 public class DubboxAutoConfiguration {
 
   private static Logger logger = LoggerFactory.getLogger(DubboxAutoConfiguration.class);
 
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = DubboxConfigRegistrar.STARTUP_REPORT_KEY, matchIfMissing = true)
+  public static StartupTimingPostProcessor dubboStartupTimingPostProcessor(
+    @Value("${spring.dubbo.startup.slowest:10}") int slowest) {
+    logger.info("Dubbox: 'dubboStartupTimingPostProcessor'");
+    return new StartupTimingPostProcessor(slowest);
+  }
+
   @Bean
   @ConditionalOnMissingBean
   @ConfigurationProperties("spring.dubbo.annotation")
   public AnnotationBean annotationBean(
-    @Value("${spring.dubbo.annotation.package:}") String annotationPackage) {
+    @Value("${spring.dubbo.annotation.package:}") String annotationPackage,
+    @Value("${spring.dubbo.annotation.index:false}") boolean index,
+    Environment environment) {
     logger.info("Dubbox: 'annotationBean' for package: {}", annotationPackage);
-    AnnotationBean bean = new AnnotationBean();
+    RelaxedPropertyResolver provider = new RelaxedPropertyResolver(environment, "spring.dubbo.provider.");
+    DubboxAnnotationBean bean = new DubboxAnnotationBean();
     bean.setPackage(annotationPackage);
+    bean.setIndex(index);
+    bean.setExportThreads(provider.getProperty("export-threads", Integer.class, 1));
+    RelaxedPropertyResolver consumer = new RelaxedPropertyResolver(environment, "spring.dubbo.consumer.");
+    bean.setWarmup(consumer.getProperty("warmup", Boolean.class, false));
+    bean.setWarmupThreads(consumer.getProperty("warmup-threads", Integer.class, bean.getWarmupThreads()));
+    bean.setWarmupProbe(consumer.getProperty("warmup-probe", Boolean.class, false));
+    bean.setInjvmDetect(consumer.getProperty("injvm-detect", Boolean.class, true));
+    bean.setBatch(consumer.getProperty("batch", Boolean.class, false));
+    bean.setBatchSize(consumer.getProperty("batch-size", Integer.class, bean.getBatchSize()));
+    bean.setBatchWindow(consumer.getProperty("batch-window", Integer.class, bean.getBatchWindow()));
     return bean;
   }
 
@@ -76,11 +147,14 @@ public class DubboxAutoConfiguration {
 
   @Bean
   @ConditionalOnMissingBean
+  @Conditional(DefaultRegistryCondition.class)
   @ConfigurationProperties("spring.dubbo.registry")
   public RegistryConfig registryConfig(DubboProperties dubboProperties) {
     String address = dubboProperties.getRegistry().getAddress();
     logger.info("Dubbox: 'registryConfig' witch address: {}", address);
-    return new RegistryConfig(address);
+    RegistryConfig registryConfig = new RegistryConfig(address);
+    configure(registryConfig, dubboProperties.getRegistry());
+    return registryConfig;
   }
 
   @Bean
@@ -90,26 +164,342 @@ public class DubboxAutoConfiguration {
   public ProtocolConfig protocolConfig(DubboProperties dubboProperties) {
     String name = dubboProperties.getProtocol().getName();
     logger.info("Dubbox: 'protocolConfig' witch name: {}", name);
-    return new ProtocolConfig(dubboProperties.getProtocol().getName());
+    ProtocolConfig protocolConfig = new ProtocolConfig(name);
+    // Bound after this method, an explicit 'spring.dubbo.protocol.dispatcher' still wins
+    configure(protocolConfig, dubboProperties.getProtocol(), dubboProperties);
+    return protocolConfig;
   }
 
   @Bean
   @ConditionalOnMissingBean
-  @ConditionalOnBean(ProtocolConfig.class)
-  @ConditionalOnProperty("spring.dubbo.provider")
+  @Conditional(ProviderPropertiesCondition.class)
   @ConfigurationProperties("spring.dubbo.provider")
-  public ProviderConfig providerConfig(ProtocolConfig protocolConfig) {
+  public ProviderConfig providerConfig(ObjectProvider<ProtocolConfig> protocolConfig, DubboProperties dubboProperties) {
     logger.info("Dubbox: 'providerConfig'");
     ProviderConfig providerConfig = new ProviderConfig();
-    providerConfig.setProtocol(protocolConfig);
+    // Services of named protocols only have no default protocol
+    ProtocolConfig defaultProtocol = protocolConfig.getIfUnique();
+    if (defaultProtocol != null) {
+      providerConfig.setProtocol(defaultProtocol);
+    }
+    String limiter = dubboProperties.getProvider().getLimiter();
+    if (StringUtils.hasText(limiter)) {
+      addParameter(providerConfig, AdaptiveLimiter.LIMITER_KEY, limiter);
+    }
+    if (Boolean.TRUE.equals(dubboProperties.getProvider().getStream())) {
+      addParameter(providerConfig, StreamStore.STREAM_KEY, Boolean.TRUE.toString());
+    }
+    String asyncAccesslog = dubboProperties.getProvider().getAsyncAccesslog();
+    if (StringUtils.hasText(asyncAccesslog)) {
+      addParameter(providerConfig, AsyncAccessLogFilter.ACCESSLOG_KEY, asyncAccesslog);
+    }
     return providerConfig;
   }
 
   @Bean
   @ConditionalOnMissingBean
   @ConfigurationProperties("spring.dubbo.consumer")
-  public ConsumerConfig consumerConfig() {
+  public ConsumerConfig consumerConfig(DubboProperties dubboProperties) {
     logger.info("Dubbox: 'consumerConfig'");
-    return new ConsumerConfig();
+    ConsumerConfig consumerConfig = new ConsumerConfig();
+    if (Boolean.TRUE.equals(dubboProperties.getConsumer().getInjvmCopy())) {
+      addParameter(consumerConfig, InjvmCopyFilter.COPY_KEY, Boolean.TRUE.toString());
+    }
+    String limiter = dubboProperties.getConsumer().getLimiter();
+    if (StringUtils.hasText(limiter)) {
+      addParameter(consumerConfig, AdaptiveLimiter.LIMITER_KEY, limiter);
+    }
+    if (Boolean.TRUE.equals(dubboProperties.getConsumer().getStream())) {
+      addParameter(consumerConfig, StreamStore.STREAM_KEY, Boolean.TRUE.toString());
+    }
+    return consumerConfig;
+  }
+
+  private static void addParameter(AbstractMethodConfig config, String key, String value) {
+    Map<String, String> parameters = config.getParameters();
+    if (parameters == null) {
+      parameters = new HashMap<String, String>();
+      config.setParameters(parameters);
+    }
+    parameters.put(key, value);
+  }
+
+  /**
+   * Applies the registry properties that {@link RegistryConfig} does not have.
+   */
+  static void configure(RegistryConfig registryConfig, DubboProperties.Registry registry) {
+    String fileFormat = registry.getFileFormat();
+    if (StringUtils.hasText(fileFormat)) {
+      Map<String, String> parameters = new HashMap<String, String>();
+      if (registryConfig.getParameters() != null) {
+        parameters.putAll(registryConfig.getParameters());
+      }
+      parameters.put(BinaryCacheRegistryFactoryWrapper.FILE_FORMAT_KEY, fileFormat);
+      registryConfig.setParameters(parameters);
+    }
+  }
+
+  /**
+   * Applies the protocol properties that {@link ProtocolConfig} does not have, and the bulkhead
+   * dispatcher unless the protocol has a dispatcher.
+   */
+  static void configure(ProtocolConfig protocolConfig, DubboProperties.Protocol protocol,
+                        DubboProperties dubboProperties) {
+    Map<String, String> parameters = new HashMap<String, String>();
+    if (protocolConfig.getParameters() != null) {
+      parameters.putAll(protocolConfig.getParameters());
+    }
+    String allocator = protocol.getAllocator();
+    if (StringUtils.hasText(allocator)) {
+      parameters.put(Netty4Transporter.ALLOCATOR_KEY, allocator);
+    }
+    Boolean directBuffer = protocol.getDirectBuffer();
+    if (directBuffer != null) {
+      parameters.put(Netty4Transporter.DIRECT_BUFFER_KEY, directBuffer.toString());
+    }
+    String asyncAccesslog = protocol.getAsyncAccesslog();
+    if (StringUtils.hasText(asyncAccesslog)) {
+      parameters.put(AsyncAccessLogFilter.ACCESSLOG_KEY, asyncAccesslog);
+    }
+    String compression = protocol.getCompression();
+    if (StringUtils.hasText(compression)) {
+      parameters.put(CompressionCodecWrapper.COMPRESSION_KEY, compression);
+    }
+    Integer compressionThreshold = protocol.getCompressionThreshold();
+    if (compressionThreshold != null) {
+      parameters.put(CompressionCodecWrapper.THRESHOLD_KEY, compressionThreshold.toString());
+    }
+    Integer compressionLevel = protocol.getCompressionLevel();
+    if (compressionLevel != null) {
+      parameters.put(CompressionCodecWrapper.LEVEL_KEY, compressionLevel.toString());
+    }
+    if (Boolean.TRUE.equals(protocol.getIdleExchange())) {
+      parameters.put(IdleExchangerWrapper.IDLE_EXCHANGE_KEY, Boolean.TRUE.toString());
+    }
+    Integer idleTimeout = protocol.getIdleTimeout();
+    if (idleTimeout != null) {
+      parameters.put(Constants.IDLE_TIMEOUT_KEY, idleTimeout.toString());
+    }
+    if (!parameters.isEmpty()) {
+      protocolConfig.setParameters(parameters);
+    }
+    if (!dubboProperties.getBulkheads().isEmpty() && protocolConfig.getDispatcher() == null) {
+      List<Bulkhead> bulkheads = new ArrayList<Bulkhead>();
+      for (Map.Entry<String, DubboProperties.Bulkhead> entry : dubboProperties.getBulkheads().entrySet()) {
+        DubboProperties.Bulkhead bulkhead = entry.getValue();
+        bulkheads.add(new Bulkhead(entry.getKey(), bulkhead.getServices(),
+          bulkhead.getThreads() == null ? Bulkhead.DEFAULT_THREADS : bulkhead.getThreads(),
+          bulkhead.getQueues() == null ? 0 : bulkhead.getQueues(), Boolean.TRUE.equals(bulkhead.getDirect())));
+      }
+      logger.info("Dubbox: bulkheads {} on protocol {}", dubboProperties.getBulkheads().keySet(),
+        protocolConfig.getName());
+      BulkheadDispatcher.setBulkheads(bulkheads);
+      protocolConfig.setDispatcher(BulkheadDispatcher.NAME);
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(MeterRegistry.class)
+  @ConditionalOnBean(MeterRegistry.class)
+  protected static class MetricsConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public MicrometerInvocationMetrics dubboInvocationMetrics(MeterRegistry meterRegistry) {
+      logger.info("Dubbox: 'dubboInvocationMetrics'");
+      return new MicrometerInvocationMetrics(meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public MicrometerLimitMetrics dubboLimitMetrics(MeterRegistry meterRegistry) {
+      logger.info("Dubbox: 'dubboLimitMetrics'");
+      return new MicrometerLimitMetrics(meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public MicrometerThreadPoolMetrics dubboThreadPoolMetrics(MeterRegistry meterRegistry) {
+      logger.info("Dubbox: 'dubboThreadPoolMetrics'");
+      return new MicrometerThreadPoolMetrics(meterRegistry);
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass({Endpoint.class, Recorder.class})
+  protected static class LatencyEndpointConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public HdrLatencyMetrics dubboLatencyMetrics(
+      @Value("${spring.dubbo.latency.window:60000}") long window,
+      @Value("${spring.dubbo.latency.slots:6}") int slots) {
+      logger.info("Dubbox: 'dubboLatencyMetrics' with window: {}ms", window);
+      return new HdrLatencyMetrics(window, slots);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public DubboLatencyEndpoint dubboLatencyEndpoint(HdrLatencyMetrics latencyMetrics) {
+      logger.info("Dubbox: 'dubboLatencyEndpoint'");
+      return new DubboLatencyEndpoint(latencyMetrics);
+    }
+
+    @Configuration
+    @ConditionalOnClass(EndpointMvcAdapter.class)
+    @ConditionalOnWebApplication
+    protected static class LatencyMvcEndpointConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean(name = "dubboLatencyMvcEndpoint")
+      public EndpointMvcAdapter dubboLatencyMvcEndpoint(DubboLatencyEndpoint latencyEndpoint,
+        @Value("${endpoints.dubbolatency.path:/dubbo/latency}") String path) {
+        EndpointMvcAdapter adapter = new EndpointMvcAdapter(latencyEndpoint);
+        adapter.setPath(path);
+        return adapter;
+      }
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(EnvironmentChangeEvent.class)
+  protected static class ThreadPoolRefreshConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ThreadPoolRefresher dubboThreadPoolRefresher() {
+      logger.info("Dubbox: 'dubboThreadPoolRefresher'");
+      return new ThreadPoolRefresher();
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(Endpoint.class)
+  protected static class ThreadPoolEndpointConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public DubboThreadPoolEndpoint dubboThreadPoolEndpoint() {
+      logger.info("Dubbox: 'dubboThreadPoolEndpoint'");
+      return new DubboThreadPoolEndpoint();
+    }
+
+    @Configuration
+    @ConditionalOnClass(EndpointMvcAdapter.class)
+    @ConditionalOnWebApplication
+    protected static class ThreadPoolMvcEndpointConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean(name = "dubboThreadPoolMvcEndpoint")
+      public EndpointMvcAdapter dubboThreadPoolMvcEndpoint(DubboThreadPoolEndpoint threadPoolEndpoint,
+        @Value("${endpoints.dubbothreadpools.path:/dubbo/threadpools}") String path) {
+        EndpointMvcAdapter adapter = new EndpointMvcAdapter(threadPoolEndpoint);
+        adapter.setPath(path);
+        return adapter;
+      }
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(Endpoint.class)
+  protected static class ConnectionEndpointConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public DubboConnectionEndpoint dubboConnectionEndpoint() {
+      logger.info("Dubbox: 'dubboConnectionEndpoint'");
+      return new DubboConnectionEndpoint();
+    }
+
+    @Configuration
+    @ConditionalOnClass(EndpointMvcAdapter.class)
+    @ConditionalOnWebApplication
+    protected static class ConnectionMvcEndpointConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean(name = "dubboConnectionMvcEndpoint")
+      public EndpointMvcAdapter dubboConnectionMvcEndpoint(DubboConnectionEndpoint connectionEndpoint,
+        @Value("${endpoints.dubboconnections.path:/dubbo/connections}") String path) {
+        EndpointMvcAdapter adapter = new EndpointMvcAdapter(connectionEndpoint);
+        adapter.setPath(path);
+        return adapter;
+      }
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(Endpoint.class)
+  @ConditionalOnProperty(name = DubboxConfigRegistrar.STARTUP_REPORT_KEY, matchIfMissing = true)
+  protected static class StartupEndpointConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public DubboStartupEndpoint dubboStartupEndpoint(StartupTimingPostProcessor startupTiming) {
+      logger.info("Dubbox: 'dubboStartupEndpoint'");
+      return new DubboStartupEndpoint(startupTiming);
+    }
+
+    @Configuration
+    @ConditionalOnClass(EndpointMvcAdapter.class)
+    @ConditionalOnWebApplication
+    protected static class StartupMvcEndpointConfiguration {
+
+      @Bean
+      @ConditionalOnMissingBean(name = "dubboStartupMvcEndpoint")
+      public EndpointMvcAdapter dubboStartupMvcEndpoint(DubboStartupEndpoint startupEndpoint,
+        @Value("${endpoints.dubbostartup.path:/dubbo/startup}") String path) {
+        EndpointMvcAdapter adapter = new EndpointMvcAdapter(startupEndpoint);
+        adapter.setPath(path);
+        return adapter;
+      }
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass({MeterRegistry.class, Caffeine.class})
+  @ConditionalOnBean(MeterRegistry.class)
+  protected static class CacheMetricsConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public MicrometerCacheMetrics dubboCacheMetrics(MeterRegistry meterRegistry) {
+      logger.info("Dubbox: 'dubboCacheMetrics'");
+      return new MicrometerCacheMetrics(meterRegistry);
+    }
+  }
+
+  /**
+   * Matches unless the registries are all named, an address-less default would make Dubbo try a
+   * registry on the local host.
+   */
+  static class DefaultRegistryCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+      Environment environment = context.getEnvironment();
+      if (new RelaxedPropertyResolver(environment, "spring.dubbo.registry.").containsProperty("address")) {
+        return ConditionOutcome.match(ConditionMessage.of("spring.dubbo.registry.address is set"));
+      }
+      if (!new RelaxedPropertyResolver(environment, DubboxConfigRegistrar.REGISTRIES_PREFIX).getSubProperties("").isEmpty()) {
+        return ConditionOutcome.noMatch(ConditionMessage.of("only named registries are set"));
+      }
+      return ConditionOutcome.match(ConditionMessage.of("no named registries are set"));
+    }
+  }
+
+  /**
+   * Matches when {@code spring.dubbo.provider} or any property under it is set.
+   */
+  static class ProviderPropertiesCondition extends SpringBootCondition {
+
+    @Override
+    public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+      Environment environment = context.getEnvironment();
+      if (new RelaxedPropertyResolver(environment, "spring.dubbo.").containsProperty("provider")
+        || !new RelaxedPropertyResolver(environment, "spring.dubbo.provider.").getSubProperties("").isEmpty()) {
+        return ConditionOutcome.match(ConditionMessage.of("spring.dubbo.provider is set"));
+      }
+      return ConditionOutcome.noMatch(ConditionMessage.of("spring.dubbo.provider is not set"));
+    }
   }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox;
+
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.config.ProtocolConfig;
+import com.alibaba.dubbo.config.RegistryConfig;
+import com.alibaba.dubbo.rpc.Protocol;
+import org.falconia.spring.boot.autoconfigure.dubbox.startup.StartupRecorder;
+import org.falconia.spring.boot.autoconfigure.dubbox.threadpool.MonitoredThreadPoolWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.bind.RelaxedDataBinder;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registers a {@link RegistryConfig} for every {@code spring.dubbo.registries.<name>} and a
+ * {@link ProtocolConfig} for every {@code spring.dubbo.protocols.<name>}, with the name as bean ID,
+ * so that {@code @Service} and {@code @Reference} can select them by {@code registry} and
+ * {@code protocol}. A protocol without {@code name} is named after its key.
+ *
+ * <p>The named configs are not autowire candidates, the single {@code registryConfig} and
+ * {@code protocolConfig} stay the ones injected by type. Like any config, one with
+ * {@code default=false} is used only by the services selecting it.
+ *
+ * <p>Also turns the {@link StartupRecorder} on with {@code spring.dubbo.startup.report}, before any
+ * phase of the startup runs.
+ */
+class DubboxConfigRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware {
+
+  private static Logger logger = LoggerFactory.getLogger(DubboxConfigRegistrar.class);
+
+  static final String REGISTRIES_PREFIX = "spring.dubbo.registries.";
+
+  static final String PROTOCOLS_PREFIX = "spring.dubbo.protocols.";
+
+  static final String STARTUP_REPORT_KEY = "spring.dubbo.startup.report";
+
+  private Environment environment;
+
+  @Override
+  public void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
+
+  @Override
+  public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+    StartupRecorder.setEnabled(environment.getProperty(STARTUP_REPORT_KEY, Boolean.class, Boolean.TRUE));
+    for (Map.Entry<String, Map<String, Object>> entry : getNamedProperties(REGISTRIES_PREFIX).entrySet()) {
+      register(registry, entry.getKey(), "registryConfig", entry.getValue());
+    }
+    for (Map.Entry<String, Map<String, Object>> entry : getNamedProperties(PROTOCOLS_PREFIX).entrySet()) {
+      register(registry, entry.getKey(), "protocolConfig", entry.getValue());
+    }
+  }
+
+  static RegistryConfig registryConfig(String name, Map<String, Object> properties, DubboProperties dubboProperties) {
+    RegistryConfig registryConfig = bind(new RegistryConfig(), properties);
+    registryConfig.setId(name);
+    logger.info("Dubbox: registry '{}' witch address: {}", name, registryConfig.getAddress());
+    DubboProperties.Registry registry = dubboProperties.getRegistries().get(name);
+    if (registry != null) {
+      DubboxAutoConfiguration.configure(registryConfig, registry);
+    }
+    return registryConfig;
+  }
+
+  static ProtocolConfig protocolConfig(String name, Map<String, Object> properties, DubboProperties dubboProperties) {
+    ProtocolConfig protocolConfig = bind(new ProtocolConfig(), properties);
+    protocolConfig.setId(name);
+    if (protocolConfig.getName() == null) {
+      protocolConfig.setName(name);
+    }
+    logger.info("Dubbox: protocol '{}' witch name: {}", name, protocolConfig.getName());
+    DubboProperties.Protocol protocol = dubboProperties.getProtocols().get(name);
+    if (protocol != null) {
+      DubboxAutoConfiguration.configure(protocolConfig, protocol, dubboProperties);
+    }
+    // Tells its executor apart for the ThreadPoolRefresher, off the URLs exported
+    int port = protocolPort(protocolConfig);
+    if (port > 0) {
+      MonitoredThreadPoolWrapper.setProtocolId(port, name);
+    }
+    return protocolConfig;
+  }
+
+  /**
+   * @return the port the protocol is exported on, its default one without a port, or -1 if random
+   */
+  private static int protocolPort(ProtocolConfig protocolConfig) {
+    Integer port = protocolConfig.getPort();
+    if (port != null && port != 0) {
+      return port;
+    }
+    ExtensionLoader<Protocol> loader = ExtensionLoader.getExtensionLoader(Protocol.class);
+    return loader.hasExtension(protocolConfig.getName())
+      ? loader.getExtension(protocolConfig.getName()).getDefaultPort() : -1;
+  }
+
+  private void register(BeanDefinitionRegistry registry, String name, String factoryMethod,
+                        Map<String, Object> properties) {
+    if (registry.containsBeanDefinition(name)) {
+      logger.warn("Dubbox: not registering {} '{}', a bean with the same name exists", factoryMethod, name);
+      return;
+    }
+    RootBeanDefinition definition = new RootBeanDefinition(DubboxConfigRegistrar.class);
+    definition.setFactoryMethodName(factoryMethod);
+    definition.getConstructorArgumentValues().addIndexedArgumentValue(0, name);
+    definition.getConstructorArgumentValues().addIndexedArgumentValue(1, properties);
+    // The DubboProperties
+    definition.setAutowireMode(AutowireCapableBeanFactory.AUTOWIRE_CONSTRUCTOR);
+    definition.setAutowireCandidate(false);
+    registry.registerBeanDefinition(name, definition);
+  }
+
+  /**
+   * @return the properties under the prefix by the first segment of their keys
+   */
+  private Map<String, Map<String, Object>> getNamedProperties(String prefix) {
+    Map<String, Object> properties = new RelaxedPropertyResolver(environment, prefix).getSubProperties("");
+    Set<String> names = new LinkedHashSet<String>();
+    for (String key : properties.keySet()) {
+      int index = key.indexOf('.');
+      if (index > 0) {
+        names.add(key.substring(0, index));
+      }
+    }
+    Map<String, Map<String, Object>> namedProperties = new LinkedHashMap<String, Map<String, Object>>();
+    for (String name : names) {
+      namedProperties.put(name, new RelaxedPropertyResolver(environment, prefix + name + ".").getSubProperties(""));
+    }
+    return namedProperties;
+  }
+
+  private static <T> T bind(T target, Map<String, Object> properties) {
+    RelaxedDataBinder binder = new RelaxedDataBinder(target);
+    // The properties of DubboProperties only, applied by DubboxAutoConfiguration.configure
+    binder.setIgnoreUnknownFields(true);
+    binder.bind(new MutablePropertyValues(properties));
+    return target;
+  }
+}
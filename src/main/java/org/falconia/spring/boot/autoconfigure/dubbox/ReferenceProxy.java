@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox;
+
+import com.alibaba.dubbo.config.ReferenceConfig;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.service.EchoService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Stand-in injected for a {@code @Reference} whose initialization is deferred to the warm-up
+ * phase. Calls made before the warm-up initialize the reference on the calling thread. Dubbo marks
+ * a reference initialized before creating its proxy, a reference failing to initialize is not
+ * retried and its calls fail.
+ */
+class ReferenceProxy implements InvocationHandler {
+
+  private final ReferenceConfig<?> referenceConfig;
+
+  private volatile Object target;
+
+  private ReferenceProxy(ReferenceConfig<?> referenceConfig) {
+    this.referenceConfig = referenceConfig;
+  }
+
+  static Object create(ReferenceConfig<?> referenceConfig, ClassLoader classLoader) {
+    Class<?> interfaceClass = referenceConfig.getInterfaceClass();
+    return Proxy.newProxyInstance(classLoader, new Class<?>[]{interfaceClass, EchoService.class},
+      new ReferenceProxy(referenceConfig));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      String name = method.getName();
+      if ("equals".equals(name)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(name)) {
+        return System.identityHashCode(proxy);
+      }
+      if ("toString".equals(name)) {
+        return "Dubbox reference to " + referenceConfig.getInterface();
+      }
+    }
+    try {
+      return method.invoke(getTarget(), args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+  }
+
+  private Object getTarget() {
+    Object current = target;
+    if (current == null) {
+      try {
+        current = referenceConfig.get();
+      } catch (RuntimeException e) {
+        throw failed(e);
+      }
+      if (current == null) {
+        throw failed(null);
+      }
+      target = current;
+    }
+    return current;
+  }
+
+  private RpcException failed(Throwable cause) {
+    return new RpcException("Remote service reference " + referenceConfig.getInterface()
+      + " failed to initialize" + (cause != null ? ", cause: " + cause.getMessage() : ""), cause);
+  }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.accesslog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log file fed through a bounded multi-producer ring buffer of preallocated events. Appending
+ * claims a slot with a single CAS and copies a few references, and never blocks: when the buffer is
+ * full the event is dropped and counted. A writer thread drains the buffer in batches into a
+ * buffered file, and rolls the file over daily to {@code <file>.yyyyMMdd} like the {@code accesslog}
+ * filter.
+ */
+public class AsyncAccessLog {
+
+  private static Logger logger = LoggerFactory.getLogger(AsyncAccessLog.class);
+
+  private static final ConcurrentMap<String, AsyncAccessLog> logs = new ConcurrentHashMap<String, AsyncAccessLog>();
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int WRITE_BUFFER = 64 * 1024;
+
+  private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private static final long DROP_WARN_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread("DubboxAccessLogShutdown") {
+      @Override
+      public void run() {
+        for (AsyncAccessLog log : logs.values()) {
+          log.close();
+        }
+      }
+    });
+  }
+
+  private final File file;
+
+  private final Event[] events;
+
+  private final int mask;
+
+  private final AtomicLong claimed = new AtomicLong();
+
+  private final AtomicLong consumed = new AtomicLong();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final AtomicLong written = new AtomicLong();
+
+  private final Thread writer;
+
+  private volatile boolean closed;
+
+  // Writer thread only
+
+  private final StringBuilder line = new StringBuilder(256);
+
+  private final SimpleDateFormat secondFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+  private final SimpleDateFormat fileFormat = new SimpleDateFormat("yyyyMMdd");
+
+  private long second = -1;
+
+  private String secondText;
+
+  private Writer out;
+
+  private long rollover;
+
+  private long droppedReported;
+
+  private long droppedWarned;
+
+  private AsyncAccessLog(String file, int buffer) {
+    int capacity = Integer.highestOneBit(Math.max(buffer, 2) - 1) << 1;
+    this.file = new File(file);
+    this.events = new Event[capacity];
+    for (int i = 0; i < capacity; i++) {
+      events[i] = new Event();
+    }
+    this.mask = capacity - 1;
+    this.writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        write();
+      }
+    }, "DubboxAccessLogWriter-" + this.file.getName());
+    writer.setDaemon(true);
+  }
+
+  /**
+   * @param file path of the log file
+   * @param buffer capacity of the ring buffer, used only when the log of the file is first created
+   */
+  public static AsyncAccessLog get(String file, int buffer) {
+    AsyncAccessLog log = logs.get(file);
+    if (log == null) {
+      AsyncAccessLog created = new AsyncAccessLog(file, buffer);
+      log = logs.putIfAbsent(file, created);
+      if (log == null) {
+        log = created;
+        logger.info("Dubbox: access log {} with buffer of {} events", file, created.events.length);
+        created.writer.start();
+      }
+    }
+    return log;
+  }
+
+  public static Collection<AsyncAccessLog> getLogs() {
+    return Collections.unmodifiableCollection(new ArrayList<AsyncAccessLog>(logs.values()));
+  }
+
+  public void append(long time, long elapsedNanos, InetSocketAddress remote, InetSocketAddress local, String group,
+                     Class<?> service, String version, String method, Class<?> error) {
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if (sequence - consumed.get() >= events.length) {
+        dropped.incrementAndGet();
+        return;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+    Event event = events[(int) sequence & mask];
+    event.time = time;
+    event.elapsedNanos = elapsedNanos;
+    event.remote = remote;
+    event.local = local;
+    event.group = group;
+    event.service = service;
+    event.version = version;
+    event.method = method;
+    event.error = error;
+    // Publishes the fields to the writer
+    event.sequence = sequence;
+  }
+
+  public String getFile() {
+    return file.getPath();
+  }
+
+  public int getCapacity() {
+    return events.length;
+  }
+
+  public long getWrittenCount() {
+    return written.get();
+  }
+
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Stops the writer after it has written what is in the buffer.
+   */
+  void close() {
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void write() {
+    while (true) {
+      boolean last = closed;
+      int count = drain();
+      if (count == 0) {
+        flush();
+        if (last) {
+          break;
+        }
+        LockSupport.parkNanos(this, IDLE_NANOS);
+      }
+    }
+    try {
+      if (out != null) {
+        out.close();
+      }
+    } catch (IOException e) {
+      logger.error("Dubbox: fail to close access log " + file, e);
+    }
+  }
+
+  private int drain() {
+    long next = consumed.get();
+    int count = 0;
+    Event event = events[(int) next & mask];
+    while (event.sequence == next) {
+      format(event);
+      event.remote = null;
+      event.local = null;
+      event.group = null;
+      event.service = null;
+      event.version = null;
+      event.method = null;
+      event.error = null;
+      next++;
+      count++;
+      // Frees the slots in batches to keep the producers off the counter
+      if ((count & 63) == 0) {
+        consumed.lazySet(next);
+      }
+      event = events[(int) next & mask];
+    }
+    consumed.lazySet(next);
+    written.addAndGet(count);
+    long drops = dropped.get();
+    if (drops != droppedReported) {
+      formatDropped(drops - droppedReported);
+      droppedReported = drops;
+    }
+    return count;
+  }
+
+  private void format(Event event) {
+    StringBuilder line = this.line;
+    line.setLength(0);
+    appendTime(line, event.time);
+    appendAddress(line, event.remote);
+    line.append(" -> ");
+    appendAddress(line, event.local);
+    line.append(" - ");
+    if (event.group != null && event.group.length() > 0) {
+      line.append(event.group).append('/');
+    }
+    line.append(event.service.getName());
+    if (event.version != null && event.version.length() > 0) {
+      line.append(':').append(event.version);
+    }
+    line.append(' ').append(event.method).append(' ');
+    long micros = TimeUnit.NANOSECONDS.toMicros(event.elapsedNanos);
+    line.append(micros / 1000).append('.');
+    long fraction = micros % 1000;
+    if (fraction < 100) {
+      line.append(fraction < 10 ? "00" : "0");
+    }
+    line.append(fraction).append("ms ");
+    line.append(event.error == null ? "OK" : event.error.getName());
+    writeLine(event.time);
+  }
+
+  private void formatDropped(long drops) {
+    long now = System.currentTimeMillis();
+    line.setLength(0);
+    appendTime(line, now);
+    line.append("dropped ").append(drops).append(" events, buffer full");
+    writeLine(now);
+    if (now - droppedWarned >= DROP_WARN_INTERVAL) {
+      logger.warn("Dubbox: access log {} dropped {} events in total, buffer of {} is full", file,
+        dropped.get(), events.length);
+      droppedWarned = now;
+    }
+  }
+
+  private void appendTime(StringBuilder line, long time) {
+    long current = time / 1000;
+    if (current != second) {
+      second = current;
+      secondText = secondFormat.format(new Date(current * 1000));
+    }
+    long millis = time % 1000;
+    line.append('[').append(secondText).append('.');
+    if (millis < 100) {
+      line.append(millis < 10 ? "00" : "0");
+    }
+    line.append(millis).append("] ");
+  }
+
+  private static void appendAddress(StringBuilder line, InetSocketAddress address) {
+    if (address == null) {
+      line.append('-');
+    } else {
+      line.append(address.getAddress() == null ? address.getHostName() : address.getAddress().getHostAddress())
+        .append(':').append(address.getPort());
+    }
+  }
+
+  private void writeLine(long time) {
+    try {
+      if (out == null || time >= rollover) {
+        open(time);
+      }
+      out.append(line).append('\n');
+    } catch (IOException e) {
+      logger.error("Dubbox: fail to write access log " + file, e);
+      closeQuietly();
+    }
+  }
+
+  private void flush() {
+    if (out != null) {
+      try {
+        out.flush();
+      } catch (IOException e) {
+        logger.error("Dubbox: fail to write access log " + file, e);
+        closeQuietly();
+      }
+    }
+  }
+
+  private void open(long time) throws IOException {
+    closeQuietly();
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.exists()) {
+      dir.mkdirs();
+    }
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    calendar.set(Calendar.HOUR_OF_DAY, 0);
+    calendar.set(Calendar.MINUTE, 0);
+    calendar.set(Calendar.SECOND, 0);
+    calendar.set(Calendar.MILLISECOND, 0);
+    long today = calendar.getTimeInMillis();
+    if (file.exists() && file.lastModified() < today) {
+      File archive = new File(file.getAbsolutePath() + "." + fileFormat.format(new Date(file.lastModified())));
+      if (!file.renameTo(archive)) {
+        logger.warn("Dubbox: fail to roll access log {} over to {}", file, archive);
+      }
+    }
+    calendar.add(Calendar.DAY_OF_MONTH, 1);
+    rollover = calendar.getTimeInMillis();
+    out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF_8), WRITE_BUFFER);
+  }
+
+  private void closeQuietly() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        // Reopened on the next line
+      }
+      out = null;
+    }
+  }
+
+  private static class Event {
+
+    private volatile long sequence = -1;
+
+    private long time;
+
+    private long elapsedNanos;
+
+    private InetSocketAddress remote;
+
+    private InetSocketAddress local;
+
+    private String group;
+
+    private Class<?> service;
+
+    private String version;
+
+    private String method;
+
+    private Class<?> error;
+  }
+}
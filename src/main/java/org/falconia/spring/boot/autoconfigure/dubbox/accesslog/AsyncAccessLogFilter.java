@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.accesslog;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+
+/**
+ * Logs provider invocations to the file of the {@code accesslog.async} parameter through an
+ * {@link AsyncAccessLog}. Unlike the {@code accesslog} filter, the invoking thread neither formats
+ * nor waits, and arguments are not logged.
+ */
+@Activate(group = Constants.PROVIDER, value = AsyncAccessLogFilter.ACCESSLOG_KEY)
+public class AsyncAccessLogFilter implements Filter {
+
+  public static final String ACCESSLOG_KEY = "accesslog.async";
+
+  /**
+   * Capacity of the ring buffer of a log file, rounded up to a power of two.
+   */
+  public static final String BUFFER_KEY = "accesslog.async.buffer";
+
+  public static final int DEFAULT_BUFFER = 8192;
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    URL url = invoker.getUrl();
+    String file = url.getParameter(ACCESSLOG_KEY);
+    if (file == null || file.length() == 0) {
+      return invoker.invoke(invocation);
+    }
+    RpcContext context = RpcContext.getContext();
+    long start = System.nanoTime();
+    Class<?> error = null;
+    try {
+      Result result = invoker.invoke(invocation);
+      if (result.hasException()) {
+        error = result.getException().getClass();
+      }
+      return result;
+    } catch (RuntimeException e) {
+      error = e.getClass();
+      throw e;
+    } finally {
+      AsyncAccessLog.get(file, url.getParameter(BUFFER_KEY, DEFAULT_BUFFER)).append(System.currentTimeMillis(),
+        System.nanoTime() - start, context.getRemoteAddress(), context.getLocalAddress(),
+        url.getParameter(Constants.GROUP_KEY), invoker.getInterface(), url.getParameter(Constants.VERSION_KEY),
+        invocation.getMethodName(), error);
+    }
+  }
+}
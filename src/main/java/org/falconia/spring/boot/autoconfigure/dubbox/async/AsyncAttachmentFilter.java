@@ -0,0 +1,45 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.async;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+
+import java.util.Map;
+
+/**
+ * Drops the {@code async} attachment of the consumer before the {@code context} filter copies the
+ * attachments to the {@code RpcContext} of the provider, where it would make the calls of the
+ * provider to other services asynchronous.
+ */
+@Activate(group = Constants.PROVIDER, order = -20000)
+public class AsyncAttachmentFilter implements Filter {
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    Map<String, String> attachments = invocation.getAttachments();
+    if (attachments != null && attachments.containsKey(Constants.ASYNC_KEY)) {
+      attachments.remove(Constants.ASYNC_KEY);
+    }
+    return invoker.invoke(invocation);
+  }
+}
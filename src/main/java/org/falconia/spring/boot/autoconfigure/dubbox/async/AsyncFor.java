@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.async;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an interface whose methods returning {@code CompletableFuture}, {@code CompletionStage} or
+ * {@code Future}, or Reactor {@code Mono} or {@code Flux}, stand for the method of the service
+ * interface with the same parameters, and the same name or the same name without an {@code Async}
+ * suffix. A {@code @Reference} of the interface refers to the service, other methods are called as
+ * they are. A {@code @Service} bean implementing the interface is exported as the service, its
+ * results awaited by the provider. For example:
+ * <pre>
+ * &#64;AsyncFor(UserService.class)
+ * public interface UserServiceAsync extends UserService {
+ *
+ *   CompletableFuture&lt;User&gt; getUserAsync(Long id);
+ *
+ *   Flux&lt;User&gt; listUsersAsync(String group);
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface AsyncFor {
+
+  /**
+   * The service interface.
+   */
+  Class<?> value();
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.async;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.remoting.TimeoutException;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
+import com.alibaba.dubbo.rpc.service.EchoService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Implements an {@link AsyncFor @AsyncFor} interface on a reference of its service. A future method
+ * calls the service method in the {@code async} mode of Dubbo and completes its future from the
+ * response callback, so no thread waits for the response. The future is completed on the thread
+ * receiving the response: dependent stages that block should run on an executor of their own.
+ *
+ * <p>Calls the protocol answers synchronously, such as in-JVM ones, return a completed future.
+ * Calls failing before a request is sent return a failed future. Reactor methods call the service
+ * method on subscription, see {@link ReactorReturnAdapter}.
+ */
+public class AsyncReferenceProxy implements InvocationHandler {
+
+  private final Class<?> interfaceClass;
+
+  private final Object target;
+
+  private final Map<Method, Method> futureMethods;
+
+  private final Map<Method, ReturnAdapter> adapters;
+
+  private AsyncReferenceProxy(Class<?> interfaceClass, Object target, Map<Method, Method> futureMethods,
+                              Map<Method, ReturnAdapter> adapters) {
+    this.interfaceClass = interfaceClass;
+    this.target = target;
+    this.futureMethods = futureMethods;
+    this.adapters = adapters;
+  }
+
+  /**
+   * @param interfaceClass interface annotated with {@link AsyncFor}
+   * @param target reference of the service interface
+   */
+  public static Object create(Class<?> interfaceClass, Object target, ClassLoader classLoader) {
+    AsyncFor asyncFor = interfaceClass.getAnnotation(AsyncFor.class);
+    if (asyncFor == null) {
+      throw new IllegalArgumentException(interfaceClass.getName() + " is not annotated with @AsyncFor");
+    }
+    Class<?> serviceClass = asyncFor.value();
+    Map<Method, Method> futureMethods = new HashMap<Method, Method>();
+    Map<Method, ReturnAdapter> adapters = new HashMap<Method, ReturnAdapter>();
+    for (Method method : interfaceClass.getMethods()) {
+      ReturnAdapter adapter = ReturnAdapter.find(method.getReturnType());
+      if (adapter == null || method.getDeclaringClass().isAssignableFrom(serviceClass)) {
+        continue;
+      }
+      Method serviceMethod = findServiceMethod(serviceClass, method);
+      adapter.check(method.getReturnType(), serviceMethod);
+      futureMethods.put(method, serviceMethod);
+      adapters.put(method, adapter);
+    }
+    return Proxy.newProxyInstance(classLoader, new Class<?>[]{interfaceClass, EchoService.class},
+      new AsyncReferenceProxy(interfaceClass, target, futureMethods, adapters));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      String name = method.getName();
+      if ("equals".equals(name)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(name)) {
+        return System.identityHashCode(proxy);
+      }
+      if ("toString".equals(name)) {
+        return "Dubbox async reference " + interfaceClass.getName() + " to " + target;
+      }
+    }
+    final Method serviceMethod = futureMethods.get(method);
+    if (serviceMethod == null) {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getTargetException();
+      }
+    }
+    final Object[] arguments = args;
+    return adapters.get(method).adapt(new Supplier<CompletableFuture<Object>>() {
+      @Override
+      public CompletableFuture<Object> get() {
+        return invokeAsync(serviceMethod, arguments);
+      }
+    }, serviceMethod);
+  }
+
+  private CompletableFuture<Object> invokeAsync(Method serviceMethod, Object[] args) {
+    final CompletableFuture<Object> result = new CompletableFuture<Object>();
+    RpcContext context = RpcContext.getContext();
+    Object value;
+    Future<?> future;
+    context.setFuture(null);
+    context.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+    try {
+      value = serviceMethod.invoke(target, args);
+      future = context.getFuture();
+    } catch (InvocationTargetException e) {
+      result.completeExceptionally(e.getTargetException());
+      return result;
+    } catch (IllegalAccessException e) {
+      result.completeExceptionally(e);
+      return result;
+    } finally {
+      // Left behind when the call did not reach the consumer filters, e.g. batched or failed
+      context.removeAttachment(Constants.ASYNC_KEY);
+      context.setFuture(null);
+    }
+
+    if (future instanceof FutureAdapter) {
+      ((FutureAdapter<?>) future).getFuture().setCallback(new ResponseCallback() {
+        @Override
+        public void done(Object response) {
+          Result rpcResult = (Result) response;
+          if (rpcResult.hasException()) {
+            result.completeExceptionally(rpcResult.getException());
+          } else {
+            result.complete(rpcResult.getValue());
+          }
+        }
+
+        @Override
+        public void caught(Throwable exception) {
+          result.completeExceptionally(exception instanceof TimeoutException
+            ? new RpcException(RpcException.TIMEOUT_EXCEPTION, exception.getMessage(), exception)
+            : new RpcException(exception.getMessage(), exception));
+        }
+      });
+    } else if (future != null) {
+      // Not a Dubbo protocol future, waits on a pool thread
+      final Future<?> other = future;
+      CompletableFuture.runAsync(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            result.complete(other.get());
+          } catch (ExecutionException e) {
+            result.completeExceptionally(e.getCause());
+          } catch (Throwable t) {
+            result.completeExceptionally(t);
+          }
+        }
+      });
+    } else {
+      result.complete(value);
+    }
+    return result;
+  }
+
+  /**
+   * @throws IllegalStateException if the service interface has no method for the method
+   */
+  static Method findServiceMethod(Class<?> serviceClass, Method method) {
+    String name = method.getName();
+    try {
+      return serviceClass.getMethod(name, method.getParameterTypes());
+    } catch (NoSuchMethodException e) {
+      if (name.endsWith("Async") && name.length() > "Async".length()) {
+        try {
+          return serviceClass.getMethod(name.substring(0, name.length() - "Async".length()),
+            method.getParameterTypes());
+        } catch (NoSuchMethodException ignored) {
+        }
+      }
+    }
+    throw new IllegalStateException("No method of " + serviceClass.getName() + " for " + method
+      + ", expecting the same name, or without Async suffix, and the same parameters");
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.async;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Implements a service interface on a bean implementing an {@link AsyncFor @AsyncFor} interface of
+ * it, to export the bean as the service. A service method with an asynchronous counterpart calls it
+ * and awaits its result on the provider thread, other service methods call the bean as they are.
+ */
+public class AsyncServiceAdapter implements InvocationHandler {
+
+  private final Class<?> serviceClass;
+
+  private final Object bean;
+
+  private final Map<Method, Method> asyncMethods;
+
+  private final Map<Method, ReturnAdapter> adapters;
+
+  private AsyncServiceAdapter(Class<?> serviceClass, Object bean, Map<Method, Method> asyncMethods,
+                              Map<Method, ReturnAdapter> adapters) {
+    this.serviceClass = serviceClass;
+    this.bean = bean;
+    this.asyncMethods = asyncMethods;
+    this.adapters = adapters;
+  }
+
+  /**
+   * @param interfaceClass interface annotated with {@link AsyncFor}, implemented by the bean
+   * @return the service of the bean
+   */
+  public static Object create(Class<?> interfaceClass, Object bean, ClassLoader classLoader) {
+    AsyncFor asyncFor = interfaceClass.getAnnotation(AsyncFor.class);
+    if (asyncFor == null || !interfaceClass.isInstance(bean)) {
+      throw new IllegalArgumentException(bean + " does not implement an interface annotated with @AsyncFor");
+    }
+    Class<?> serviceClass = asyncFor.value();
+    Map<Method, Method> asyncMethods = new HashMap<Method, Method>();
+    Map<Method, ReturnAdapter> adapters = new HashMap<Method, ReturnAdapter>();
+    for (Method method : interfaceClass.getMethods()) {
+      ReturnAdapter adapter = ReturnAdapter.find(method.getReturnType());
+      if (adapter == null || method.getDeclaringClass().isAssignableFrom(serviceClass)) {
+        continue;
+      }
+      Method serviceMethod = AsyncReferenceProxy.findServiceMethod(serviceClass, method);
+      adapter.check(method.getReturnType(), serviceMethod);
+      asyncMethods.put(serviceMethod, method);
+      adapters.put(serviceMethod, adapter);
+    }
+    for (Method serviceMethod : serviceClass.getMethods()) {
+      if (asyncMethods.containsKey(serviceMethod)) {
+        continue;
+      }
+      try {
+        asyncMethods.put(serviceMethod, interfaceClass.getMethod(serviceMethod.getName(),
+          serviceMethod.getParameterTypes()));
+      } catch (NoSuchMethodException e) {
+        throw new IllegalStateException("No method of " + interfaceClass.getName() + " for " + serviceMethod);
+      }
+    }
+    return Proxy.newProxyInstance(classLoader, new Class<?>[]{serviceClass},
+      new AsyncServiceAdapter(serviceClass, bean, asyncMethods, adapters));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    Method asyncMethod = asyncMethods.get(method);
+    if (asyncMethod == null) {
+      if (method.getDeclaringClass() == Object.class && "toString".equals(method.getName())) {
+        return "Dubbox async service " + serviceClass.getName() + " of " + bean;
+      }
+      asyncMethod = method;
+    }
+    Object value;
+    try {
+      value = asyncMethod.invoke(bean, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+    ReturnAdapter adapter = adapters.get(method);
+    return adapter == null ? value : adapter.await(value, method);
+  }
+}
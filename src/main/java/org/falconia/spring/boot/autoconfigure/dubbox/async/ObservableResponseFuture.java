@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.async;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Response future of an asynchronous call calling back any number of callbacks. Dubbo's future
+ * keeps a single callback, the one of the caller would replace the ones of the filters, so the
+ * future in the {@code RpcContext} is replaced by this one once a consumer filter observes the
+ * call with {@link #observe}.
+ */
+public class ObservableResponseFuture implements ResponseFuture {
+
+  private static Logger logger = LoggerFactory.getLogger(ObservableResponseFuture.class);
+
+  private final ResponseFuture future;
+
+  private final List<ResponseCallback> callbacks = new ArrayList<ResponseCallback>(2);
+
+  private boolean completed;
+
+  private Object response;
+
+  private Throwable exception;
+
+  private ObservableResponseFuture(ResponseFuture future) {
+    this.future = future;
+  }
+
+  /**
+   * Calls the callback back when the response of the call just made by a consumer filter arrives,
+   * if the call is asynchronous. The invoker returns right after sending an asynchronous call, so
+   * filters measuring calls end them from the callback.
+   *
+   * @param previous the future of the {@code RpcContext} before the call
+   * @return whether the call is asynchronous and the callback will be called
+   */
+  public static boolean observe(Invoker<?> invoker, Invocation invocation, Future<?> previous,
+                                ResponseCallback callback) {
+    RpcContext context = RpcContext.getContext();
+    Future<?> current = context.getFuture();
+    if (current == previous || !(current instanceof FutureAdapter)
+      || !Constants.CONSUMER_SIDE.equals(invoker.getUrl().getParameter(Constants.SIDE_KEY))
+      || !RpcUtils.isAsync(invoker.getUrl(), invocation)) {
+      return false;
+    }
+    ResponseFuture responseFuture = ((FutureAdapter<?>) current).getFuture();
+    ObservableResponseFuture observable;
+    if (responseFuture instanceof ObservableResponseFuture) {
+      observable = (ObservableResponseFuture) responseFuture;
+    } else {
+      observable = new ObservableResponseFuture(responseFuture);
+      context.setFuture(new FutureAdapter<Object>(observable));
+      responseFuture.setCallback(observable.new Completion());
+    }
+    observable.setCallback(callback);
+    return true;
+  }
+
+  @Override
+  public Object get() throws RemotingException {
+    return future.get();
+  }
+
+  @Override
+  public Object get(int timeoutInMillis) throws RemotingException {
+    return future.get(timeoutInMillis);
+  }
+
+  /**
+   * Adds the callback, called right away once the response arrived.
+   */
+  @Override
+  public void setCallback(ResponseCallback callback) {
+    synchronized (callbacks) {
+      if (!completed) {
+        callbacks.add(callback);
+        return;
+      }
+    }
+    call(callback);
+  }
+
+  @Override
+  public boolean isDone() {
+    return future.isDone();
+  }
+
+  private void call(ResponseCallback callback) {
+    try {
+      if (exception != null) {
+        callback.caught(exception);
+      } else {
+        callback.done(response);
+      }
+    } catch (RuntimeException e) {
+      logger.warn("Dubbox: response callback failed: " + e.getMessage(), e);
+    }
+  }
+
+  private class Completion implements ResponseCallback {
+
+    @Override
+    public void done(Object response) {
+      complete(response, null);
+    }
+
+    @Override
+    public void caught(Throwable exception) {
+      complete(null, exception);
+    }
+
+    private void complete(Object response, Throwable exception) {
+      List<ResponseCallback> called;
+      synchronized (callbacks) {
+        ObservableResponseFuture.this.response = response;
+        ObservableResponseFuture.this.exception = exception;
+        completed = true;
+        called = new ArrayList<ResponseCallback>(callbacks);
+        callbacks.clear();
+      }
+      for (ResponseCallback callback : called) {
+        call(callback);
+      }
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.async;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Adapts Reactor {@link Mono} and {@link Flux}. A {@code Mono} maps to any service method, a
+ * {@code Flux} to one returning an {@code Iterable} or an array. The call starts on subscription;
+ * the elements of a {@code Flux} are received together and emitted as requested.
+ *
+ * <p>A provider awaits the {@code Mono}, or collects the {@code Flux}, on its pool thread.
+ */
+class ReactorReturnAdapter extends ReturnAdapter {
+
+  @Override
+  boolean supports(Class<?> type) {
+    return type == Mono.class || type == Flux.class;
+  }
+
+  @Override
+  void check(Class<?> type, Method serviceMethod) {
+    Class<?> serviceType = serviceMethod.getReturnType();
+    if (type == Flux.class && !serviceType.isArray() && !Iterable.class.isAssignableFrom(serviceType)) {
+      throw new IllegalStateException("Flux of " + serviceMethod + " requires an Iterable or array result");
+    }
+  }
+
+  @Override
+  Object adapt(final Supplier<CompletableFuture<Object>> call, Method serviceMethod) {
+    Mono<Object> mono = Mono.defer(new Supplier<Mono<Object>>() {
+      @Override
+      public Mono<Object> get() {
+        return Mono.fromFuture(call.get());
+      }
+    });
+    if (!serviceMethod.getReturnType().isArray() && !Iterable.class.isAssignableFrom(serviceMethod.getReturnType())) {
+      return mono;
+    }
+    return mono.flatMapIterable(new Function<Object, Iterable<Object>>() {
+      @Override
+      public Iterable<Object> apply(Object value) {
+        return toIterable(value);
+      }
+    });
+  }
+
+  @Override
+  Object await(Object value, Method serviceMethod) throws Throwable {
+    try {
+      if (value instanceof Mono) {
+        return ((Mono<?>) value).block();
+      }
+      if (value instanceof Flux) {
+        return fromList(((Flux<?>) value).collectList().block(), serviceMethod.getReturnType());
+      }
+    } catch (RuntimeException e) {
+      throw Exceptions.unwrap(e);
+    }
+    return value;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Iterable<Object> toIterable(Object value) {
+    if (value instanceof Iterable) {
+      return (Iterable<Object>) value;
+    }
+    if (value instanceof Object[]) {
+      return Arrays.asList((Object[]) value);
+    }
+    int length = Array.getLength(value);
+    List<Object> list = new ArrayList<Object>(length);
+    for (int i = 0; i < length; i++) {
+      list.add(Array.get(value, i));
+    }
+    return list;
+  }
+
+  private static Object fromList(List<?> list, Class<?> type) {
+    if (list == null) {
+      list = Collections.emptyList();
+    }
+    if (type.isArray()) {
+      Object array = Array.newInstance(type.getComponentType(), list.size());
+      for (int i = 0; i < list.size(); i++) {
+        Array.set(array, i, list.get(i));
+      }
+      return array;
+    }
+    if (type.isAssignableFrom(List.class)) {
+      return list;
+    }
+    if (type.isAssignableFrom(Set.class)) {
+      return new LinkedHashSet<Object>(list);
+    }
+    throw new IllegalStateException("Can not return a Flux as " + type.getName());
+  }
+}
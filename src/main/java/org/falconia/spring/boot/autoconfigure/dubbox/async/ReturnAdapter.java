@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.async;
+
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Adapts an asynchronous return type of an {@link AsyncFor @AsyncFor} interface to the
+ * asynchronous call of the consumer, and awaits it on the provider. {@code CompletableFuture},
+ * {@code CompletionStage} and {@code Future} are always supported, Reactor {@code Mono} and
+ * {@code Flux} when reactor-core is on the classpath.
+ */
+abstract class ReturnAdapter {
+
+  private static final List<ReturnAdapter> adapters;
+
+  static {
+    List<ReturnAdapter> list = new ArrayList<ReturnAdapter>();
+    list.add(new FutureReturnAdapter());
+    if (ClassUtils.isPresent("reactor.core.publisher.Flux", ReturnAdapter.class.getClassLoader())) {
+      list.add(new ReactorReturnAdapter());
+    }
+    adapters = Collections.unmodifiableList(list);
+  }
+
+  /**
+   * @return the adapter of the type, {@code null} for a synchronous type
+   */
+  static ReturnAdapter find(Class<?> type) {
+    for (ReturnAdapter adapter : adapters) {
+      if (adapter.supports(type)) {
+        return adapter;
+      }
+    }
+    return null;
+  }
+
+  abstract boolean supports(Class<?> type);
+
+  /**
+   * Checks that the results of the service method can be adapted to the type.
+   *
+   * @throws IllegalStateException if they can not
+   */
+  void check(Class<?> type, Method serviceMethod) {
+  }
+
+  /**
+   * @param call starts the asynchronous call of the service method
+   * @return the value to return from the consumer method
+   */
+  abstract Object adapt(Supplier<CompletableFuture<Object>> call, Method serviceMethod);
+
+  /**
+   * @param value the value returned by the provider method
+   * @return the value to return from the service method
+   */
+  abstract Object await(Object value, Method serviceMethod) throws Throwable;
+
+  private static class FutureReturnAdapter extends ReturnAdapter {
+
+    @Override
+    boolean supports(Class<?> type) {
+      return type == CompletableFuture.class || type == CompletionStage.class || type == Future.class;
+    }
+
+    @Override
+    Object adapt(Supplier<CompletableFuture<Object>> call, Method serviceMethod) {
+      return call.get();
+    }
+
+    @Override
+    Object await(Object value, Method serviceMethod) throws Throwable {
+      if (value == null) {
+        return null;
+      }
+      Future<?> future = value instanceof CompletionStage
+        ? ((CompletionStage<?>) value).toCompletableFuture() : (Future<?>) value;
+      try {
+        return future.get();
+      } catch (ExecutionException e) {
+        throw e.getCause();
+      }
+    }
+  }
+}
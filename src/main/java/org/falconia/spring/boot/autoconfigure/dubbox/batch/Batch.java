@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.batch;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a single-argument service method whose concurrent calls a batching consumer may combine
+ * into one call of the named batch method of the same interface.
+ *
+ * <p>The batch method takes a {@code List}, {@code Collection} or {@code Set} of the arguments and
+ * returns either a {@code Map} from argument to result, or a {@code List} of the results in the
+ * order of the arguments, which is then passed as a {@code List}. For example:
+ * <pre>
+ * &#64;Batch("getUsers")
+ * User getUser(Long id);
+ *
+ * Map&lt;Long, User&gt; getUsers(Set&lt;Long&gt; ids);
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Batch {
+
+  /**
+   * Name of the batch method.
+   */
+  String value();
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.batch;
+
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.service.EchoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reference proxy combining concurrent calls of each {@link Batch @Batch} method: calls are
+ * collected until the batch reaches its size, or its window has elapsed since the first call, and
+ * are then sent as one call of the batch method. Each caller blocks until the batch returns and
+ * gets its own result, or the failure of the whole batch. Equal arguments within a batch are sent
+ * once. A checked exception the method does not declare is thrown as an {@link RpcException}, as
+ * is a missing result of a primitive return type.
+ *
+ * <p>All other methods call the reference directly.
+ */
+public class BatchingProxy implements InvocationHandler {
+
+  private static Logger logger = LoggerFactory.getLogger(BatchingProxy.class);
+
+  private static final ScheduledExecutorService scheduler =
+    Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("DubboxBatchTimer", true));
+
+  private static final ExecutorService dispatcher =
+    Executors.newCachedThreadPool(new NamedThreadFactory("DubboxBatch", true));
+
+  private final Class<?> interfaceClass;
+
+  private final Object target;
+
+  private final Map<Method, Batcher> batchers;
+
+  private BatchingProxy(Class<?> interfaceClass, Object target, Map<Method, Batcher> batchers) {
+    this.interfaceClass = interfaceClass;
+    this.target = target;
+    this.batchers = batchers;
+  }
+
+  /**
+   * Wraps the reference, or returns it as is when the interface has no usable {@link Batch}
+   * method.
+   */
+  public static Object create(Class<?> interfaceClass, Object target, int size, long windowMillis,
+                              ClassLoader classLoader) {
+    Map<Method, Batcher> batchers = new HashMap<Method, Batcher>();
+    for (Method method : interfaceClass.getMethods()) {
+      Batch batch = method.getAnnotation(Batch.class);
+      if (batch == null) {
+        continue;
+      }
+      Batcher batcher = Batcher.create(interfaceClass, method, batch.value(), target, size, windowMillis);
+      if (batcher != null) {
+        batchers.put(method, batcher);
+      }
+    }
+    if (batchers.isEmpty()) {
+      return target;
+    }
+    return Proxy.newProxyInstance(classLoader, new Class<?>[]{interfaceClass, EchoService.class},
+      new BatchingProxy(interfaceClass, target, batchers));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      String name = method.getName();
+      if ("equals".equals(name)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(name)) {
+        return System.identityHashCode(proxy);
+      }
+      if ("toString".equals(name)) {
+        return "Dubbox batching reference to " + interfaceClass.getName();
+      }
+    }
+    Batcher batcher = batchers.get(method);
+    if (batcher != null) {
+      return batcher.call(args[0]);
+    }
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+  }
+
+  private static class Batcher {
+
+    private final Method method;
+
+    private final Method batchMethod;
+
+    private final Object target;
+
+    private final boolean setArgument;
+
+    private final boolean mapResult;
+
+    private final int size;
+
+    private final long windowMillis;
+
+    // Guarded by this
+    private Map<Object, List<CompletableFuture<Object>>> pending;
+
+    private Batcher(Method method, Method batchMethod, Object target, boolean setArgument, boolean mapResult,
+                    int size, long windowMillis) {
+      this.method = method;
+      this.batchMethod = batchMethod;
+      this.target = target;
+      this.setArgument = setArgument;
+      this.mapResult = mapResult;
+      this.size = Math.max(1, size);
+      this.windowMillis = Math.max(0, windowMillis);
+    }
+
+    static Batcher create(Class<?> interfaceClass, Method method, String batchMethodName, Object target,
+                          int size, long windowMillis) {
+      String description = interfaceClass.getName() + "." + method.getName();
+      if (method.getParameterTypes().length != 1) {
+        logger.warn("Dubbox: ignoring @Batch on {}, the method must take one argument", description);
+        return null;
+      }
+      Method batchMethod = null;
+      for (Method candidate : interfaceClass.getMethods()) {
+        if (candidate.getName().equals(batchMethodName) && candidate.getParameterTypes().length == 1) {
+          batchMethod = candidate;
+          break;
+        }
+      }
+      if (batchMethod == null) {
+        logger.warn("Dubbox: ignoring @Batch on {}, no single-argument batch method {}", description, batchMethodName);
+        return null;
+      }
+      Class<?> argumentType = batchMethod.getParameterTypes()[0];
+      Class<?> resultType = batchMethod.getReturnType();
+      boolean setArgument = Set.class.equals(argumentType);
+      boolean mapResult = Map.class.isAssignableFrom(resultType);
+      if (!setArgument && !argumentType.isAssignableFrom(ArrayList.class)) {
+        logger.warn("Dubbox: ignoring @Batch on {}, {} must take a List, Collection or Set", description, batchMethodName);
+        return null;
+      }
+      if (!mapResult && !(List.class.isAssignableFrom(resultType) && !setArgument)) {
+        logger.warn("Dubbox: ignoring @Batch on {}, {} must return a Map, or a List when taking a List",
+          description, batchMethodName);
+        return null;
+      }
+      return new Batcher(method, batchMethod, target, setArgument, mapResult, size, windowMillis);
+    }
+
+    Object call(Object argument) throws Throwable {
+      CompletableFuture<Object> future = new CompletableFuture<Object>();
+      Map<Object, List<CompletableFuture<Object>>> full = null;
+      synchronized (this) {
+        if (pending == null) {
+          pending = new LinkedHashMap<Object, List<CompletableFuture<Object>>>();
+          if (size > 1) {
+            final Map<Object, List<CompletableFuture<Object>>> batch = pending;
+            scheduler.schedule(new Runnable() {
+              @Override
+              public void run() {
+                if (take(batch)) {
+                  dispatcher.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                      send(batch);
+                    }
+                  });
+                }
+              }
+            }, windowMillis, TimeUnit.MILLISECONDS);
+          }
+        }
+        List<CompletableFuture<Object>> futures = pending.get(argument);
+        if (futures == null) {
+          futures = new ArrayList<CompletableFuture<Object>>(1);
+          pending.put(argument, futures);
+        }
+        futures.add(future);
+        if (pending.size() >= size) {
+          full = pending;
+          pending = null;
+        }
+      }
+      if (full != null) {
+        // The caller completing the batch sends it, it has to wait anyway
+        send(full);
+      }
+      try {
+        return future.get();
+      } catch (ExecutionException e) {
+        throw declared(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for batch " + batchMethod.getName(), e);
+      }
+    }
+
+    private synchronized boolean take(Map<Object, List<CompletableFuture<Object>>> batch) {
+      if (pending != batch) {
+        // Already sent when it got full
+        return false;
+      }
+      pending = null;
+      return true;
+    }
+
+    private void send(Map<Object, List<CompletableFuture<Object>>> batch) {
+      try {
+        Collection<Object> arguments = setArgument
+          ? new LinkedHashSet<Object>(batch.keySet()) : new ArrayList<Object>(batch.keySet());
+        Object result = batchMethod.invoke(target, arguments);
+        if (mapResult) {
+          Map<?, ?> results = result != null ? (Map<?, ?>) result : new HashMap<Object, Object>();
+          for (Map.Entry<Object, List<CompletableFuture<Object>>> entry : batch.entrySet()) {
+            complete(entry.getValue(), entry.getKey(), results.get(entry.getKey()));
+          }
+        } else {
+          List<?> results = (List<?>) result;
+          if (results == null || results.size() != batch.size()) {
+            throw new IllegalStateException("Batch method " + batchMethod.getName() + " returned "
+              + (results == null ? "null" : results.size() + " results") + " for " + batch.size() + " arguments");
+          }
+          int i = 0;
+          for (Map.Entry<Object, List<CompletableFuture<Object>>> entry : batch.entrySet()) {
+            complete(entry.getValue(), entry.getKey(), results.get(i++));
+          }
+        }
+      } catch (InvocationTargetException e) {
+        fail(batch, e.getTargetException());
+      } catch (Throwable e) {
+        fail(batch, e);
+      }
+    }
+
+    private void complete(List<CompletableFuture<Object>> futures, Object argument, Object value) {
+      Class<?> returnType = method.getReturnType();
+      if (value == null && returnType.isPrimitive() && returnType != void.class) {
+        RpcException e = new RpcException("Batch method " + batchMethod.getName() + " returned no result for "
+          + argument + ", " + method.getName() + " returns " + returnType.getName());
+        for (CompletableFuture<Object> future : futures) {
+          future.completeExceptionally(e);
+        }
+        return;
+      }
+      for (CompletableFuture<Object> future : futures) {
+        future.complete(value);
+      }
+    }
+
+    /**
+     * @return the failure of the batch as the method may throw it
+     */
+    private Throwable declared(Throwable e) {
+      if (e instanceof RuntimeException || e instanceof Error) {
+        return e;
+      }
+      for (Class<?> exceptionType : method.getExceptionTypes()) {
+        if (exceptionType.isInstance(e)) {
+          return e;
+        }
+      }
+      return new RpcException("Batch method " + batchMethod.getName() + " failed: " + e, e);
+    }
+
+    private static void fail(Map<Object, List<CompletableFuture<Object>>> batch, Throwable e) {
+      for (List<CompletableFuture<Object>> futures : batch.values()) {
+        for (CompletableFuture<Object> future : futures) {
+          future.completeExceptionally(e);
+        }
+      }
+    }
+  }
+}
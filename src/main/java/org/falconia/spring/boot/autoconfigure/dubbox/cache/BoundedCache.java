@@ -0,0 +1,212 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.cache;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result cache of one service method backed by Caffeine, configured with method or service
+ * parameters:
+ * <ul>
+ * <li>{@code cache.size}: maximum number of results, 1000 by default</li>
+ * <li>{@code cache.weight}: maximum total weight instead, a result weighs its number of elements
+ * when it is a collection, map or array, 1 otherwise</li>
+ * <li>{@code cache.ttl}: milliseconds a result is kept after it was loaded</li>
+ * <li>{@code cache.refresh}: milliseconds after which the first hit reloads the result in the
+ * background by repeating the invocation, still answering with the current result</li>
+ * </ul>
+ *
+ * <p>Looked up and filled by {@link BoundedCacheFilter}. Hit, miss and eviction counts are
+ * available from {@link #getStats()}.
+ */
+public class BoundedCache {
+
+  public static final String SIZE_KEY = "cache.size";
+
+  public static final String WEIGHT_KEY = "cache.weight";
+
+  public static final String TTL_KEY = "cache.ttl";
+
+  public static final String REFRESH_KEY = "cache.refresh";
+
+  private static final Executor refreshExecutor =
+    Executors.newCachedThreadPool(new NamedThreadFactory("DubboxCacheRefresh", true));
+
+  private final String name;
+
+  private final String side;
+
+  private final String address;
+
+  // Weak, the cache is kept by the factory for as long as the invoker is reachable
+  private final WeakReference<Invoker<?>> invoker;
+
+  private final com.github.benmanes.caffeine.cache.Cache<Object, Object> store;
+
+  /**
+   * @param invoker invoker the cache filter calls, refreshes repeat the cached invocations on it
+   */
+  BoundedCache(Invoker<?> invoker, String method) {
+    URL url = invoker.getUrl();
+    this.name = url.getServiceInterface() + "." + method;
+    this.side = url.getParameter(Constants.SIDE_KEY, Constants.PROVIDER_SIDE);
+    this.address = url.getAddress();
+    this.invoker = new WeakReference<Invoker<?>>(invoker);
+
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().recordStats().executor(refreshExecutor);
+    long weight = url.getMethodParameter(method, WEIGHT_KEY, 0L);
+    if (weight > 0) {
+      builder.maximumWeight(weight).weigher(new Weigher<Object, Object>() {
+        @Override
+        public int weigh(Object key, Object value) {
+          return weigh(((Entry) value).value);
+        }
+
+        private int weigh(Object value) {
+          if (value instanceof Collection) {
+            return Math.max(1, ((Collection<?>) value).size());
+          }
+          if (value instanceof Map) {
+            return Math.max(1, ((Map<?, ?>) value).size());
+          }
+          if (value.getClass().isArray()) {
+            return Math.max(1, Array.getLength(value));
+          }
+          return 1;
+        }
+      });
+    } else {
+      builder.maximumSize(url.getMethodParameter(method, SIZE_KEY, 1000L));
+    }
+    long ttl = url.getMethodParameter(method, TTL_KEY, 0L);
+    if (ttl > 0) {
+      builder.expireAfterWrite(ttl, TimeUnit.MILLISECONDS);
+    }
+    long refresh = url.getMethodParameter(method, REFRESH_KEY, 0L);
+    if (refresh > 0) {
+      builder.refreshAfterWrite(refresh, TimeUnit.MILLISECONDS);
+      this.store = builder.build(new CacheLoader<Object, Object>() {
+        @Override
+        public Object load(Object key) {
+          // Only explicit puts populate the cache
+          return null;
+        }
+
+        @Override
+        public Object reload(Object key, Object oldValue) {
+          return BoundedCache.this.reload((Entry) oldValue);
+        }
+      });
+    } else {
+      this.store = builder.build();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getSide() {
+    return side;
+  }
+
+  /**
+   * The provider address, consumers keep a cache per provider.
+   */
+  public String getAddress() {
+    return address;
+  }
+
+  public long getSize() {
+    return store.estimatedSize();
+  }
+
+  public CacheStats getStats() {
+    return store.stats();
+  }
+
+  /**
+   * The underlying Caffeine cache, e.g. for metrics binders.
+   */
+  public com.github.benmanes.caffeine.cache.Cache<Object, Object> getNativeCache() {
+    return store;
+  }
+
+  /**
+   * @return the cached result, or {@code null} on a miss
+   */
+  Object get(Object key) {
+    Entry entry = (Entry) store.getIfPresent(key);
+    return entry != null ? entry.value : null;
+  }
+
+  /**
+   * Caches the result of the invocation, kept to be repeated by refreshes.
+   */
+  void put(Object key, Object value, Invocation invocation) {
+    if (value != null) {
+      store.put(key, new Entry(value, new RpcInvocation(invocation)));
+    }
+  }
+
+  private Entry reload(Entry entry) {
+    Invoker<?> target = invoker.get();
+    if (target == null || !target.isAvailable()) {
+      throw new IllegalStateException("No invoker to reload the cached result from");
+    }
+    try {
+      Result result = target.invoke(entry.invocation);
+      // Throws when the invocation failed, which keeps the current result
+      Object value = result.recreate();
+      return value != null ? new Entry(value, entry.invocation) : null;
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  private static class Entry {
+
+    final Object value;
+
+    final Invocation invocation;
+
+    Entry(Object value, Invocation invocation) {
+      this.value = value;
+      this.invocation = invocation;
+    }
+  }
+}
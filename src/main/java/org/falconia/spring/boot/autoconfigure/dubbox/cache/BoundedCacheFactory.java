@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.cache;
+
+import com.alibaba.dubbo.cache.Cache;
+import com.alibaba.dubbo.cache.CacheFactory;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Selects a {@link BoundedCache} per service method with {@code cache="bounded"}. The caches are
+ * created per invoker by {@link BoundedCacheFilter} and dropped once their invoker is unreachable,
+ * e.g. after the reference or the provider is gone. The cache this factory gives to Dubbo's cache
+ * filter, active on the same parameter, keeps nothing.
+ *
+ * <p>Live caches are kept for {@link Listener listeners}, e.g. to publish their statistics.
+ */
+public class BoundedCacheFactory implements CacheFactory {
+
+  public static final String NAME = "bounded";
+
+  private static final Cache NONE = new Cache() {
+    @Override
+    public void put(Object key, Object value) {
+    }
+
+    @Override
+    public Object get(Object key) {
+      return null;
+    }
+  };
+
+  // Weak keys compare by identity, the caches of an invoker are collected with it
+  private static final com.github.benmanes.caffeine.cache.Cache<Invoker<?>, ConcurrentMap<String, BoundedCache>> caches =
+    Caffeine.newBuilder().weakKeys().build();
+
+  private static final List<Listener> listeners = new ArrayList<Listener>();
+
+  /**
+   * Adds the listener and calls it back for every live cache.
+   */
+  public static synchronized void addListener(Listener listener) {
+    listeners.add(listener);
+    for (BoundedCache cache : getCaches()) {
+      listener.onCreated(cache);
+    }
+  }
+
+  public static synchronized void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public static List<BoundedCache> getCaches() {
+    List<BoundedCache> list = new ArrayList<BoundedCache>();
+    for (ConcurrentMap<String, BoundedCache> methodCaches : caches.asMap().values()) {
+      list.addAll(methodCaches.values());
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  /**
+   * The cache of the method on the invoker, created on first use.
+   */
+  static BoundedCache getCache(Invoker<?> invoker, String method) {
+    ConcurrentMap<String, BoundedCache> methodCaches = caches.get(invoker,
+      new Function<Invoker<?>, ConcurrentMap<String, BoundedCache>>() {
+        @Override
+        public ConcurrentMap<String, BoundedCache> apply(Invoker<?> key) {
+          return new ConcurrentHashMap<String, BoundedCache>();
+        }
+      });
+    BoundedCache cache = methodCaches.get(method);
+    if (cache == null) {
+      synchronized (BoundedCacheFactory.class) {
+        cache = methodCaches.get(method);
+        if (cache == null) {
+          cache = new BoundedCache(invoker, method);
+          methodCaches.put(method, cache);
+          for (Listener listener : listeners) {
+            listener.onCreated(cache);
+          }
+        }
+      }
+    }
+    return cache;
+  }
+
+  @Override
+  public Cache getCache(URL url) {
+    return NONE;
+  }
+
+  public interface Listener {
+
+    void onCreated(BoundedCache cache);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.cache;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.utils.StringUtils;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+/**
+ * Answers the methods with {@code cache="bounded"} from their {@link BoundedCache}, keyed by the
+ * arguments like Dubbo's cache filter. A miss keeps the invocation with the result, refreshes
+ * repeat it on the invoker following this filter.
+ */
+@Activate(group = {Constants.CONSUMER, Constants.PROVIDER}, value = Constants.CACHE_KEY)
+public class BoundedCacheFilter implements Filter {
+
+  public static final String NAME = "boundedcache";
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    String method = invocation.getMethodName();
+    if (!BoundedCacheFactory.NAME.equals(invoker.getUrl().getMethodParameter(method, Constants.CACHE_KEY))) {
+      return invoker.invoke(invocation);
+    }
+
+    BoundedCache cache = BoundedCacheFactory.getCache(invoker, method);
+    String key = StringUtils.toArgumentString(invocation.getArguments());
+    Object value = cache.get(key);
+    if (value != null) {
+      return new RpcResult(value);
+    }
+    Result result = invoker.invoke(invocation);
+    if (!result.hasException()) {
+      cache.put(key, result.getValue(), invocation);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.codec;
+
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+
+/**
+ * Compression algorithm of {@link CompressionCodecWrapper} frames, identified by name in the
+ * {@code compression} parameter and by id in the frame header. The libraries are optional
+ * dependencies, loaded on first use: lz4-java for {@link #LZ4}, zstd-jni for {@link #ZSTD}.
+ */
+public abstract class Compression {
+
+  /**
+   * Fast LZ4, no level.
+   */
+  public static final Compression LZ4 = new Compression("lz4", (byte) 1, 0, "net.jpountz.lz4.LZ4Factory") {
+
+    @Override
+    public int maxCompressedLength(int length) {
+      return Lz4.COMPRESSOR.maxCompressedLength(length);
+    }
+
+    @Override
+    public int compress(byte[] src, byte[] dest, int level) {
+      return Lz4.COMPRESSOR.compress(src, 0, src.length, dest, 0, dest.length);
+    }
+
+    @Override
+    public void decompress(byte[] src, byte[] dest) throws IOException {
+      Lz4.decompress(src, dest);
+    }
+  };
+
+  /**
+   * Zstandard, levels 1 to 22.
+   */
+  public static final Compression ZSTD = new Compression("zstd", (byte) 2, 3, "com.github.luben.zstd.Zstd") {
+
+    @Override
+    public int maxCompressedLength(int length) {
+      return (int) Zstd.compressBound(length);
+    }
+
+    @Override
+    public int compress(byte[] src, byte[] dest, int level) throws IOException {
+      long length = Zstd.compress(dest, src, level);
+      if (Zstd.isError(length)) {
+        throw new IOException("Failed to zstd compress " + src.length + " bytes: " + Zstd.getErrorName(length));
+      }
+      return (int) length;
+    }
+
+    @Override
+    public void decompress(byte[] src, byte[] dest) throws IOException {
+      long length = Zstd.decompress(dest, src);
+      if (Zstd.isError(length) || length != dest.length) {
+        throw new IOException("Corrupted zstd frame of " + src.length + " bytes"
+          + (Zstd.isError(length) ? ": " + Zstd.getErrorName(length) : ""));
+      }
+    }
+  };
+
+  private static final Compression[] VALUES = {LZ4, ZSTD};
+
+  private final String name;
+
+  private final byte id;
+
+  private final int defaultLevel;
+
+  private final boolean available;
+
+  private Compression(String name, byte id, int defaultLevel, String libraryClass) {
+    this.name = name;
+    this.id = id;
+    this.defaultLevel = defaultLevel;
+    this.available = ClassUtils.isPresent(libraryClass, Compression.class.getClassLoader());
+  }
+
+  /**
+   * @return the compression of the name, {@code null} if unknown
+   */
+  public static Compression forName(String name) {
+    for (Compression compression : VALUES) {
+      if (compression.name.equalsIgnoreCase(name)) {
+        return compression;
+      }
+    }
+    return null;
+  }
+
+  static Compression forId(byte id) {
+    for (Compression compression : VALUES) {
+      if (compression.id == id) {
+        return compression;
+      }
+    }
+    return null;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  byte getId() {
+    return id;
+  }
+
+  public int getDefaultLevel() {
+    return defaultLevel;
+  }
+
+  /**
+   * @return whether the library of the algorithm is on the classpath
+   */
+  public boolean isAvailable() {
+    return available;
+  }
+
+  public abstract int maxCompressedLength(int length);
+
+  /**
+   * @param dest of at least {@link #maxCompressedLength(int)} bytes
+   * @return the compressed length
+   */
+  public abstract int compress(byte[] src, byte[] dest, int level) throws IOException;
+
+  /**
+   * @param dest of exactly the original length
+   */
+  public abstract void decompress(byte[] src, byte[] dest) throws IOException;
+
+  @Override
+  public String toString() {
+    return name;
+  }
+
+  private static class Lz4 {
+
+    static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+
+    static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    // Catches here, not in LZ4, so that loading Compression does not need lz4-java
+    static void decompress(byte[] src, byte[] dest) throws IOException {
+      try {
+        if (DECOMPRESSOR.decompress(src, 0, dest, 0, dest.length) != src.length) {
+          throw new IOException("Corrupted lz4 frame of " + src.length + " bytes");
+        }
+      } catch (LZ4Exception e) {
+        throw new IOException(e.getMessage(), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.codec;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.Codec2;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.support.MultiMessage;
+import com.alibaba.dubbo.remoting.transport.AbstractCodec;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.protocol.dubbo.DubboCodec;
+import com.alibaba.dubbo.rpc.protocol.dubbo.DubboCountCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps the dubbo {@link Codec2} to compress the request and response frames reaching the
+ * {@code compression.threshold} with the {@link Compression} of the {@code compression} parameter,
+ * e.g. {@code lz4}. A frame that does not shrink is sent as it is. Other codecs are left as they are.
+ *
+ * <p>A consumer having the compression advertises it in the {@code compression.accept} attachment
+ * of its requests. A provider compresses the response of a request only when it carries the
+ * attachment, with the compression it names, so consumers without this codec get plain responses.
+ *
+ * <p>A compressed frame has a header of its own, whose magic tells it from a plain frame:
+ * <pre>
+ * 0xdabc | compression id (1) | reserved (1) | original length (4) | compressed length (4) | frame
+ * </pre>
+ * Both kinds are always decoded, whatever the parameters of the channel, so peers may mix them.
+ * The original length is checked against the {@code payload}, and the compressed length against
+ * the bound of the compression for it, before the frame is buffered and decompressed.
+ */
+public class CompressionCodecWrapper extends AbstractCodec {
+
+  public static final String COMPRESSION_KEY = "compression";
+
+  public static final String THRESHOLD_KEY = "compression.threshold";
+
+  public static final int DEFAULT_THRESHOLD = 8192;
+
+  public static final String LEVEL_KEY = "compression.level";
+
+  public static final String ACCEPT_KEY = "compression.accept";
+
+  static final byte MAGIC_HIGH = (byte) 0xda;
+
+  static final byte MAGIC_LOW = (byte) 0xbc;
+
+  static final int HEADER_LENGTH = 12;
+
+  private static final byte DUBBO_MAGIC_HIGH = (byte) 0xda;
+
+  private static final byte DUBBO_MAGIC_LOW = (byte) 0xbb;
+
+  private static final int DUBBO_HEADER_LENGTH = 16;
+
+  /**
+   * Channel attribute of the two-way requests being served, by id, to tell whether their
+   * consumers accept compressed responses.
+   */
+  private static final String PENDING_KEY = "dubbox.compression.pending";
+
+  /**
+   * Bounds the requests kept for responses that are never sent, e.g. rejected by the thread pool.
+   */
+  private static final int MAX_PENDING = 65536;
+
+  private static Logger logger = LoggerFactory.getLogger(CompressionCodecWrapper.class);
+
+  private final Codec2 codec;
+
+  private final boolean dubbo;
+
+  private volatile boolean warned;
+
+  public CompressionCodecWrapper(Codec2 codec) {
+    this.codec = codec;
+    this.dubbo = codec instanceof DubboCountCodec || codec instanceof DubboCodec;
+  }
+
+  @Override
+  public void encode(Channel channel, ChannelBuffer buffer, Object msg) throws IOException {
+    if (!dubbo) {
+      codec.encode(channel, buffer, msg);
+      return;
+    }
+    URL url = channel.getUrl();
+    String name = url.getParameter(COMPRESSION_KEY);
+    Compression compression = null;
+    if (msg instanceof Request) {
+      compression = accept((Request) msg, name);
+    } else if (msg instanceof Response) {
+      compression = accepted(channel, (Response) msg, name);
+    }
+    if (compression == null) {
+      codec.encode(channel, buffer, msg);
+      return;
+    }
+    int start = buffer.writerIndex();
+    codec.encode(channel, buffer, msg);
+    int length = buffer.writerIndex() - start;
+    if (length < url.getParameter(THRESHOLD_KEY, DEFAULT_THRESHOLD)) {
+      return;
+    }
+
+    byte[] frame = new byte[length];
+    buffer.getBytes(start, frame);
+    byte[] compressed = new byte[compression.maxCompressedLength(length)];
+    int compressedLength = compression.compress(frame, compressed, compression == Compression.forName(name)
+      ? url.getParameter(LEVEL_KEY, compression.getDefaultLevel()) : compression.getDefaultLevel());
+    if (HEADER_LENGTH + compressedLength >= length) {
+      return;
+    }
+    byte[] header = new byte[HEADER_LENGTH];
+    header[0] = MAGIC_HIGH;
+    header[1] = MAGIC_LOW;
+    header[2] = compression.getId();
+    writeInt(header, 4, length);
+    writeInt(header, 8, compressedLength);
+    buffer.writerIndex(start);
+    buffer.writeBytes(header);
+    buffer.writeBytes(compressed, 0, compressedLength);
+  }
+
+  /**
+   * Advertises the compression of the channel in the invocation of the request, else removes an
+   * advertisement passed on from the context of the provider calling.
+   *
+   * @return the compression of the channel, or null if it has none or it is not available
+   */
+  private Compression accept(Request request, String name) {
+    Compression compression = null;
+    if (name != null && name.length() > 0) {
+      compression = Compression.forName(name);
+      if (compression == null || !compression.isAvailable()) {
+        if (!warned) {
+          warned = true;
+          logger.error("Dubbox: compression '{}' {}, sending uncompressed frames", name,
+            compression == null ? "is unknown" : "is not on the classpath");
+        }
+        compression = null;
+      }
+    }
+    if (request.getData() instanceof RpcInvocation) {
+      RpcInvocation invocation = (RpcInvocation) request.getData();
+      if (compression != null) {
+        invocation.setAttachment(ACCEPT_KEY, compression.getName());
+      } else if (invocation.getAttachments() != null) {
+        invocation.getAttachments().remove(ACCEPT_KEY);
+      }
+    }
+    return compression;
+  }
+
+  /**
+   * @return the compression the consumer of the request answered accepts, if the provider has a
+   * compression, else null
+   */
+  @SuppressWarnings("unchecked")
+  private static Compression accepted(Channel channel, Response response, String name) {
+    Map<Long, Request> pending = (Map<Long, Request>) channel.getAttribute(PENDING_KEY);
+    Request request = pending != null ? pending.remove(response.getId()) : null;
+    if (request == null || name == null || name.length() == 0
+      || !(request.getData() instanceof Invocation)) {
+      return null;
+    }
+    Compression compression = Compression.forName(((Invocation) request.getData()).getAttachment(ACCEPT_KEY));
+    return compression != null && compression.isAvailable() ? compression : null;
+  }
+
+  @Override
+  public Object decode(Channel channel, ChannelBuffer buffer) throws IOException {
+    if (!dubbo) {
+      return codec.decode(channel, buffer);
+    }
+    Object msg = decodeFrames(channel, buffer);
+    if (msg instanceof MultiMessage) {
+      for (Object message : (MultiMessage) msg) {
+        received(channel, message);
+      }
+    } else {
+      received(channel, msg);
+    }
+    return msg;
+  }
+
+  /**
+   * Keeps the two-way requests, once the provider has a compression, for their responses to look
+   * for the attachment: it is decoded on the IO thread only by default.
+   */
+  @SuppressWarnings("unchecked")
+  private static void received(Channel channel, Object msg) {
+    if (!(msg instanceof Request) || !((Request) msg).isTwoWay() || ((Request) msg).isEvent()) {
+      return;
+    }
+    String name = channel.getUrl().getParameter(COMPRESSION_KEY);
+    if (name == null || name.length() == 0) {
+      return;
+    }
+    // Decoded by the IO thread of the channel only
+    Map<Long, Request> pending = (Map<Long, Request>) channel.getAttribute(PENDING_KEY);
+    if (pending == null) {
+      pending = new ConcurrentHashMap<Long, Request>();
+      channel.setAttribute(PENDING_KEY, pending);
+    } else if (pending.size() >= MAX_PENDING) {
+      // Their responses are sent uncompressed
+      pending.clear();
+    }
+    pending.put(((Request) msg).getId(), (Request) msg);
+  }
+
+  private Object decodeFrames(Channel channel, ChannelBuffer buffer) throws IOException {
+    int readerIndex = buffer.readerIndex();
+    int writerIndex = buffer.writerIndex();
+    if (isCompressed(buffer, readerIndex, writerIndex)) {
+      return decodeCompressed(channel, buffer, readerIndex, writerIndex - readerIndex);
+    }
+    // Keeps the dubbo codec, decoding several frames at once, off the next compressed frame
+    int limit = plainLimit(buffer, readerIndex, writerIndex);
+    if (limit == writerIndex) {
+      return codec.decode(channel, buffer);
+    }
+    buffer.writerIndex(limit);
+    try {
+      return codec.decode(channel, buffer);
+    } finally {
+      buffer.writerIndex(writerIndex);
+    }
+  }
+
+  private Object decodeCompressed(Channel channel, ChannelBuffer buffer, int readerIndex, int readable)
+    throws IOException {
+    if (readable < HEADER_LENGTH) {
+      return DecodeResult.NEED_MORE_INPUT;
+    }
+    byte id = buffer.getByte(readerIndex + 2);
+    int length = readInt(buffer, readerIndex + 4);
+    int compressedLength = readInt(buffer, readerIndex + 8);
+    checkPayload(channel, length);
+    Compression compression = Compression.forId(id);
+    if (compression == null || !compression.isAvailable()) {
+      throw new IOException("Can not decompress frame of compression " + (compression == null ? "id " + id
+        : compression + ", its library is not on the classpath") + ", channel: " + channel);
+    }
+    // Bounds the input buffered for the frame by the payload too
+    if (length < 0 || compressedLength < 0 || compressedLength > compression.maxCompressedLength(length)) {
+      throw new IOException("Invalid compressed frame length " + compressedLength + " of " + length
+        + ", channel: " + channel);
+    }
+    if (readable < HEADER_LENGTH + compressedLength) {
+      return DecodeResult.NEED_MORE_INPUT;
+    }
+
+    byte[] compressed = new byte[compressedLength];
+    buffer.readerIndex(readerIndex + HEADER_LENGTH);
+    buffer.readBytes(compressed);
+    byte[] frame = new byte[length];
+    compression.decompress(compressed, frame);
+    Object msg = codec.decode(channel, ChannelBuffers.wrappedBuffer(frame));
+    if (msg == DecodeResult.NEED_MORE_INPUT) {
+      throw new IOException("Truncated " + compression + " frame of " + length + " bytes, channel: " + channel);
+    }
+    return msg;
+  }
+
+  /**
+   * @return the end of the complete plain frames followed by a compressed frame, else the end
+   */
+  private static int plainLimit(ChannelBuffer buffer, int index, int end) {
+    int start = index;
+    while (end - index >= DUBBO_HEADER_LENGTH
+      && buffer.getByte(index) == DUBBO_MAGIC_HIGH && buffer.getByte(index + 1) == DUBBO_MAGIC_LOW) {
+      int length = readInt(buffer, index + 12);
+      if (length < 0 || length > end - index - DUBBO_HEADER_LENGTH) {
+        return end;
+      }
+      index += DUBBO_HEADER_LENGTH + length;
+    }
+    return index > start && isCompressed(buffer, index, end) ? index : end;
+  }
+
+  private static boolean isCompressed(ChannelBuffer buffer, int index, int end) {
+    return end - index >= 2 && buffer.getByte(index) == MAGIC_HIGH && buffer.getByte(index + 1) == MAGIC_LOW;
+  }
+
+  private static int readInt(ChannelBuffer buffer, int index) {
+    return (buffer.getByte(index) & 0xff) << 24 | (buffer.getByte(index + 1) & 0xff) << 16
+      | (buffer.getByte(index + 2) & 0xff) << 8 | buffer.getByte(index + 3) & 0xff;
+  }
+
+  private static void writeInt(byte[] bytes, int index, int value) {
+    bytes[index] = (byte) (value >>> 24);
+    bytes[index + 1] = (byte) (value >>> 16);
+    bytes[index + 2] = (byte) (value >>> 8);
+    bytes[index + 3] = (byte) value;
+  }
+}
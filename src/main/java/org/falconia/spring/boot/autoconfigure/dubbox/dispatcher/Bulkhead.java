@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.dispatcher;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Isolated executor for a set of services and methods of a provider.
+ */
+public final class Bulkhead {
+
+  public static final int DEFAULT_THREADS = 10;
+
+  private final String name;
+
+  private final List<String> services;
+
+  private final int threads;
+
+  private final int queues;
+
+  private final boolean direct;
+
+  /**
+   * @param name the name of the bulkhead, part of its thread names
+   * @param services service interfaces, or {@code interface.method} for a single method
+   * @param threads fixed size of the pool
+   * @param queues queue capacity, {@code 0} to hand off without queue, negative for unbounded
+   * @param direct whether to run on the IO thread, without a pool
+   */
+  public Bulkhead(String name, List<String> services, int threads, int queues, boolean direct) {
+    if (!direct && threads <= 0) {
+      throw new IllegalArgumentException("threads of bulkhead " + name + " must be positive");
+    }
+    this.name = name;
+    this.services = Collections.unmodifiableList(services);
+    this.threads = threads;
+    this.queues = queues;
+    this.direct = direct;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<String> getServices() {
+    return services;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public int getQueues() {
+    return queues;
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.dispatcher;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.ExecutionException;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelEventRunnable;
+import com.alibaba.dubbo.remoting.transport.dispatcher.WrappedChannelHandler;
+import com.alibaba.dubbo.rpc.Invocation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Channel handler of the {@link BulkheadDispatcher}, holding the pools of the bulkheads of one
+ * server, and the {@link DirectBulkhead} counters of its direct bulkheads.
+ */
+class BulkheadChannelHandler extends WrappedChannelHandler {
+
+  private final Map<String, Route> routes = new HashMap<String, Route>();
+
+  private final List<ExecutorService> bulkheadExecutors = new ArrayList<ExecutorService>();
+
+  private final List<DirectBulkhead> directBulkheads = new ArrayList<DirectBulkhead>();
+
+  BulkheadChannelHandler(ChannelHandler handler, URL url, List<Bulkhead> bulkheads) {
+    super(handler, url);
+    ThreadPool threadPool = ExtensionLoader.getExtensionLoader(ThreadPool.class).getAdaptiveExtension();
+    for (Bulkhead bulkhead : bulkheads) {
+      String name = "DubboBulkhead-" + bulkhead.getName() + "-" + url.getAddress();
+      ExecutorService executor = null;
+      DirectBulkhead direct = null;
+      if (bulkhead.isDirect()) {
+        direct = new DirectBulkhead(name, url.getPort(), bulkhead.getName());
+        DirectBulkhead.created(direct);
+        directBulkheads.add(direct);
+      } else {
+        executor = (ExecutorService) threadPool.getExecutor(url
+          .addParameter(Constants.THREADPOOL_KEY, "fixed")
+          .addParameter(Constants.THREADS_KEY, bulkhead.getThreads())
+          .addParameter(Constants.QUEUES_KEY, bulkhead.getQueues())
+          .addParameter(Constants.THREAD_NAME_KEY, name)
+          .addParameter(BulkheadDispatcher.BULKHEAD_KEY, bulkhead.getName()));
+        bulkheadExecutors.add(executor);
+      }
+      Route route = new Route(bulkhead.getName(), executor, direct);
+      for (String service : bulkhead.getServices()) {
+        routes.put(service, route);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    for (ExecutorService executor : bulkheadExecutors) {
+      try {
+        executor.shutdown();
+      } catch (Throwable t) {
+        logger.warn("fail to destroy bulkhead thread pool of server: " + t.getMessage(), t);
+      }
+    }
+    for (DirectBulkhead direct : directBulkheads) {
+      DirectBulkhead.closed(direct);
+    }
+  }
+
+  @Override
+  public void connected(Channel channel) throws RemotingException {
+    try {
+      getExecutorService().execute(new ChannelEventRunnable(channel, handler, ChannelEventRunnable.ChannelState.CONNECTED));
+    } catch (Throwable t) {
+      throw new ExecutionException("connect event", channel, getClass() + " error when process connected event .", t);
+    }
+  }
+
+  @Override
+  public void disconnected(Channel channel) throws RemotingException {
+    try {
+      getExecutorService().execute(new ChannelEventRunnable(channel, handler, ChannelEventRunnable.ChannelState.DISCONNECTED));
+    } catch (Throwable t) {
+      throw new ExecutionException("disconnect event", channel, getClass() + " error when process disconnected event .", t);
+    }
+  }
+
+  @Override
+  public void received(Channel channel, Object message) throws RemotingException {
+    Route route = route(message);
+    if (route == null) {
+      try {
+        getExecutorService().execute(new ChannelEventRunnable(channel, handler, ChannelEventRunnable.ChannelState.RECEIVED, message));
+      } catch (Throwable t) {
+        throw new ExecutionException(message, channel, getClass() + " error when process received event .", t);
+      }
+      return;
+    }
+    if (route.direct != null) {
+      route.direct.begin();
+      try {
+        handler.received(channel, message);
+      } finally {
+        route.direct.end();
+      }
+      return;
+    }
+    try {
+      route.executor.execute(new ChannelEventRunnable(channel, handler, ChannelEventRunnable.ChannelState.RECEIVED, message));
+    } catch (RejectedExecutionException e) {
+      Request request = (Request) message;
+      if (!request.isTwoWay()) {
+        throw new ExecutionException(message, channel, getClass() + " error when process received event .", e);
+      }
+      // Fail the call right away instead of letting the consumer wait for its timeout
+      Response response = new Response(request.getId(), request.getVersion());
+      response.setStatus(Response.SERVER_ERROR);
+      response.setErrorMessage("Bulkhead " + route.name + " of " + getUrl().getAddress() + " is exhausted: " + e.getMessage());
+      channel.send(response);
+    }
+  }
+
+  @Override
+  public void caught(Channel channel, Throwable exception) throws RemotingException {
+    try {
+      getExecutorService().execute(new ChannelEventRunnable(channel, handler, ChannelEventRunnable.ChannelState.CAUGHT, exception));
+    } catch (Throwable t) {
+      throw new ExecutionException("caught event", channel, getClass() + " error when process caught event .", t);
+    }
+  }
+
+  private Route route(Object message) {
+    if (routes.isEmpty() || !(message instanceof Request)) {
+      return null;
+    }
+    Object data = ((Request) message).getData();
+    if (!(data instanceof Invocation)) {
+      return null;
+    }
+    Invocation invocation = (Invocation) data;
+    // decoded on the IO thread, BulkheadDispatcher refuses servers decoding on the pool
+    String path = invocation.getAttachment(Constants.PATH_KEY);
+    if (path == null) {
+      return null;
+    }
+    Route route = routes.get(path + "." + invocation.getMethodName());
+    return route != null ? route : routes.get(path);
+  }
+
+  private ExecutorService getExecutorService() {
+    ExecutorService cexecutor = executor;
+    if (cexecutor == null || cexecutor.isShutdown()) {
+      cexecutor = SHARED_EXECUTOR;
+    }
+    return cexecutor;
+  }
+
+  private static class Route {
+
+    private final String name;
+
+    private final ExecutorService executor;
+
+    private final DirectBulkhead direct;
+
+    Route(String name, ExecutorService executor, DirectBulkhead direct) {
+      this.name = name;
+      this.executor = executor;
+      this.direct = direct;
+    }
+  }
+}
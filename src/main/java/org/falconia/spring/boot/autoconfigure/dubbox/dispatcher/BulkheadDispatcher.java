@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.dispatcher;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Dispatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dispatches every event to the protocol pool like the {@code all} dispatcher, except requests to
+ * the services and methods of a {@link Bulkhead}, which run on the bulkhead's own pool or directly
+ * on the IO thread. Selected with {@code dispatcher="bulkhead"}.
+ *
+ * <p>Bulkheads are configured once for all protocols, before the servers start. Requests are routed
+ * by the service path of the invocation, so the protocol must decode them on the IO thread, the
+ * default: a server with {@code decode.in.io=false} is refused.
+ */
+public class BulkheadDispatcher implements Dispatcher {
+
+  public static final String NAME = "bulkhead";
+
+  /**
+   * Marks the pool URL of a bulkhead with its name.
+   */
+  public static final String BULKHEAD_KEY = "bulkhead";
+
+  private static volatile List<Bulkhead> bulkheads = Collections.emptyList();
+
+  public static void setBulkheads(List<Bulkhead> bulkheads) {
+    BulkheadDispatcher.bulkheads = Collections.unmodifiableList(new ArrayList<Bulkhead>(bulkheads));
+  }
+
+  public static List<Bulkhead> getBulkheads() {
+    return bulkheads;
+  }
+
+  @Override
+  public ChannelHandler dispatch(ChannelHandler handler, URL url) {
+    if (!bulkheads.isEmpty()
+      && !url.getParameter(Constants.DECODE_IN_IO_THREAD_KEY, Constants.DEFAULT_DECODE_IN_IO_THREAD)) {
+      throw new IllegalStateException("Bulkheads route requests decoded on the IO thread, but "
+        + Constants.DECODE_IN_IO_THREAD_KEY + "=false on " + url.getAddress()
+        + ": every request would run on the protocol pool");
+    }
+    return new BulkheadChannelHandler(handler, url, bulkheads);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.dispatcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a {@code direct} {@link Bulkhead} of one server. Its requests run on the IO threads,
+ * so there is no pool to monitor: the calls completed and in flight are counted instead.
+ *
+ * <p>Live bulkheads are kept for {@link Listener listeners}, e.g. to publish their state, until
+ * their server closes.
+ */
+public class DirectBulkhead {
+
+  private static final List<DirectBulkhead> bulkheads = new ArrayList<DirectBulkhead>();
+
+  private static final List<Listener> listeners = new ArrayList<Listener>();
+
+  private final String name;
+
+  private final int port;
+
+  private final String bulkhead;
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  private final AtomicLong completed = new AtomicLong();
+
+  DirectBulkhead(String name, int port, String bulkhead) {
+    this.name = name;
+    this.port = port;
+    this.bulkhead = bulkhead;
+  }
+
+  /**
+   * Adds the listener and calls it back for every live bulkhead.
+   */
+  public static synchronized void addListener(Listener listener) {
+    listeners.add(listener);
+    for (DirectBulkhead bulkhead : bulkheads) {
+      listener.onCreated(bulkhead);
+    }
+  }
+
+  public static synchronized void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public static synchronized List<DirectBulkhead> getBulkheads() {
+    return Collections.unmodifiableList(new ArrayList<DirectBulkhead>(bulkheads));
+  }
+
+  static synchronized void created(DirectBulkhead bulkhead) {
+    bulkheads.add(bulkhead);
+    for (Listener listener : listeners) {
+      listener.onCreated(bulkhead);
+    }
+  }
+
+  static synchronized void closed(DirectBulkhead bulkhead) {
+    bulkheads.remove(bulkhead);
+  }
+
+  void begin() {
+    active.incrementAndGet();
+  }
+
+  void end() {
+    active.decrementAndGet();
+    completed.incrementAndGet();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * @return the name of the bulkhead
+   */
+  public String getBulkhead() {
+    return bulkhead;
+  }
+
+  /**
+   * Number of requests running on the IO threads.
+   */
+  public int getActiveCount() {
+    return active.get();
+  }
+
+  /**
+   * Number of requests run so far, failed ones included.
+   */
+  public long getCompletedCount() {
+    return completed.get();
+  }
+
+  @Override
+  public String toString() {
+    return name + ":" + port;
+  }
+
+  public interface Listener {
+
+    void onCreated(DirectBulkhead bulkhead);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.endpoint;
+
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.Client;
+import org.falconia.spring.boot.autoconfigure.dubbox.exchange.IdleChannelHandler;
+import org.falconia.spring.boot.autoconfigure.dubbox.exchange.IdleExchangeClient;
+import org.falconia.spring.boot.autoconfigure.dubbox.exchange.IdleExchangeServer;
+import org.falconia.spring.boot.autoconfigure.dubbox.exchange.IdleExchanger;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes the servers and clients of the {@link IdleExchanger}: their settings, closed and reaped
+ * connections, and for each channel how long it has carried no request or response ({@code idle}),
+ * received and sent nothing, and the heartbeats it sent and answered. Times are in milliseconds.
+ */
+@ConfigurationProperties(prefix = "endpoints.dubboconnections")
+public class DubboConnectionEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  public DubboConnectionEndpoint() {
+    super("dubboconnections");
+  }
+
+  @Override
+  public Map<String, Object> invoke() {
+    long now = System.currentTimeMillis();
+    List<Map<String, Object>> servers = new ArrayList<Map<String, Object>>();
+    for (IdleExchangeServer server : IdleExchanger.getServers()) {
+      Map<String, Object> result = new LinkedHashMap<String, Object>();
+      result.put("address", address(server.getLocalAddress()));
+      result.put("heartbeat", server.getHeartbeat());
+      result.put("heartbeatTimeout", server.getHeartbeatTimeout());
+      result.put("idleTimeout", server.getIdleTimeout());
+      result.put("staleClosed", server.getStaleClosed());
+      result.put("idleClosed", server.getIdleClosed());
+      List<Map<String, Object>> channels = new ArrayList<Map<String, Object>>();
+      for (Channel channel : server.getChannels()) {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("remote", address(channel.getRemoteAddress()));
+        putStats(stats, channel, now);
+        channels.add(stats);
+      }
+      result.put("channels", channels);
+      servers.add(result);
+    }
+
+    List<Map<String, Object>> clients = new ArrayList<Map<String, Object>>();
+    for (IdleExchangeClient client : IdleExchanger.getClients()) {
+      Client transportClient = client.getTransportClient();
+      Map<String, Object> result = new LinkedHashMap<String, Object>();
+      result.put("remote", address(client.getRemoteAddress()));
+      result.put("connected", transportClient.isConnected());
+      result.put("reaped", client.isReaped());
+      result.put("reapedCount", client.getReapedCount());
+      result.put("heartbeat", client.getHeartbeat());
+      result.put("heartbeatTimeout", client.getHeartbeatTimeout());
+      result.put("idleTimeout", client.getIdleTimeout());
+      if (transportClient.isConnected()) {
+        putStats(result, transportClient, now);
+      }
+      clients.add(result);
+    }
+
+    Map<String, Object> result = new LinkedHashMap<String, Object>();
+    result.put("servers", servers);
+    result.put("clients", clients);
+    return result;
+  }
+
+  private static void putStats(Map<String, Object> stats, Channel channel, long now) {
+    stats.put("idle", since(IdleChannelHandler.getLastActive(channel), now));
+    stats.put("readIdle", since(IdleChannelHandler.getLastRead(channel), now));
+    stats.put("writeIdle", since(IdleChannelHandler.getLastWrite(channel), now));
+    stats.put("heartbeatsSent", IdleChannelHandler.getHeartbeatsSent(channel));
+    stats.put("heartbeatsAnswered", IdleChannelHandler.getHeartbeatsAnswered(channel));
+  }
+
+  private static Long since(Long time, long now) {
+    return time == null ? null : now - time;
+  }
+
+  private static String address(InetSocketAddress address) {
+    return address == null ? null : address.getAddress().getHostAddress() + ":" + address.getPort();
+  }
+}
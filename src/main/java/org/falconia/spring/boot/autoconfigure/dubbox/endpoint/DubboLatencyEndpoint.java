@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.endpoint;
+
+import com.alibaba.dubbo.common.Constants;
+import org.falconia.spring.boot.autoconfigure.dubbox.metrics.HdrLatencyMetrics;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes the latency percentiles recorded by {@link HdrLatencyMetrics} over its rolling window,
+ * per side, service and method. Latencies are in milliseconds.
+ */
+@ConfigurationProperties(prefix = "endpoints.dubbolatency")
+public class DubboLatencyEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  private final HdrLatencyMetrics latencyMetrics;
+
+  public DubboLatencyEndpoint(HdrLatencyMetrics latencyMetrics) {
+    super("dubbolatency");
+    this.latencyMetrics = latencyMetrics;
+  }
+
+  @Override
+  public Map<String, Object> invoke() {
+    Map<String, Object> result = new LinkedHashMap<String, Object>();
+    result.put("window", latencyMetrics.getWindowMillis());
+    result.put(Constants.PROVIDER_SIDE, latencyMetrics.getPercentiles(Constants.PROVIDER_SIDE));
+    result.put(Constants.CONSUMER_SIDE, latencyMetrics.getPercentiles(Constants.CONSUMER_SIDE));
+    return result;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.endpoint;
+
+import org.falconia.spring.boot.autoconfigure.dubbox.startup.StartupRecorder;
+import org.falconia.spring.boot.autoconfigure.dubbox.startup.StartupTimingPostProcessor;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the startup phases reported by the {@link StartupTimingPostProcessor}, summarized by type
+ * and in the order they ended, none before the application is ready. Times are in milliseconds.
+ */
+@ConfigurationProperties(prefix = "endpoints.dubbostartup")
+public class DubboStartupEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  private final StartupTimingPostProcessor startupTiming;
+
+  public DubboStartupEndpoint(StartupTimingPostProcessor startupTiming) {
+    super("dubbostartup");
+    this.startupTiming = startupTiming;
+  }
+
+  @Override
+  public Map<String, Object> invoke() {
+    List<StartupRecorder.Phase> reported = startupTiming.getPhases();
+    Map<String, Object> summaries = new LinkedHashMap<String, Object>();
+    for (Map.Entry<String, StartupRecorder.Summary> entry : StartupRecorder.getSummaries(reported).entrySet()) {
+      StartupRecorder.Summary summary = entry.getValue();
+      Map<String, Object> type = new LinkedHashMap<String, Object>();
+      type.put("count", summary.getCount());
+      type.put("total", summary.getTotal(TimeUnit.MICROSECONDS) / 1000.0);
+      type.put("elapsed", summary.getElapsed(TimeUnit.MILLISECONDS));
+      summaries.put(entry.getKey(), type);
+    }
+    List<Map<String, Object>> phases = new ArrayList<Map<String, Object>>();
+    for (StartupRecorder.Phase phase : reported) {
+      Map<String, Object> item = new LinkedHashMap<String, Object>();
+      item.put("type", phase.getType());
+      item.put("name", phase.getName());
+      item.put("start", phase.getStartTime());
+      item.put("time", phase.getTime(TimeUnit.MICROSECONDS) / 1000.0);
+      item.put("thread", phase.getThread());
+      phases.add(item);
+    }
+    Map<String, Object> result = new LinkedHashMap<String, Object>();
+    result.put("summary", summaries);
+    result.put("phases", phases);
+    return result;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.endpoint;
+
+import org.falconia.spring.boot.autoconfigure.dubbox.dispatcher.DirectBulkhead;
+import org.falconia.spring.boot.autoconfigure.dubbox.threadpool.MonitoredThreadPoolExecutor;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes the state of every provider {@link MonitoredThreadPoolExecutor}: threads, queue depth,
+ * task counters and the time tasks wait in the queue. Times are in milliseconds. Each
+ * {@link DirectBulkhead} follows, with the requests it runs on the IO threads and has completed.
+ */
+@ConfigurationProperties(prefix = "endpoints.dubbothreadpools")
+public class DubboThreadPoolEndpoint extends AbstractEndpoint<List<Map<String, Object>>> {
+
+  public DubboThreadPoolEndpoint() {
+    super("dubbothreadpools");
+  }
+
+  @Override
+  public List<Map<String, Object>> invoke() {
+    List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+    for (MonitoredThreadPoolExecutor executor : MonitoredThreadPoolExecutor.getExecutors()) {
+      Map<String, Object> pool = new LinkedHashMap<String, Object>();
+      pool.put("name", executor.getName());
+      pool.put("port", executor.getPort());
+      if (executor.getBulkhead() != null) {
+        pool.put("bulkhead", executor.getBulkhead());
+      }
+      pool.put("active", executor.getActiveCount());
+      pool.put("core", executor.getCorePoolSize());
+      pool.put("max", executor.getMaximumPoolSize());
+      pool.put("size", executor.getPoolSize());
+      pool.put("largest", executor.getLargestPoolSize());
+      pool.put("queue", executor.getQueue().size());
+      pool.put("queueRemaining", executor.getQueue().remainingCapacity());
+      pool.put("completed", executor.getCompletedTaskCount());
+      pool.put("rejected", executor.getRejectedCount());
+
+      Map<String, Object> queueWait = new LinkedHashMap<String, Object>();
+      long count = executor.getQueueWaitCount();
+      long total = executor.getQueueWaitTime(TimeUnit.MICROSECONDS);
+      queueWait.put("count", count);
+      queueWait.put("total", total / 1000.0);
+      queueWait.put("mean", count == 0 ? 0 : total / 1000.0 / count);
+      queueWait.put("oldest", executor.getOldestQueueWait(TimeUnit.MICROSECONDS) / 1000.0);
+      pool.put("queueWait", queueWait);
+      result.add(pool);
+    }
+    for (DirectBulkhead bulkhead : DirectBulkhead.getBulkheads()) {
+      Map<String, Object> pool = new LinkedHashMap<String, Object>();
+      pool.put("name", bulkhead.getName());
+      pool.put("port", bulkhead.getPort());
+      pool.put("bulkhead", bulkhead.getBulkhead());
+      pool.put("direct", true);
+      pool.put("active", bulkhead.getActiveCount());
+      pool.put("completed", bulkhead.getCompletedCount());
+      result.add(pool);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.exchange;
+
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.support.header.HeaderExchangeHandler;
+import com.alibaba.dubbo.remoting.transport.AbstractChannelHandlerDelegate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records on each channel when it last carried a request or response, heartbeats and other events
+ * aside, and counts the heartbeats it sent and answered. The read and write timestamps of any
+ * message are kept by Dubbo under {@link HeaderExchangeHandler#KEY_READ_TIMESTAMP} and
+ * {@link HeaderExchangeHandler#KEY_WRITE_TIMESTAMP}.
+ */
+public class IdleChannelHandler extends AbstractChannelHandlerDelegate {
+
+  private static final String ACTIVE_KEY = "dubbox.idle.active";
+
+  private static final String HEARTBEATS_SENT_KEY = "dubbox.idle.heartbeats.sent";
+
+  private static final String HEARTBEATS_ANSWERED_KEY = "dubbox.idle.heartbeats.answered";
+
+  public IdleChannelHandler(ChannelHandler handler) {
+    super(handler);
+  }
+
+  @Override
+  public void connected(Channel channel) throws RemotingException {
+    channel.setAttribute(ACTIVE_KEY, new AtomicLong(System.currentTimeMillis()));
+    channel.setAttribute(HEARTBEATS_SENT_KEY, new AtomicLong());
+    channel.setAttribute(HEARTBEATS_ANSWERED_KEY, new AtomicLong());
+    super.connected(channel);
+  }
+
+  @Override
+  public void sent(Channel channel, Object message) throws RemotingException {
+    if (message instanceof Request && ((Request) message).isEvent()) {
+      if (((Request) message).isHeartbeat()) {
+        increment(channel, HEARTBEATS_SENT_KEY);
+      }
+    } else if (message instanceof Response && ((Response) message).isEvent()) {
+      if (((Response) message).isHeartbeat()) {
+        increment(channel, HEARTBEATS_ANSWERED_KEY);
+      }
+    } else {
+      touch(channel);
+    }
+    super.sent(channel, message);
+  }
+
+  @Override
+  public void received(Channel channel, Object message) throws RemotingException {
+    // Heartbeats are answered, and their responses dropped, by Dubbo before reaching here
+    if (!(message instanceof Request && ((Request) message).isEvent())) {
+      touch(channel);
+    }
+    super.received(channel, message);
+  }
+
+  /**
+   * @return when the channel last carried a request or response, {@code null} before it is connected
+   */
+  public static Long getLastActive(Channel channel) {
+    AtomicLong active = (AtomicLong) channel.getAttribute(ACTIVE_KEY);
+    return active == null ? null : active.get();
+  }
+
+  public static Long getLastRead(Channel channel) {
+    return (Long) channel.getAttribute(HeaderExchangeHandler.KEY_READ_TIMESTAMP);
+  }
+
+  public static Long getLastWrite(Channel channel) {
+    return (Long) channel.getAttribute(HeaderExchangeHandler.KEY_WRITE_TIMESTAMP);
+  }
+
+  public static long getHeartbeatsSent(Channel channel) {
+    return get(channel, HEARTBEATS_SENT_KEY);
+  }
+
+  public static long getHeartbeatsAnswered(Channel channel) {
+    return get(channel, HEARTBEATS_ANSWERED_KEY);
+  }
+
+  private static void touch(Channel channel) {
+    AtomicLong active = (AtomicLong) channel.getAttribute(ACTIVE_KEY);
+    if (active != null) {
+      active.set(System.currentTimeMillis());
+    }
+  }
+
+  private static void increment(Channel channel, String key) {
+    AtomicLong counter = (AtomicLong) channel.getAttribute(key);
+    if (counter != null) {
+      counter.incrementAndGet();
+    }
+  }
+
+  private static long get(Channel channel, String key) {
+    AtomicLong counter = (AtomicLong) channel.getAttribute(key);
+    return counter == null ? 0 : counter.get();
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.exchange;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Client;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+import com.alibaba.dubbo.remoting.transport.AbstractClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of the {@link IdleExchanger}, sending heartbeats when idle and reaping its connection.
+ * While reaped the client reports itself connected, so that its invokers stay available, and the
+ * next request connects it again. If that connection fails the client stops reporting itself
+ * connected, and the transport keeps reconnecting it in the background.
+ */
+public class IdleExchangeClient implements ExchangeClient {
+
+  private static Logger logger = LoggerFactory.getLogger(IdleExchangeClient.class);
+
+  private final ExchangeClient client;
+
+  private final Client transportClient;
+
+  private final AtomicLong reaped = new AtomicLong();
+
+  private volatile boolean reaping;
+
+  private final AtomicBoolean reconnecting = new AtomicBoolean();
+
+  private volatile int heartbeat;
+
+  private volatile int heartbeatTimeout;
+
+  private volatile int idleTimeout;
+
+  private ScheduledFuture<?> check;
+
+  IdleExchangeClient(ExchangeClient client, Client transportClient, URL url) {
+    this.client = client;
+    this.transportClient = transportClient;
+    int heartbeat = url.getParameter(Constants.HEARTBEAT_KEY, Constants.DEFAULT_HEARTBEAT);
+    configure(heartbeat, url.getParameter(Constants.HEARTBEAT_TIMEOUT_KEY, heartbeat * 3),
+      url.getParameter(Constants.IDLE_TIMEOUT_KEY, Constants.DEFAULT_IDLE_TIMEOUT));
+  }
+
+  private synchronized void configure(int heartbeat, int heartbeatTimeout, int idleTimeout) {
+    if (check != null && heartbeat == this.heartbeat && heartbeatTimeout == this.heartbeatTimeout
+      && idleTimeout == this.idleTimeout) {
+      return;
+    }
+    this.heartbeat = heartbeat;
+    this.heartbeatTimeout = heartbeatTimeout;
+    this.idleTimeout = idleTimeout;
+    if (check != null) {
+      check.cancel(false);
+    }
+    check = IdleExchanger.schedule(new Runnable() {
+      @Override
+      public void run() {
+        check();
+      }
+    }, heartbeat > 0 ? heartbeat : idleTimeout);
+  }
+
+  private void check() {
+    if (!transportClient.isConnected()) {
+      // Reaped, or lost and reconnected by the transport
+      return;
+    }
+    reaping = false;
+    try {
+      long now = System.currentTimeMillis();
+      Long lastRead = IdleChannelHandler.getLastRead(transportClient);
+      Long lastActive = IdleChannelHandler.getLastActive(transportClient);
+      if (idleTimeout > 0 && lastActive != null && now - lastActive > idleTimeout
+        && transportClient instanceof AbstractClient && !DefaultFuture.hasFuture(transportClient)) {
+        logger.info("Dubbox: reaping connection to {}, idle for {}ms", getRemoteAddress(), now - lastActive);
+        reaping = true;
+        reaped.incrementAndGet();
+        ((AbstractClient) transportClient).disconnect();
+      } else if (heartbeatTimeout > 0 && lastRead != null && now - lastRead > heartbeatTimeout) {
+        if (reconnecting.compareAndSet(false, true)) {
+          logger.warn("Dubbox: reconnecting to {}, nothing received for {}ms", getRemoteAddress(), now - lastRead);
+          IdleExchanger.reconnect(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                transportClient.reconnect();
+              } catch (Throwable t) {
+                logger.warn("Dubbox: reconnecting to " + getRemoteAddress() + " failed", t);
+              } finally {
+                reconnecting.set(false);
+              }
+            }
+          });
+        }
+      } else if (heartbeat > 0 && lastRead != null && now - lastRead > heartbeat) {
+        Request request = new Request();
+        request.setVersion("2.0.0");
+        request.setTwoWay(true);
+        request.setEvent(Request.HEARTBEAT_EVENT);
+        transportClient.send(request);
+      }
+    } catch (Throwable t) {
+      logger.warn("Dubbox: idle check of connection to " + getRemoteAddress() + " failed", t);
+    }
+  }
+
+  @Override
+  public ResponseFuture request(Object request) throws RemotingException {
+    try {
+      return client.request(request);
+    } catch (RemotingException e) {
+      failed();
+      throw e;
+    }
+  }
+
+  @Override
+  public ResponseFuture request(Object request, int timeout) throws RemotingException {
+    try {
+      return client.request(request, timeout);
+    } catch (RemotingException e) {
+      failed();
+      throw e;
+    }
+  }
+
+  /**
+   * Stops reporting a reaped client connected once connecting it again failed.
+   */
+  private void failed() {
+    if (reaping && !transportClient.isConnected()) {
+      reaping = false;
+      logger.warn("Dubbox: failed to connect again to {} after reaping", getRemoteAddress());
+    }
+  }
+
+  @Override
+  public ExchangeHandler getExchangeHandler() {
+    return client.getExchangeHandler();
+  }
+
+  @Override
+  public void reconnect() throws RemotingException {
+    client.reconnect();
+  }
+
+  @Override
+  public void reset(URL url) {
+    if (url.hasParameter(Constants.HEARTBEAT_KEY) || url.hasParameter(Constants.HEARTBEAT_TIMEOUT_KEY)
+      || url.hasParameter(Constants.IDLE_TIMEOUT_KEY)) {
+      int heartbeat = url.getParameter(Constants.HEARTBEAT_KEY, this.heartbeat);
+      configure(heartbeat, url.getParameter(Constants.HEARTBEAT_TIMEOUT_KEY, heartbeat * 3),
+        url.getParameter(Constants.IDLE_TIMEOUT_KEY, idleTimeout));
+    }
+    client.reset(IdleExchanger.withoutHeartbeat(url));
+  }
+
+  @Override
+  @Deprecated
+  public void reset(com.alibaba.dubbo.common.Parameters parameters) {
+    reset(getUrl().addParameters(parameters.getParameters()));
+  }
+
+  @Override
+  public URL getUrl() {
+    return client.getUrl();
+  }
+
+  @Override
+  public ChannelHandler getChannelHandler() {
+    return client.getChannelHandler();
+  }
+
+  @Override
+  public InetSocketAddress getLocalAddress() {
+    return client.getLocalAddress();
+  }
+
+  @Override
+  public InetSocketAddress getRemoteAddress() {
+    return client.getRemoteAddress();
+  }
+
+  /**
+   * @return {@code true} also while reaped
+   */
+  @Override
+  public boolean isConnected() {
+    return reaping || client.isConnected();
+  }
+
+  @Override
+  public void send(Object message) throws RemotingException {
+    try {
+      client.send(message);
+    } catch (RemotingException e) {
+      failed();
+      throw e;
+    }
+  }
+
+  @Override
+  public void send(Object message, boolean sent) throws RemotingException {
+    try {
+      client.send(message, sent);
+    } catch (RemotingException e) {
+      failed();
+      throw e;
+    }
+  }
+
+  @Override
+  public boolean hasAttribute(String key) {
+    return client.hasAttribute(key);
+  }
+
+  @Override
+  public Object getAttribute(String key) {
+    return client.getAttribute(key);
+  }
+
+  @Override
+  public void setAttribute(String key, Object value) {
+    client.setAttribute(key, value);
+  }
+
+  @Override
+  public void removeAttribute(String key) {
+    client.removeAttribute(key);
+  }
+
+  @Override
+  public void close() {
+    cancel();
+    client.close();
+  }
+
+  @Override
+  public void close(int timeout) {
+    cancel();
+    client.close(timeout);
+  }
+
+  @Override
+  public boolean isClosed() {
+    return client.isClosed();
+  }
+
+  private synchronized void cancel() {
+    if (check != null) {
+      check.cancel(false);
+      check = null;
+    }
+    reaping = false;
+    IdleExchanger.remove(this);
+  }
+
+  public int getHeartbeat() {
+    return heartbeat;
+  }
+
+  public int getHeartbeatTimeout() {
+    return heartbeatTimeout;
+  }
+
+  public int getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * @return whether the connection is reaped until the next request
+   */
+  public boolean isReaped() {
+    return reaping && !transportClient.isConnected();
+  }
+
+  /**
+   * @return times the connection was reaped
+   */
+  public long getReapedCount() {
+    return reaped.get();
+  }
+
+  /**
+   * @return the transport channel, for its {@link IdleChannelHandler} statistics
+   */
+  public Client getTransportClient() {
+    return transportClient;
+  }
+
+  @Override
+  public String toString() {
+    return "IdleExchangeClient [" + client + "]";
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.exchange;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.support.ExchangeServerDelegate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server of the {@link IdleExchanger}, closing stale and idle channels.
+ */
+public class IdleExchangeServer extends ExchangeServerDelegate {
+
+  private static Logger logger = LoggerFactory.getLogger(IdleExchangeServer.class);
+
+  private final AtomicLong staleClosed = new AtomicLong();
+
+  private final AtomicLong idleClosed = new AtomicLong();
+
+  private volatile int heartbeat;
+
+  private volatile int heartbeatTimeout;
+
+  private volatile int idleTimeout;
+
+  private ScheduledFuture<?> check;
+
+  IdleExchangeServer(ExchangeServer server, URL url) {
+    super(server);
+    int heartbeat = url.getParameter(Constants.HEARTBEAT_KEY, Constants.DEFAULT_HEARTBEAT);
+    configure(heartbeat, url.getParameter(Constants.HEARTBEAT_TIMEOUT_KEY, heartbeat * 3),
+      url.getParameter(Constants.IDLE_TIMEOUT_KEY, Constants.DEFAULT_IDLE_TIMEOUT));
+  }
+
+  private synchronized void configure(int heartbeat, int heartbeatTimeout, int idleTimeout) {
+    if (check != null && heartbeat == this.heartbeat && heartbeatTimeout == this.heartbeatTimeout
+      && idleTimeout == this.idleTimeout) {
+      return;
+    }
+    this.heartbeat = heartbeat;
+    this.heartbeatTimeout = heartbeatTimeout;
+    this.idleTimeout = idleTimeout;
+    if (check != null) {
+      check.cancel(false);
+    }
+    check = IdleExchanger.schedule(new Runnable() {
+      @Override
+      public void run() {
+        check();
+      }
+    }, heartbeat > 0 ? heartbeat : idleTimeout);
+  }
+
+  private void check() {
+    long now = System.currentTimeMillis();
+    for (Channel channel : getChannels()) {
+      if (channel.isClosed()) {
+        continue;
+      }
+      try {
+        Long lastRead = IdleChannelHandler.getLastRead(channel);
+        Long lastActive = IdleChannelHandler.getLastActive(channel);
+        if (heartbeatTimeout > 0 && lastRead != null && now - lastRead > heartbeatTimeout) {
+          logger.warn("Dubbox: closing {}, nothing received for {}ms", channel, now - lastRead);
+          staleClosed.incrementAndGet();
+          channel.close();
+        } else if (idleTimeout > 0 && lastActive != null && now - lastActive > idleTimeout + heartbeatTimeout) {
+          logger.info("Dubbox: closing {}, idle for {}ms", channel, now - lastActive);
+          idleClosed.incrementAndGet();
+          channel.close();
+        }
+      } catch (Throwable t) {
+        logger.warn("Dubbox: idle check of " + channel + " failed", t);
+      }
+    }
+  }
+
+  @Override
+  public void reset(URL url) {
+    if (url.hasParameter(Constants.HEARTBEAT_KEY) || url.hasParameter(Constants.HEARTBEAT_TIMEOUT_KEY)
+      || url.hasParameter(Constants.IDLE_TIMEOUT_KEY)) {
+      int heartbeat = url.getParameter(Constants.HEARTBEAT_KEY, this.heartbeat);
+      configure(heartbeat, url.getParameter(Constants.HEARTBEAT_TIMEOUT_KEY, heartbeat * 3),
+        url.getParameter(Constants.IDLE_TIMEOUT_KEY, idleTimeout));
+    }
+    super.reset(IdleExchanger.withoutHeartbeat(url));
+  }
+
+  @Override
+  public void close() {
+    cancel();
+    super.close();
+  }
+
+  @Override
+  public void close(int timeout) {
+    cancel();
+    super.close(timeout);
+  }
+
+  private synchronized void cancel() {
+    if (check != null) {
+      check.cancel(false);
+      check = null;
+    }
+    IdleExchanger.remove(this);
+  }
+
+  public int getHeartbeat() {
+    return heartbeat;
+  }
+
+  public int getHeartbeatTimeout() {
+    return heartbeatTimeout;
+  }
+
+  public int getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  /**
+   * @return channels closed for receiving nothing for a heartbeat timeout
+   */
+  public long getStaleClosed() {
+    return staleClosed.get();
+  }
+
+  /**
+   * @return channels closed for carrying no request for an idle timeout
+   */
+  public long getIdleClosed() {
+    return idleClosed.get();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.exchange;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.remoting.Client;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.Transporters;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchanger;
+import com.alibaba.dubbo.remoting.exchange.support.header.HeaderExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.support.header.HeaderExchangeHandler;
+import com.alibaba.dubbo.remoting.exchange.support.header.HeaderExchangeServer;
+import com.alibaba.dubbo.remoting.transport.DecodeHandler;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Header exchanger for large consumer fleets, selected with {@code idle.exchange=true} on the
+ * protocol, see {@link IdleExchangerWrapper}, and passed to consumers through the registry:
+ * <ul>
+ * <li>only clients send heartbeats, on channels that received nothing for a {@code heartbeat},
+ * and reconnect channels that received nothing for a {@code heartbeat.timeout};</li>
+ * <li>clients close connections without requests for an {@code idle.timeout}, and connect again on
+ * the next request, staying available meanwhile;</li>
+ * <li>servers send no heartbeats, close channels that received nothing for a
+ * {@code heartbeat.timeout}, and, behind the clients, channels without requests for an
+ * {@code idle.timeout} and a {@code heartbeat.timeout}.</li>
+ * </ul>
+ * All servers and clients share one timer thread, their checks spread over the period. Clients
+ * reconnect on a separate pool, a connection may block for its {@code connect.timeout}.
+ *
+ * <p>It may also be selected with {@code exchanger=idle}, but every consumer then needs this
+ * starter: the registry passes the exchanger on, and Dubbo fails to refer without it.
+ */
+public class IdleExchanger implements Exchanger {
+
+  public static final String NAME = "idle";
+
+  private static final ScheduledExecutorService timer =
+    Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("DubboxIdleTimer", true));
+
+  private static final ExecutorService reconnector =
+    Executors.newCachedThreadPool(new NamedThreadFactory("DubboxIdleReconnect", true));
+
+  private static final Collection<IdleExchangeServer> servers = new ConcurrentHashSet<IdleExchangeServer>();
+
+  private static final Collection<IdleExchangeClient> clients = new ConcurrentHashSet<IdleExchangeClient>();
+
+  @Override
+  public ExchangeClient connect(URL url, ExchangeHandler handler) throws RemotingException {
+    // The heartbeats of HeaderExchangeClient are replaced, a reaped client connects on send
+    Client client = Transporters.connect(withoutHeartbeat(url).addParameter(Constants.SEND_RECONNECT_KEY, true),
+      new IdleChannelHandler(new DecodeHandler(new HeaderExchangeHandler(handler))));
+    IdleExchangeClient exchangeClient = new IdleExchangeClient(new HeaderExchangeClient(client), client, url);
+    clients.add(exchangeClient);
+    return exchangeClient;
+  }
+
+  @Override
+  public ExchangeServer bind(URL url, ExchangeHandler handler) throws RemotingException {
+    IdleExchangeServer server = new IdleExchangeServer(new HeaderExchangeServer(Transporters.bind(
+      withoutHeartbeat(url), new IdleChannelHandler(new DecodeHandler(new HeaderExchangeHandler(handler))))), url);
+    servers.add(server);
+    return server;
+  }
+
+  public static Collection<IdleExchangeServer> getServers() {
+    return Collections.unmodifiableCollection(servers);
+  }
+
+  public static Collection<IdleExchangeClient> getClients() {
+    return Collections.unmodifiableCollection(clients);
+  }
+
+  static void remove(IdleExchangeServer server) {
+    servers.remove(server);
+  }
+
+  static void remove(IdleExchangeClient client) {
+    clients.remove(client);
+  }
+
+  static URL withoutHeartbeat(URL url) {
+    return url.addParameter(Constants.HEARTBEAT_KEY, 0);
+  }
+
+  /**
+   * Runs a reconnection off the timer thread.
+   */
+  static void reconnect(Runnable reconnection) {
+    reconnector.execute(reconnection);
+  }
+
+  /**
+   * Runs the check every period, first after a random part of it.
+   */
+  static ScheduledFuture<?> schedule(Runnable check, int period) {
+    if (period <= 0) {
+      return null;
+    }
+    return timer.scheduleWithFixedDelay(check, 1 + ThreadLocalRandom.current().nextInt(period), period,
+      TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.exchange;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ExchangeHandler;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchanger;
+
+/**
+ * Wraps every {@link Exchanger} and binds and connects with the {@link IdleExchanger} when
+ * {@value #IDLE_EXCHANGE_KEY} is {@code true}. Unlike {@code exchanger=idle}, the parameter is
+ * ignored by consumers without this starter, which keep the header exchanger and its heartbeats.
+ */
+public class IdleExchangerWrapper implements Exchanger {
+
+  public static final String IDLE_EXCHANGE_KEY = "idle.exchange";
+
+  private static final IdleExchanger idleExchanger = new IdleExchanger();
+
+  private final Exchanger exchanger;
+
+  public IdleExchangerWrapper(Exchanger exchanger) {
+    this.exchanger = exchanger;
+  }
+
+  @Override
+  public ExchangeServer bind(URL url, ExchangeHandler handler) throws RemotingException {
+    return select(url).bind(url, handler);
+  }
+
+  @Override
+  public ExchangeClient connect(URL url, ExchangeHandler handler) throws RemotingException {
+    return select(url).connect(url, handler);
+  }
+
+  private Exchanger select(URL url) {
+    return url.getParameter(IDLE_EXCHANGE_KEY, false) && !(exchanger instanceof IdleExchanger)
+      ? idleExchanger : exchanger;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.index;
+
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Index of the classes annotated with Dubbo {@code @Service}, written by
+ * {@link ServiceIndexProcessor} to {@value #INDEX_LOCATION}. References need no index, their
+ * members are resolved on every bean.
+ *
+ * <p>Each line maps a class name to a comma separated list of kinds, {@value #SERVICE} so far.
+ * Indexes of all jars on the classpath are merged.
+ */
+public class ServiceIndex {
+
+  public static final String INDEX_LOCATION = "META-INF/dubbox.index";
+
+  public static final String SERVICE = "service";
+
+  private final Properties entries;
+
+  ServiceIndex(Properties entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Load the index from the given class loader.
+   *
+   * @return the merged index, or {@code null} if no index is present
+   * @throws IllegalStateException if an index cannot be read
+   */
+  public static ServiceIndex load(ClassLoader classLoader) {
+    try {
+      Enumeration<URL> urls = classLoader != null
+        ? classLoader.getResources(INDEX_LOCATION)
+        : ClassLoader.getSystemResources(INDEX_LOCATION);
+      if (!urls.hasMoreElements()) {
+        return null;
+      }
+      Properties entries = new Properties();
+      while (urls.hasMoreElements()) {
+        Properties properties = PropertiesLoaderUtils.loadProperties(new UrlResource(urls.nextElement()));
+        for (String className : properties.stringPropertyNames()) {
+          entries.setProperty(className, merge(entries.getProperty(className), properties.getProperty(className)));
+        }
+      }
+      return new ServiceIndex(entries);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to load index from location [" + INDEX_LOCATION + "]", e);
+    }
+  }
+
+  /**
+   * Return the indexed {@value #SERVICE} classes within the given packages.
+   */
+  public List<String> getServices(String[] packages) {
+    return getClassNames(SERVICE, packages);
+  }
+
+  private List<String> getClassNames(String kind, String[] packages) {
+    List<String> classNames = new ArrayList<String>();
+    for (String className : entries.stringPropertyNames()) {
+      if (contains(entries.getProperty(className), kind) && isInPackages(className, packages)) {
+        classNames.add(className);
+      }
+    }
+    Collections.sort(classNames);
+    return classNames;
+  }
+
+  private static boolean isInPackages(String className, String[] packages) {
+    if (packages == null || packages.length == 0) {
+      return true;
+    }
+    for (String pkg : packages) {
+      if (className.startsWith(pkg)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean contains(String kinds, String kind) {
+    if (kinds == null) {
+      return false;
+    }
+    for (String candidate : kinds.split(",")) {
+      if (candidate.trim().equals(kind)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static String merge(String kinds, String kind) {
+    if (kinds == null || kinds.isEmpty()) {
+      return kind;
+    }
+    for (String candidate : kind.split(",")) {
+      if (!contains(kinds, candidate.trim())) {
+        kinds = kinds + "," + candidate.trim();
+      }
+    }
+    return kinds;
+  }
+}
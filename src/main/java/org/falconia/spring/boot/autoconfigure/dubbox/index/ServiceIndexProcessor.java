@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Annotation processor writing the {@link ServiceIndex} of the classes being compiled.
+ *
+ * <p>It is registered as a service and therefore runs for every project compiling against the
+ * starter.
+ *
+ * <p>An incremental build only compiles the changed sources, so the index already in the class
+ * output is merged in: its entries are kept unless their class was compiled again, in which case
+ * the new entry replaces it, or no longer resolves. The processor therefore runs on every
+ * compilation, even one without any {@code @Service} left, and never claims the annotations.
+ */
+@SupportedAnnotationTypes("*")
+public class ServiceIndexProcessor extends AbstractProcessor {
+
+  static final String SERVICE_ANNOTATION = "com.alibaba.dubbo.config.annotation.Service";
+
+  private final Map<String, String> entries = new TreeMap<String, String>();
+
+  private final Set<String> processedTypes = new HashSet<String>();
+
+  private Properties previous;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    this.previous = readIndex();
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (Element element : roundEnv.getRootElements()) {
+      if (element instanceof TypeElement) {
+        processedTypes.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+      }
+    }
+    for (TypeElement annotation : annotations) {
+      if (!SERVICE_ANNOTATION.equals(annotation.getQualifiedName().toString())) {
+        continue;
+      }
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (element.getKind() == ElementKind.CLASS) {
+          String className = processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString();
+          entries.put(className, ServiceIndex.merge(entries.get(className), ServiceIndex.SERVICE));
+        }
+      }
+    }
+    if (roundEnv.processingOver()) {
+      mergePrevious();
+      if (!entries.isEmpty() || previous != null) {
+        writeIndex();
+      }
+    }
+    return false;
+  }
+
+  private void mergePrevious() {
+    if (previous == null) {
+      return;
+    }
+    for (String className : previous.stringPropertyNames()) {
+      if (!entries.containsKey(className) && shouldBeMerged(className)) {
+        entries.put(className, previous.getProperty(className));
+      }
+    }
+  }
+
+  private boolean shouldBeMerged(String className) {
+    int nested = className.indexOf('$');
+    if (processedTypes.contains(nested < 0 ? className : className.substring(0, nested))) {
+      return false;
+    }
+    return processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) != null;
+  }
+
+  private Properties readIndex() {
+    try {
+      FileObject file = processingEnv.getFiler()
+        .getResource(StandardLocation.CLASS_OUTPUT, "", ServiceIndex.INDEX_LOCATION);
+      InputStream in = file.openInputStream();
+      try {
+        Properties properties = new Properties();
+        properties.load(in);
+        return properties;
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      // no index yet, or a compiler not reading from the class output: the index is written from scratch
+      return null;
+    }
+  }
+
+  private void writeIndex() {
+    try {
+      FileObject file = processingEnv.getFiler()
+        .createResource(StandardLocation.CLASS_OUTPUT, "", ServiceIndex.INDEX_LOCATION);
+      OutputStream out = file.openOutputStream();
+      try {
+        Writer writer = new OutputStreamWriter(out, "ISO-8859-1");
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+          writer.write(entry.getKey());
+          writer.write('=');
+          writer.write(entry.getValue());
+          writer.write('\n');
+        }
+        writer.flush();
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+        "Failed to write " + ServiceIndex.INDEX_LOCATION + ": " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.injvm;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayInputStream;
+import com.alibaba.dubbo.common.io.UnsafeByteArrayOutputStream;
+import com.alibaba.dubbo.common.serialize.ObjectInput;
+import com.alibaba.dubbo.common.serialize.ObjectOutput;
+import com.alibaba.dubbo.common.serialize.Serialization;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+/**
+ * Copies the arguments and the return value of in-JVM invocations through the configured
+ * serialization, so the consumer and the provider never share mutable objects. Copies are read
+ * back with the declared, generic types of the invoked method, or as plain objects for generic
+ * invocations.
+ *
+ * <p>Active on references with the {@code injvm.copy} parameter; remote invocations pass through
+ * untouched since they are serialized anyway.
+ */
+@Activate(group = Constants.CONSUMER, value = InjvmCopyFilter.COPY_KEY)
+public class InjvmCopyFilter implements Filter {
+
+  public static final String NAME = "injvmcopy";
+
+  public static final String COPY_KEY = "injvm.copy";
+
+  private static final String INJVM_PROTOCOL = "injvm";
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    URL url = invoker.getUrl();
+    if (!INJVM_PROTOCOL.equals(url.getProtocol())) {
+      return invoker.invoke(invocation);
+    }
+
+    Serialization serialization = ExtensionLoader.getExtensionLoader(Serialization.class).getExtension(
+      url.getParameter(Constants.SERIALIZATION_KEY, Constants.DEFAULT_REMOTING_SERIALIZATION));
+    Method method = getMethod(invoker, invocation);
+    Object[] arguments = invocation.getArguments();
+    if (arguments != null && arguments.length > 0) {
+      Class<?>[] parameterTypes = invocation.getParameterTypes();
+      Type[] genericTypes = method != null ? method.getGenericParameterTypes() : parameterTypes;
+      Object[] copies = new Object[arguments.length];
+      for (int i = 0; i < arguments.length; i++) {
+        copies[i] = copy(serialization, url, arguments[i], parameterTypes[i], genericTypes[i]);
+      }
+      RpcInvocation copy = new RpcInvocation(invocation);
+      copy.setArguments(copies);
+      invocation = copy;
+    }
+
+    Result result = invoker.invoke(invocation);
+    if (result.hasException() || result.getValue() == null) {
+      return result;
+    }
+    RpcResult copy = new RpcResult(method != null
+      ? copy(serialization, url, result.getValue(), method.getReturnType(), method.getGenericReturnType())
+      : copy(serialization, url, result.getValue(), Object.class, Object.class));
+    copy.setAttachments(result.getAttachments());
+    return copy;
+  }
+
+  /**
+   * The invoked method of the service interface, {@code null} for a generic invocation.
+   */
+  private static Method getMethod(Invoker<?> invoker, Invocation invocation) {
+    if (invocation.getMethodName().startsWith("$")) {
+      return null;
+    }
+    try {
+      return invoker.getInterface().getMethod(invocation.getMethodName(), invocation.getParameterTypes());
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static Object copy(Serialization serialization, URL url, Object value, Class<?> type, Type genericType) {
+    if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+      || value instanceof Character || value instanceof Enum) {
+      // Immutable, safe to share
+      return value;
+    }
+    try {
+      UnsafeByteArrayOutputStream bytes = new UnsafeByteArrayOutputStream(256);
+      ObjectOutput output = serialization.serialize(url, bytes);
+      output.writeObject(value);
+      output.flushBuffer();
+      ObjectInput input = serialization.deserialize(url,
+        new UnsafeByteArrayInputStream(bytes.toByteArray(), 0, bytes.size()));
+      return input.readObject(type, genericType);
+    } catch (IOException e) {
+      throw new RpcException("Failed to copy " + value.getClass().getName() + " for in-JVM invocation", e);
+    } catch (ClassNotFoundException e) {
+      throw new RpcException("Failed to copy " + value.getClass().getName() + " for in-JVM invocation", e);
+    }
+  }
+}
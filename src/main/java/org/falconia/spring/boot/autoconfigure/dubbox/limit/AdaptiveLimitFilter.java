@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.limit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.remoting.TimeoutException;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import org.falconia.spring.boot.autoconfigure.dubbox.async.ObservableResponseFuture;
+
+import java.util.concurrent.Future;
+
+/**
+ * Applies the {@link AdaptiveLimiter} of the invoked method, rejecting calls over the limit right
+ * away. A consumer fails over to another provider on the rejection, if retries are allowed.
+ *
+ * <p>Active on services and references with {@code limiter=adaptive}.
+ */
+@Activate(group = {Constants.PROVIDER, Constants.CONSUMER}, value = AdaptiveLimiter.LIMITER_KEY, order = -8000)
+public class AdaptiveLimitFilter implements Filter {
+
+  public static final String NAME = "adaptivelimit";
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    URL url = invoker.getUrl();
+    String methodName = invocation.getMethodName();
+    if (!AdaptiveLimiter.ADAPTIVE.equals(url.getMethodParameter(methodName, AdaptiveLimiter.LIMITER_KEY))) {
+      return invoker.invoke(invocation);
+    }
+
+    final AdaptiveLimiter limiter = AdaptiveLimiter.getLimiter(url, methodName);
+    if (!limiter.tryAcquire()) {
+      throw new RpcException("Failed to invoke method " + methodName + " in " + url.getParameter(Constants.SIDE_KEY)
+        + " " + url + ", cause: The concurrent invocations reached the adaptive limit " + limiter.getLimit() + ".");
+    }
+    final long start = System.nanoTime();
+    Future<?> previous = RpcContext.getContext().getFuture();
+    boolean dropped = false;
+    boolean pending = false;
+    try {
+      Result result = invoker.invoke(invocation);
+      // The permit of an asynchronous call is held until its response arrives
+      pending = ObservableResponseFuture.observe(invoker, invocation, previous, new ResponseCallback() {
+        @Override
+        public void done(Object response) {
+          limiter.release(System.nanoTime() - start, false);
+        }
+
+        @Override
+        public void caught(Throwable exception) {
+          limiter.release(System.nanoTime() - start, exception instanceof TimeoutException);
+        }
+      });
+      return result;
+    } catch (RpcException e) {
+      dropped = e.isTimeout();
+      throw e;
+    } finally {
+      if (!pending) {
+        limiter.release(System.nanoTime() - start, dropped);
+      }
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.limit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import org.falconia.spring.boot.autoconfigure.dubbox.util.WeakIdentityMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrency limit of one method, adjusted from the observed response times by a gradient: each
+ * response time is compared with a long-term average, the limit shrinks in proportion once
+ * responses are more than 1.5 times slower, which means requests are queueing, and otherwise grows
+ * by its square root. Updates are smoothed and happen only while the limit is at least half used.
+ *
+ * <p>The long-term average slowly follows a lasting change of the response time, so a provider
+ * that got slower for good is not throttled forever.
+ *
+ * <p>Releases update the estimate without locking, by swapping it with a compare-and-set.
+ */
+public class AdaptiveLimiter {
+
+  public static final String LIMITER_KEY = "limiter";
+
+  public static final String ADAPTIVE = "adaptive";
+
+  public static final String INITIAL_KEY = "limiter.initial";
+
+  public static final String MAX_KEY = "limiter.max";
+
+  public static final int DEFAULT_INITIAL = 20;
+
+  public static final int DEFAULT_MAX = 1000;
+
+  private static final double SMOOTHING = 0.2;
+
+  private static final double TOLERANCE = 1.5;
+
+  private static final double MIN_GRADIENT = 0.5;
+
+  private static final double LONG_RTT_ALPHA = 2.0 / 601;
+
+  private static final ConcurrentMap<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<String, AdaptiveLimiter>();
+
+  /**
+   * Limiters of each invoker URL by method, saving the identity string of the URL on every call.
+   */
+  private static final WeakIdentityMap<URL, ConcurrentMap<String, AdaptiveLimiter>> urlLimiters =
+    new WeakIdentityMap<URL, ConcurrentMap<String, AdaptiveLimiter>>();
+
+  private static final List<Listener> listeners = new ArrayList<Listener>();
+
+  private final String side;
+
+  private final String service;
+
+  private final String method;
+
+  private final String address;
+
+  private final int maxLimit;
+
+  private final AtomicInteger inflight = new AtomicInteger();
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  private final AtomicReference<Estimate> estimate;
+
+  private AdaptiveLimiter(URL url, String method, int initialLimit, int maxLimit) {
+    this.side = url.getParameter(Constants.SIDE_KEY, Constants.PROVIDER_SIDE);
+    this.service = url.getServiceInterface();
+    this.method = method;
+    this.address = url.getAddress();
+    this.maxLimit = Math.max(1, maxLimit);
+    this.estimate = new AtomicReference<Estimate>(
+      new Estimate(Math.max(1, Math.min(initialLimit, this.maxLimit)), 0));
+  }
+
+  /**
+   * The limiter of the method, created on first use. Static {@code actives} or {@code executes}
+   * values of the method cap its limit.
+   */
+  public static AdaptiveLimiter getLimiter(URL url, String method) {
+    ConcurrentMap<String, AdaptiveLimiter> methods = urlLimiters.get(url);
+    if (methods == null) {
+      urlLimiters.putIfAbsent(url, new ConcurrentHashMap<String, AdaptiveLimiter>());
+      methods = urlLimiters.get(url);
+    }
+    AdaptiveLimiter limiter = methods.get(method);
+    if (limiter == null) {
+      methods.putIfAbsent(method, createLimiter(url, method));
+      limiter = methods.get(method);
+    }
+    return limiter;
+  }
+
+  /**
+   * The limiter shared by all URLs with the identity of the given one.
+   */
+  private static AdaptiveLimiter createLimiter(URL url, String method) {
+    String key = url.toIdentityString() + "#" + method;
+    AdaptiveLimiter limiter = limiters.get(key);
+    if (limiter == null) {
+      int max = url.getMethodParameter(method, MAX_KEY, DEFAULT_MAX);
+      String staticKey = Constants.CONSUMER_SIDE.equals(url.getParameter(Constants.SIDE_KEY))
+        ? Constants.ACTIVES_KEY : Constants.EXECUTES_KEY;
+      int staticMax = url.getMethodParameter(method, staticKey, 0);
+      if (staticMax > 0) {
+        max = Math.min(max, staticMax);
+      }
+      AdaptiveLimiter created = new AdaptiveLimiter(url, method,
+        url.getMethodParameter(method, INITIAL_KEY, DEFAULT_INITIAL), max);
+      limiter = limiters.putIfAbsent(key, created);
+      if (limiter == null) {
+        created(created);
+        limiter = created;
+      }
+    }
+    return limiter;
+  }
+
+  /**
+   * Adds the listener and calls it back for every limiter created so far.
+   */
+  public static synchronized void addListener(Listener listener) {
+    listeners.add(listener);
+    for (AdaptiveLimiter limiter : limiters.values()) {
+      listener.onCreated(limiter);
+    }
+  }
+
+  public static synchronized void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public static List<AdaptiveLimiter> getLimiters() {
+    return Collections.unmodifiableList(new ArrayList<AdaptiveLimiter>(limiters.values()));
+  }
+
+  private static synchronized void created(AdaptiveLimiter limiter) {
+    for (Listener listener : listeners) {
+      listener.onCreated(limiter);
+    }
+  }
+
+  /**
+   * Takes a permit for one call, or returns {@code false} when the limit is reached.
+   */
+  public boolean tryAcquire() {
+    int limit = getLimit();
+    for (;;) {
+      int current = inflight.get();
+      if (current >= limit) {
+        rejected.incrementAndGet();
+        return false;
+      }
+      if (inflight.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns the permit of a call, with its response time. A dropped call, e.g. on a timeout,
+   * always shrinks the limit.
+   */
+  public void release(long rttNanos, boolean dropped) {
+    int current = inflight.getAndDecrement();
+    update(rttNanos, current, dropped);
+  }
+
+  private void update(long rtt, int inflight, boolean dropped) {
+    if (rtt <= 0) {
+      return;
+    }
+    for (;;) {
+      Estimate current = estimate.get();
+      if (estimate.compareAndSet(current, current.update(rtt, inflight, dropped, maxLimit))) {
+        return;
+      }
+    }
+  }
+
+  public String getSide() {
+    return side;
+  }
+
+  public String getService() {
+    return service;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getAddress() {
+    return address;
+  }
+
+  public int getLimit() {
+    return (int) estimate.get().limit;
+  }
+
+  public int getInflight() {
+    return inflight.get();
+  }
+
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  public interface Listener {
+
+    void onCreated(AdaptiveLimiter limiter);
+  }
+
+  /**
+   * Estimated limit and long-term average response time, replaced as a whole on each update.
+   */
+  private static final class Estimate {
+
+    private final double limit;
+
+    private final double longRtt;
+
+    Estimate(double limit, double longRtt) {
+      this.limit = limit;
+      this.longRtt = longRtt;
+    }
+
+    Estimate update(long rtt, int inflight, boolean dropped, int maxLimit) {
+      double longRtt;
+      if (this.longRtt == 0) {
+        longRtt = rtt;
+      } else {
+        longRtt = this.longRtt * (1 - LONG_RTT_ALPHA) + rtt * LONG_RTT_ALPHA;
+        if (longRtt / rtt > 2) {
+          // Latency dropped for good, let the baseline follow quickly
+          longRtt *= 0.95;
+        }
+      }
+      if (!dropped && inflight * 2 < limit) {
+        // Not enough load to tell anything about the limit
+        return new Estimate(limit, longRtt);
+      }
+      double gradient = dropped ? MIN_GRADIENT
+        : Math.max(MIN_GRADIENT, Math.min(1, TOLERANCE * longRtt / rtt));
+      double updated = limit * gradient + Math.sqrt(limit);
+      return new Estimate(Math.max(1, Math.min(maxLimit, limit * (1 - SMOOTHING) + updated * SMOOTHING)), longRtt);
+    }
+  }
+}
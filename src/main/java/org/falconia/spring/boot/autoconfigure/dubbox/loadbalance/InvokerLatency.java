@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.loadbalance;
+
+import com.alibaba.dubbo.common.URL;
+import org.falconia.spring.boot.autoconfigure.dubbox.util.WeakIdentityMap;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-flight count and exponentially weighted moving average of the response time of one provider,
+ * shared by all methods of the provider's service.
+ *
+ * <p>The average decays with time rather than per sample, so a provider that was slow a while
+ * ago recovers even when it is rarely picked.
+ *
+ * <p>Latencies are kept by the URL instance of the provider invoker, which the load balancer and
+ * the filter both see, and go away with the invoker once it is destroyed.
+ */
+public class InvokerLatency {
+
+  public static final String DECAY_KEY = "p2c.decay";
+
+  public static final long DEFAULT_DECAY = 10000;
+
+  private static final WeakIdentityMap<URL, InvokerLatency> latencies = new WeakIdentityMap<URL, InvokerLatency>();
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  private final long decayNanos;
+
+  private volatile double ewmaNanos;
+
+  private volatile long lastUpdate = System.nanoTime();
+
+  private InvokerLatency(long decayMillis) {
+    this.decayNanos = Math.max(1, decayMillis) * 1000000L;
+  }
+
+  public static InvokerLatency getLatency(URL url) {
+    InvokerLatency latency = latencies.get(url);
+    if (latency == null) {
+      latencies.putIfAbsent(url, new InvokerLatency(url.getParameter(DECAY_KEY, DEFAULT_DECAY)));
+      latency = latencies.get(url);
+    }
+    return latency;
+  }
+
+  public int getActive() {
+    return active.get();
+  }
+
+  /**
+   * Average response time in nanoseconds, 0 until the first response.
+   */
+  public double getEwmaNanos() {
+    return ewmaNanos;
+  }
+
+  void begin() {
+    active.incrementAndGet();
+  }
+
+  void end(long elapsedNanos) {
+    active.decrementAndGet();
+    long now = System.nanoTime();
+    double current = ewmaNanos;
+    if (current == 0) {
+      ewmaNanos = elapsedNanos;
+    } else {
+      // Concurrent updates may overwrite each other, losing a sample is harmless for an average
+      double weight = Math.exp(-(double) Math.max(0, now - lastUpdate) / decayNanos);
+      ewmaNanos = current * weight + elapsedNanos * (1 - weight);
+    }
+    lastUpdate = now;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.loadbalance;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import org.falconia.spring.boot.autoconfigure.dubbox.async.ObservableResponseFuture;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the {@link InvokerLatency} of each provider for the {@code p2c} load balancer.
+ *
+ * <p>Calls failing with an {@link RpcException}, e.g. on a timeout or a lost connection, count
+ * with the full timeout so the provider is avoided until it answers again. Asynchronous calls are
+ * measured until their response arrives.
+ */
+@Activate(group = Constants.CONSUMER, value = Constants.LOADBALANCE_KEY)
+public class InvokerLatencyFilter implements Filter {
+
+  public static final String NAME = "latency";
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    URL url = invoker.getUrl();
+    String methodName = invocation.getMethodName();
+    if (!PowerOfTwoChoicesLoadBalance.NAME.equals(url.getMethodParameter(methodName, Constants.LOADBALANCE_KEY))) {
+      return invoker.invoke(invocation);
+    }
+
+    final InvokerLatency latency = InvokerLatency.getLatency(url);
+    latency.begin();
+    final long start = System.nanoTime();
+    final long timeout = TimeUnit.MILLISECONDS.toNanos(
+      url.getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT));
+    Future<?> previous = RpcContext.getContext().getFuture();
+    long elapsed = -1;
+    boolean pending = false;
+    try {
+      Result result = invoker.invoke(invocation);
+      elapsed = System.nanoTime() - start;
+      pending = ObservableResponseFuture.observe(invoker, invocation, previous, new ResponseCallback() {
+        @Override
+        public void done(Object response) {
+          latency.end(System.nanoTime() - start);
+        }
+
+        @Override
+        public void caught(Throwable exception) {
+          latency.end(Math.max(System.nanoTime() - start, timeout));
+        }
+      });
+      return result;
+    } finally {
+      if (elapsed < 0) {
+        latency.end(Math.max(System.nanoTime() - start, timeout));
+      } else if (!pending) {
+        latency.end(elapsed);
+      }
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.loadbalance;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.cluster.loadbalance.AbstractLoadBalance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks two providers at random and sends the call to the one with the lower cost, where the cost
+ * is the {@link InvokerLatency moving average response time} times the in-flight calls, divided by
+ * the weight. A degraded provider quickly gets less traffic, while random sampling keeps the
+ * others from being overloaded by a herd.
+ *
+ * <p>Selected with {@code loadbalance="p2c"}; the latencies are recorded by the
+ * {@link InvokerLatencyFilter}.
+ */
+public class PowerOfTwoChoicesLoadBalance extends AbstractLoadBalance {
+
+  public static final String NAME = "p2c";
+
+  @Override
+  protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
+    int size = invokers.size();
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(size);
+    int second = random.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+    Invoker<T> a = invokers.get(first);
+    Invoker<T> b = invokers.get(second);
+    return getCost(a, invocation) <= getCost(b, invocation) ? a : b;
+  }
+
+  private double getCost(Invoker<?> invoker, Invocation invocation) {
+    int weight = getWeight(invoker, invocation);
+    if (weight <= 0) {
+      return Double.MAX_VALUE;
+    }
+    InvokerLatency latency = InvokerLatency.getLatency(invoker.getUrl());
+    // An unmeasured provider costs 1ns per call, so it is tried soon
+    return (latency.getEwmaNanos() + 1) * (latency.getActive() + 1) / weight;
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.metrics;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records invocation latencies into per-method HdrHistogram {@link Recorder}s and keeps them over a
+ * rolling window, made of {@code slots} intervals that are rolled on a timer. Percentiles are read
+ * from the completed intervals, so they lag by at most one interval.
+ */
+public class HdrLatencyMetrics implements InvocationMetrics, InitializingBean, DisposableBean {
+
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+  private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, Window>> providerWindows =
+    new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Window>>();
+
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, Window>> consumerWindows =
+    new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Window>>();
+
+  private final long windowMillis;
+
+  private final int slots;
+
+  private ScheduledExecutorService roller;
+
+  public HdrLatencyMetrics() {
+    this(60000, 6);
+  }
+
+  public HdrLatencyMetrics(long windowMillis, int slots) {
+    if (windowMillis <= 0 || slots <= 0) {
+      throw new IllegalArgumentException("windowMillis and slots must be positive");
+    }
+    this.windowMillis = windowMillis;
+    this.slots = slots;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    long interval = Math.max(1, windowMillis / slots);
+    roller = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("DubboxLatencyRoller", true));
+    roller.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        roll(providerWindows);
+        roll(consumerWindows);
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+    MetricsFilter.register(this);
+  }
+
+  @Override
+  public void destroy() {
+    MetricsFilter.unregister(this);
+    roller.shutdownNow();
+  }
+
+  public long getWindowMillis() {
+    return windowMillis;
+  }
+
+  @Override
+  public MethodMetrics getMethodMetrics(String side, Class<?> service, String method) {
+    ConcurrentMap<Class<?>, ConcurrentMap<String, Window>> sideWindows =
+      Constants.CONSUMER_SIDE.equals(side) ? consumerWindows : providerWindows;
+    ConcurrentMap<String, Window> serviceWindows = sideWindows.get(service);
+    if (serviceWindows == null) {
+      sideWindows.putIfAbsent(service, new ConcurrentHashMap<String, Window>());
+      serviceWindows = sideWindows.get(service);
+    }
+    Window window = serviceWindows.get(method);
+    if (window == null) {
+      serviceWindows.putIfAbsent(method, new Window(slots));
+      window = serviceWindows.get(method);
+    }
+    return window;
+  }
+
+  /**
+   * Percentile tables of one side, keyed by service and method. Latencies are in milliseconds.
+   *
+   * @param side {@code provider} or {@code consumer}
+   */
+  public Map<String, Map<String, Map<String, Object>>> getPercentiles(String side) {
+    ConcurrentMap<Class<?>, ConcurrentMap<String, Window>> sideWindows =
+      Constants.CONSUMER_SIDE.equals(side) ? consumerWindows : providerWindows;
+    Map<String, Map<String, Map<String, Object>>> services = new TreeMap<String, Map<String, Map<String, Object>>>();
+    for (Map.Entry<Class<?>, ConcurrentMap<String, Window>> service : sideWindows.entrySet()) {
+      Map<String, Map<String, Object>> methods = new TreeMap<String, Map<String, Object>>();
+      for (Map.Entry<String, Window> method : service.getValue().entrySet()) {
+        methods.put(method.getKey(), method.getValue().percentiles());
+      }
+      services.put(service.getKey().getName(), methods);
+    }
+    return services;
+  }
+
+  private static void roll(ConcurrentMap<Class<?>, ConcurrentMap<String, Window>> sideWindows) {
+    for (ConcurrentMap<String, Window> serviceWindows : sideWindows.values()) {
+      for (Window window : serviceWindows.values()) {
+        window.roll();
+      }
+    }
+  }
+
+  private static class Window implements MethodMetrics {
+
+    private final Recorder recorder = new Recorder(2);
+
+    private final Histogram[] intervals;
+
+    private int current;
+
+    Window(int slots) {
+      this.intervals = new Histogram[slots];
+    }
+
+    @Override
+    public void begin() {
+    }
+
+    @Override
+    public void end(long elapsedNanos, boolean failed) {
+      recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    synchronized void roll() {
+      current = (current + 1) % intervals.length;
+      // the interval falling out of the window is recycled for the next one
+      intervals[current] = recorder.getIntervalHistogram(intervals[current]);
+    }
+
+    synchronized Map<String, Object> percentiles() {
+      Histogram total = null;
+      for (Histogram interval : intervals) {
+        if (interval != null) {
+          if (total == null) {
+            total = interval.copy();
+          } else {
+            total.add(interval);
+          }
+        }
+      }
+      Map<String, Object> table = new LinkedHashMap<String, Object>();
+      long count = total == null ? 0 : total.getTotalCount();
+      table.put("count", count);
+      if (count > 0) {
+        table.put("mean", total.getMean() / 1000);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+          table.put(PERCENTILE_NAMES[i], total.getValueAtPercentile(PERCENTILES[i]) / 1000.0);
+        }
+        table.put("max", total.getMaxValue() / 1000.0);
+      }
+      return table;
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.metrics;
+
+/**
+ * Sink for the invocations observed by {@link MetricsFilter}.
+ *
+ * <p>Implementations are called on the RPC hot path and must resolve and update their per-method
+ * state without allocating.
+ */
+public interface InvocationMetrics {
+
+  /**
+   * Return the recorder for a method, creating it on first use.
+   *
+   * @param side {@code provider} or {@code consumer}
+   * @param service the service interface
+   * @param method the method name
+   */
+  MethodMetrics getMethodMetrics(String side, Class<?> service, String method);
+
+  interface MethodMetrics {
+
+    void begin();
+
+    void end(long elapsedNanos, boolean failed);
+  }
+}
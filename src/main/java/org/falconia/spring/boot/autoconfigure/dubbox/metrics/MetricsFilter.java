@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.metrics;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
+import org.falconia.spring.boot.autoconfigure.dubbox.async.ObservableResponseFuture;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+/**
+ * Records every provider and consumer invocation into the registered {@link InvocationMetrics}.
+ *
+ * <p>Active by default; exclude it per service or globally with {@code filter="-metrics"}.
+ * Without any registered sink the filter only forwards the call. The recorders of the sinks are
+ * resolved once per method, so a call does not allocate whatever the number of sinks. Asynchronous
+ * consumer calls end when their response arrives.
+ */
+@Activate(group = {Constants.PROVIDER, Constants.CONSUMER}, order = -9000)
+public class MetricsFilter implements Filter {
+
+  public static final String NAME = "metrics";
+
+  private static final InvocationMetrics[] NONE = new InvocationMetrics[0];
+
+  private static volatile Sinks sinks = new Sinks(NONE);
+
+  public static synchronized void register(InvocationMetrics invocationMetrics) {
+    InvocationMetrics[] current = sinks.metrics;
+    InvocationMetrics[] updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = invocationMetrics;
+    sinks = new Sinks(updated);
+  }
+
+  public static synchronized void unregister(InvocationMetrics invocationMetrics) {
+    InvocationMetrics[] current = sinks.metrics;
+    for (int i = 0; i < current.length; i++) {
+      if (current[i] == invocationMetrics) {
+        InvocationMetrics[] updated = new InvocationMetrics[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, i);
+        System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+        sinks = new Sinks(updated);
+        return;
+      }
+    }
+  }
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    Sinks current = sinks;
+    if (current.metrics.length == 0) {
+      return invoker.invoke(invocation);
+    }
+
+    final InvocationMetrics.MethodMetrics methodMetrics = current.getMethodMetrics(
+      invoker.getUrl().getParameter(Constants.SIDE_KEY, Constants.PROVIDER_SIDE), invoker.getInterface(),
+      RpcUtils.getMethodName(invocation));
+    methodMetrics.begin();
+    final long start = System.nanoTime();
+    Future<?> previous = RpcContext.getContext().getFuture();
+    boolean failed = true;
+    boolean pending = false;
+    try {
+      Result result = invoker.invoke(invocation);
+      failed = result.hasException();
+      pending = ObservableResponseFuture.observe(invoker, invocation, previous, new ResponseCallback() {
+        @Override
+        public void done(Object response) {
+          methodMetrics.end(System.nanoTime() - start, ((Result) response).hasException());
+        }
+
+        @Override
+        public void caught(Throwable exception) {
+          methodMetrics.end(System.nanoTime() - start, true);
+        }
+      });
+      return result;
+    } finally {
+      if (!pending) {
+        methodMetrics.end(System.nanoTime() - start, failed);
+      }
+    }
+  }
+
+  /**
+   * The registered sinks and the recorders of every method resolved from them, replaced as a whole
+   * when a sink is registered or unregistered.
+   */
+  private static class Sinks {
+
+    final InvocationMetrics[] metrics;
+
+    final ConcurrentMap<Class<?>, ConcurrentMap<String, InvocationMetrics.MethodMetrics>> providerMethods =
+      new ConcurrentHashMap<Class<?>, ConcurrentMap<String, InvocationMetrics.MethodMetrics>>();
+
+    final ConcurrentMap<Class<?>, ConcurrentMap<String, InvocationMetrics.MethodMetrics>> consumerMethods =
+      new ConcurrentHashMap<Class<?>, ConcurrentMap<String, InvocationMetrics.MethodMetrics>>();
+
+    Sinks(InvocationMetrics[] metrics) {
+      this.metrics = metrics;
+    }
+
+    InvocationMetrics.MethodMetrics getMethodMetrics(String side, Class<?> service, String method) {
+      ConcurrentMap<Class<?>, ConcurrentMap<String, InvocationMetrics.MethodMetrics>> sideMethods =
+        Constants.CONSUMER_SIDE.equals(side) ? consumerMethods : providerMethods;
+      ConcurrentMap<String, InvocationMetrics.MethodMetrics> serviceMethods = sideMethods.get(service);
+      if (serviceMethods == null) {
+        sideMethods.putIfAbsent(service, new ConcurrentHashMap<String, InvocationMetrics.MethodMetrics>());
+        serviceMethods = sideMethods.get(service);
+      }
+      InvocationMetrics.MethodMetrics methodMetrics = serviceMethods.get(method);
+      if (methodMetrics == null) {
+        // Sinks return the same recorder of a method, a composite losing the race is equivalent
+        serviceMethods.putIfAbsent(method, resolve(side, service, method));
+        methodMetrics = serviceMethods.get(method);
+      }
+      return methodMetrics;
+    }
+
+    private InvocationMetrics.MethodMetrics resolve(String side, Class<?> service, String method) {
+      if (metrics.length == 1) {
+        return metrics[0].getMethodMetrics(side, service, method);
+      }
+      InvocationMetrics.MethodMetrics[] methodMetrics = new InvocationMetrics.MethodMetrics[metrics.length];
+      for (int i = 0; i < metrics.length; i++) {
+        methodMetrics[i] = metrics[i].getMethodMetrics(side, service, method);
+      }
+      return new CompositeMethodMetrics(methodMetrics);
+    }
+  }
+
+  private static class CompositeMethodMetrics implements InvocationMetrics.MethodMetrics {
+
+    private final InvocationMetrics.MethodMetrics[] methodMetrics;
+
+    CompositeMethodMetrics(InvocationMetrics.MethodMetrics[] methodMetrics) {
+      this.methodMetrics = methodMetrics;
+    }
+
+    @Override
+    public void begin() {
+      for (InvocationMetrics.MethodMetrics metrics : methodMetrics) {
+        metrics.begin();
+      }
+    }
+
+    @Override
+    public void end(long elapsedNanos, boolean failed) {
+      for (InvocationMetrics.MethodMetrics metrics : methodMetrics) {
+        metrics.end(elapsedNanos, failed);
+      }
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.falconia.spring.boot.autoconfigure.dubbox.cache.BoundedCache;
+import org.falconia.spring.boot.autoconfigure.dubbox.cache.BoundedCacheFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Publishes the statistics of every {@link BoundedCache} to Micrometer as the standard
+ * {@code cache.*} meters, named after the service method and tagged with {@code side} and
+ * {@code address}.
+ */
+public class MicrometerCacheMetrics implements BoundedCacheFactory.Listener, InitializingBean, DisposableBean {
+
+  private final MeterRegistry registry;
+
+  public MicrometerCacheMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    BoundedCacheFactory.addListener(this);
+  }
+
+  @Override
+  public void destroy() {
+    BoundedCacheFactory.removeListener(this);
+  }
+
+  @Override
+  public void onCreated(BoundedCache cache) {
+    CaffeineCacheMetrics.monitor(registry, cache.getNativeCache(), cache.getName(),
+      "side", cache.getSide(), "address", cache.getAddress());
+  }
+}
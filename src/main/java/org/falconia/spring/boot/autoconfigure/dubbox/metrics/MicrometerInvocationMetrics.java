@@ -0,0 +1,123 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.metrics;
+
+import com.alibaba.dubbo.common.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes invocation metrics to Micrometer, tagged with {@code side}, {@code service} and
+ * {@code method}:
+ * <ul>
+ * <li>{@code dubbo.requests} timer, giving call count and latency</li>
+ * <li>{@code dubbo.requests.errors} counter</li>
+ * <li>{@code dubbo.requests.active} gauge of in-flight calls</li>
+ * </ul>
+ */
+public class MicrometerInvocationMetrics implements InvocationMetrics, InitializingBean, DisposableBean {
+
+  private final MeterRegistry registry;
+
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, Meters>> providerMeters =
+    new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Meters>>();
+
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, Meters>> consumerMeters =
+    new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Meters>>();
+
+  public MicrometerInvocationMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    MetricsFilter.register(this);
+  }
+
+  @Override
+  public void destroy() {
+    MetricsFilter.unregister(this);
+  }
+
+  @Override
+  public MethodMetrics getMethodMetrics(String side, Class<?> service, String method) {
+    ConcurrentMap<Class<?>, ConcurrentMap<String, Meters>> sideMeters =
+      Constants.CONSUMER_SIDE.equals(side) ? consumerMeters : providerMeters;
+    ConcurrentMap<String, Meters> serviceMeters = sideMeters.get(service);
+    if (serviceMeters == null) {
+      sideMeters.putIfAbsent(service, new ConcurrentHashMap<String, Meters>());
+      serviceMeters = sideMeters.get(service);
+    }
+    Meters meters = serviceMeters.get(method);
+    if (meters == null) {
+      // Creating Meters registers them, so only the instance kept is created
+      synchronized (serviceMeters) {
+        meters = serviceMeters.get(method);
+        if (meters == null) {
+          meters = new Meters(registry, side, service, method);
+          serviceMeters.put(method, meters);
+        }
+      }
+    }
+    return meters;
+  }
+
+  private static class Meters implements MethodMetrics {
+
+    private final Timer timer;
+
+    private final Counter errors;
+
+    private final AtomicInteger active;
+
+    Meters(MeterRegistry registry, String side, Class<?> service, String method) {
+      Tags tags = Tags.of(Tag.of("side", side), Tag.of("service", service.getName()), Tag.of("method", method));
+      this.timer = Timer.builder("dubbo.requests")
+        .description("Dubbo invocations")
+        .tags(tags)
+        .register(registry);
+      this.errors = Counter.builder("dubbo.requests.errors")
+        .description("Dubbo invocations that failed")
+        .tags(tags)
+        .register(registry);
+      this.active = registry.gauge("dubbo.requests.active", tags, new AtomicInteger());
+    }
+
+    @Override
+    public void begin() {
+      active.incrementAndGet();
+    }
+
+    @Override
+    public void end(long elapsedNanos, boolean failed) {
+      active.decrementAndGet();
+      timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+      if (failed) {
+        errors.increment();
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.falconia.spring.boot.autoconfigure.dubbox.limit.AdaptiveLimiter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes every {@link AdaptiveLimiter} to Micrometer, tagged with {@code side}, {@code service},
+ * {@code method} and {@code address}:
+ * <ul>
+ * <li>{@code dubbo.limit} gauge of the current concurrency limit</li>
+ * <li>{@code dubbo.limit.inflight} gauge of the calls holding a permit</li>
+ * <li>{@code dubbo.limit.rejected} counter of the calls rejected over the limit</li>
+ * </ul>
+ */
+public class MicrometerLimitMetrics implements AdaptiveLimiter.Listener, InitializingBean, DisposableBean {
+
+  private final MeterRegistry registry;
+
+  public MicrometerLimitMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    AdaptiveLimiter.addListener(this);
+  }
+
+  @Override
+  public void destroy() {
+    AdaptiveLimiter.removeListener(this);
+  }
+
+  @Override
+  public void onCreated(AdaptiveLimiter limiter) {
+    Tags tags = Tags.of(Tag.of("side", limiter.getSide()), Tag.of("service", limiter.getService()),
+      Tag.of("method", limiter.getMethod()), Tag.of("address", limiter.getAddress()));
+    Gauge.builder("dubbo.limit", limiter, new ToDoubleFunction<AdaptiveLimiter>() {
+      @Override
+      public double applyAsDouble(AdaptiveLimiter value) {
+        return value.getLimit();
+      }
+    }).description("Adaptive concurrency limit").tags(tags).register(registry);
+    Gauge.builder("dubbo.limit.inflight", limiter, new ToDoubleFunction<AdaptiveLimiter>() {
+      @Override
+      public double applyAsDouble(AdaptiveLimiter value) {
+        return value.getInflight();
+      }
+    }).description("Invocations holding a permit of the adaptive limit").tags(tags).register(registry);
+    FunctionCounter.builder("dubbo.limit.rejected", limiter, new ToDoubleFunction<AdaptiveLimiter>() {
+      @Override
+      public double applyAsDouble(AdaptiveLimiter value) {
+        return value.getRejected();
+      }
+    }).description("Invocations rejected over the adaptive limit").tags(tags).register(registry);
+  }
+}
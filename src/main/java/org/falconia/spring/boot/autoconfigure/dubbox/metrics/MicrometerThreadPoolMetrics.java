@@ -0,0 +1,152 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import org.falconia.spring.boot.autoconfigure.dubbox.dispatcher.DirectBulkhead;
+import org.falconia.spring.boot.autoconfigure.dubbox.threadpool.MonitoredThreadPoolExecutor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Publishes every provider {@link MonitoredThreadPoolExecutor} to Micrometer, tagged with
+ * {@code name} and {@code port}:
+ * <ul>
+ * <li>{@code dubbo.threadpool.active}, {@code .core}, {@code .max} and {@code .size} gauges of the
+ * threads</li>
+ * <li>{@code dubbo.threadpool.queue} gauge of the queued tasks</li>
+ * <li>{@code dubbo.threadpool.completed} and {@code .rejected} counters of the tasks</li>
+ * <li>{@code dubbo.threadpool.queue.wait} timer of the time tasks spent queued</li>
+ * <li>{@code dubbo.threadpool.queue.oldest} gauge of the wait of the task at the head of the
+ * queue</li>
+ * </ul>
+ * A {@link DirectBulkhead} only has the {@code active} gauge and the {@code completed} counter, of
+ * the requests it runs on the IO threads.
+ */
+public class MicrometerThreadPoolMetrics implements MonitoredThreadPoolExecutor.Listener, DirectBulkhead.Listener,
+  InitializingBean, DisposableBean {
+
+  private final MeterRegistry registry;
+
+  public MicrometerThreadPoolMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public void afterPropertiesSet() {
+    MonitoredThreadPoolExecutor.addListener(this);
+    DirectBulkhead.addListener(this);
+  }
+
+  @Override
+  public void destroy() {
+    MonitoredThreadPoolExecutor.removeListener(this);
+    DirectBulkhead.removeListener(this);
+  }
+
+  @Override
+  public void onCreated(MonitoredThreadPoolExecutor executor) {
+    Tags tags = Tags.of(Tag.of("name", executor.getName()), Tag.of("port", String.valueOf(executor.getPort())));
+    Gauge.builder("dubbo.threadpool.active", executor, new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+        return value.getActiveCount();
+      }
+    }).description("Threads running a task").tags(tags).register(registry);
+    Gauge.builder("dubbo.threadpool.core", executor, new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+        return value.getCorePoolSize();
+      }
+    }).description("Core size of the pool").tags(tags).register(registry);
+    Gauge.builder("dubbo.threadpool.max", executor, new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+        return value.getMaximumPoolSize();
+      }
+    }).description("Maximum size of the pool").tags(tags).register(registry);
+    Gauge.builder("dubbo.threadpool.size", executor, new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+        return value.getPoolSize();
+      }
+    }).description("Threads in the pool").tags(tags).register(registry);
+    Gauge.builder("dubbo.threadpool.queue", executor, new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+        return value.getQueue().size();
+      }
+    }).description("Tasks waiting in the queue").tags(tags).register(registry);
+    FunctionCounter.builder("dubbo.threadpool.completed", executor, new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+        return value.getCompletedTaskCount();
+      }
+    }).description("Tasks completed by the pool").tags(tags).register(registry);
+    FunctionCounter.builder("dubbo.threadpool.rejected", executor, new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+        return value.getRejectedCount();
+      }
+    }).description("Tasks rejected by the pool").tags(tags).register(registry);
+    FunctionTimer.builder("dubbo.threadpool.queue.wait", executor, new ToLongFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public long applyAsLong(MonitoredThreadPoolExecutor value) {
+        return value.getQueueWaitCount();
+      }
+    }, new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+      @Override
+      public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+        return value.getQueueWaitTime(TimeUnit.NANOSECONDS);
+      }
+    }, TimeUnit.NANOSECONDS).description("Time tasks spent in the queue").tags(tags).register(registry);
+    TimeGauge.builder("dubbo.threadpool.queue.oldest", executor, TimeUnit.NANOSECONDS,
+      new ToDoubleFunction<MonitoredThreadPoolExecutor>() {
+        @Override
+        public double applyAsDouble(MonitoredThreadPoolExecutor value) {
+          return value.getOldestQueueWait(TimeUnit.NANOSECONDS);
+        }
+      }).description("Wait of the task at the head of the queue").tags(tags).register(registry);
+  }
+
+  @Override
+  public void onCreated(DirectBulkhead bulkhead) {
+    Tags tags = Tags.of(Tag.of("name", bulkhead.getName()), Tag.of("port", String.valueOf(bulkhead.getPort())));
+    Gauge.builder("dubbo.threadpool.active", bulkhead, new ToDoubleFunction<DirectBulkhead>() {
+      @Override
+      public double applyAsDouble(DirectBulkhead value) {
+        return value.getActiveCount();
+      }
+    }).description("Threads running a task").tags(tags).register(registry);
+    FunctionCounter.builder("dubbo.threadpool.completed", bulkhead, new ToDoubleFunction<DirectBulkhead>() {
+      @Override
+      public double applyAsDouble(DirectBulkhead value) {
+        return value.getCompletedCount();
+      }
+    }).description("Tasks completed by the pool").tags(tags).register(registry);
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.registry;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.registry.NotifyListener;
+import com.alibaba.dubbo.registry.Registry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Registry keeping its notified URLs in a {@link BinaryRegistryCache}.
+ *
+ * <p>Subscribers are first notified from the cache, so consumers can start before a slow
+ * registry answers, then by the registry itself which replaces the cached URLs. A subscriber
+ * notified from the cache subscribes to the registry on a background thread with
+ * {@code check=false}, a failed subscription is logged and retried by the registry instead of
+ * failing the startup.
+ */
+public class BinaryCacheRegistry implements Registry {
+
+  private static Logger logger = LoggerFactory.getLogger(BinaryCacheRegistry.class);
+
+  private static final ExecutorService subscriber =
+    Executors.newCachedThreadPool(new NamedThreadFactory("DubboxRegistrySubscribe", true));
+
+  private final Registry registry;
+
+  private final BinaryRegistryCache cache;
+
+  private final ConcurrentMap<NotifyListener, CachingNotifyListener> listeners =
+    new ConcurrentHashMap<NotifyListener, CachingNotifyListener>();
+
+  public BinaryCacheRegistry(Registry registry, BinaryRegistryCache cache) {
+    this.registry = registry;
+    this.cache = cache;
+  }
+
+  Registry getRegistry() {
+    return registry;
+  }
+
+  BinaryRegistryCache getCache() {
+    return cache;
+  }
+
+  @Override
+  public URL getUrl() {
+    return registry.getUrl();
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return registry.isAvailable();
+  }
+
+  @Override
+  public void destroy() {
+    registry.destroy();
+    cache.close();
+  }
+
+  @Override
+  public void register(URL url) {
+    registry.register(url);
+  }
+
+  @Override
+  public void unregister(URL url) {
+    registry.unregister(url);
+  }
+
+  @Override
+  public void subscribe(URL url, NotifyListener listener) {
+    List<URL> cached = cache.get(url.getServiceKey());
+    if (cached.isEmpty()) {
+      registry.subscribe(url, listener(url, url, listener));
+      return;
+    }
+    for (List<URL> urls : groupByCategory(cached).values()) {
+      listener.notify(urls);
+    }
+    final URL subscribeUrl = url.addParameter(Constants.CHECK_KEY, false);
+    final CachingNotifyListener cachingListener = listener(url, subscribeUrl, listener);
+    FutureTask<Void> pending = new FutureTask<Void>(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          registry.subscribe(subscribeUrl, cachingListener);
+        } catch (RuntimeException e) {
+          logger.error("Dubbox: failed to subscribe " + subscribeUrl + ", using the cached URLs", e);
+        }
+      }
+    }, null);
+    // Set first, an unsubscribe waits for the subscription
+    cachingListener.pending = pending;
+    subscriber.execute(pending);
+  }
+
+  @Override
+  public void unsubscribe(URL url, NotifyListener listener) {
+    CachingNotifyListener cachingListener = listeners.remove(listener);
+    if (cachingListener == null) {
+      registry.unsubscribe(url, listener);
+      return;
+    }
+    Future<?> pending = cachingListener.pending;
+    if (pending != null && !pending.cancel(false)) {
+      try {
+        pending.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException ignored) {
+        // logged by the subscription
+      }
+    }
+    registry.unsubscribe(cachingListener.registryUrl, cachingListener);
+  }
+
+  private CachingNotifyListener listener(URL url, URL registryUrl, NotifyListener listener) {
+    CachingNotifyListener cachingListener = new CachingNotifyListener(url, registryUrl, listener);
+    CachingNotifyListener existing = listeners.putIfAbsent(listener, cachingListener);
+    return existing != null ? existing : cachingListener;
+  }
+
+  @Override
+  public List<URL> lookup(URL url) {
+    return registry.lookup(url);
+  }
+
+  private static Map<String, List<URL>> groupByCategory(List<URL> urls) {
+    Map<String, List<URL>> categories = new LinkedHashMap<String, List<URL>>();
+    for (URL url : urls) {
+      String category = url.getParameter(Constants.CATEGORY_KEY, Constants.DEFAULT_CATEGORY);
+      List<URL> categoryUrls = categories.get(category);
+      if (categoryUrls == null) {
+        categoryUrls = new ArrayList<URL>();
+        categories.put(category, categoryUrls);
+      }
+      categoryUrls.add(url);
+    }
+    return categories;
+  }
+
+  private class CachingNotifyListener implements NotifyListener {
+
+    private final URL subscribeUrl;
+
+    // The URL subscribed to the registry, unsubscribed with
+    private final URL registryUrl;
+
+    private final NotifyListener listener;
+
+    private final Map<String, List<URL>> notified = new LinkedHashMap<String, List<URL>>();
+
+    private volatile Future<?> pending;
+
+    CachingNotifyListener(URL subscribeUrl, URL registryUrl, NotifyListener listener) {
+      this.subscribeUrl = subscribeUrl;
+      this.registryUrl = registryUrl;
+      this.listener = listener;
+    }
+
+    @Override
+    public void notify(List<URL> urls) {
+      listener.notify(urls);
+      if (urls == null || urls.isEmpty()) {
+        return;
+      }
+      List<URL> all = new ArrayList<URL>();
+      synchronized (notified) {
+        notified.putAll(groupByCategory(urls));
+        for (List<URL> categoryUrls : notified.values()) {
+          all.addAll(categoryUrls);
+        }
+      }
+      cache.put(subscribeUrl.getServiceKey(), all);
+    }
+  }
+}
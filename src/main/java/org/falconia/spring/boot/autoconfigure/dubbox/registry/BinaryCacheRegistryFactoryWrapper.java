@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.registry;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
+import com.alibaba.dubbo.registry.Registry;
+import com.alibaba.dubbo.registry.RegistryFactory;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps every {@link RegistryFactory} and swaps the properties cache file of the created
+ * registries for a {@link BinaryRegistryCache} when {@value #FILE_FORMAT_KEY} is
+ * {@value #BINARY}.
+ */
+public class BinaryCacheRegistryFactoryWrapper implements RegistryFactory {
+
+  public static final String FILE_FORMAT_KEY = "file.format";
+
+  public static final String BINARY = "binary";
+
+  private static final ConcurrentMap<String, BinaryCacheRegistry> REGISTRIES =
+    new ConcurrentHashMap<String, BinaryCacheRegistry>();
+
+  private final RegistryFactory registryFactory;
+
+  public BinaryCacheRegistryFactoryWrapper(RegistryFactory registryFactory) {
+    this.registryFactory = registryFactory;
+  }
+
+  @Override
+  public Registry getRegistry(URL url) {
+    if (!BINARY.equals(url.getParameter(FILE_FORMAT_KEY))) {
+      return registryFactory.getRegistry(url);
+    }
+    String filename = url.getParameter(Constants.FILE_KEY,
+      System.getProperty("user.home") + "/.dubbo/dubbo-registry-" + url.getHost() + ".bin");
+    // Disables the properties file of AbstractRegistry
+    Registry registry = registryFactory.getRegistry(url.addParameter(Constants.FILE_KEY, false));
+    if (!ConfigUtils.isNotEmpty(filename)) {
+      return registry;
+    }
+    final String key = url.toServiceString();
+    BinaryCacheRegistry cachingRegistry = REGISTRIES.get(key);
+    // The registry is a new one once the previous was destroyed, e.g. by AbstractRegistryFactory.destroyAll
+    if (cachingRegistry == null || cachingRegistry.getRegistry() != registry) {
+      synchronized (REGISTRIES) {
+        cachingRegistry = REGISTRIES.get(key);
+        if (cachingRegistry == null || cachingRegistry.getRegistry() != registry) {
+          if (cachingRegistry != null) {
+            cachingRegistry.getCache().close();
+          }
+          cachingRegistry = new BinaryCacheRegistry(registry, new BinaryRegistryCache(new File(filename))) {
+            @Override
+            public void destroy() {
+              REGISTRIES.remove(key, this);
+              super.destroy();
+            }
+          };
+          REGISTRIES.put(key, cachingRegistry);
+        }
+      }
+    }
+    return cachingRegistry;
+  }
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.registry;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only binary store of the provider URLs notified per subscribed service.
+ *
+ * <p>The file starts with a magic number and a version, followed by records of
+ * {@code [length][key][url count][url]*} where strings are length-prefixed UTF-8. A later record
+ * for the same key replaces the earlier one. The file is read into memory with one channel read
+ * and indexed once on boot, it is not memory-mapped since a mapping would fault once another
+ * process truncates the file on compaction. URLs are only parsed for the services actually
+ * subscribed. Updates are appended on a background
+ * thread, and the file is compacted when superseded records outweigh the live ones.
+ *
+ * <p>Processes may share the file: it is read under a shared lock and written under an exclusive
+ * one, and a compaction keeps the records appended by the others.
+ */
+public class BinaryRegistryCache {
+
+  private static Logger logger = LoggerFactory.getLogger(BinaryRegistryCache.class);
+
+  private static final int MAGIC = 0x44425843;
+
+  private static final byte VERSION = 1;
+
+  private static final int HEADER_LENGTH = 5;
+
+  private static final long MIN_COMPACT_LENGTH = 1024 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * File locks are held by the JVM, caches of the same file in a JVM take turns on these.
+   */
+  private static final ConcurrentMap<String, Object> MUTEXES = new ConcurrentHashMap<String, Object>();
+
+  private final File file;
+
+  private final Object mutex;
+
+  private final ConcurrentMap<String, byte[]> records = new ConcurrentHashMap<String, byte[]>();
+
+  private final ExecutorService writer = Executors.newSingleThreadExecutor(new NamedThreadFactory("DubboxRegistryCache", true));
+
+  private final AtomicLong liveLength = new AtomicLong();
+
+  /**
+   * Keys put by this process, whose records win over the ones of other processes sharing the file.
+   */
+  private final Set<String> updated = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  public BinaryRegistryCache(File file) {
+    this.file = file;
+    Object mutex = new Object();
+    Object existing = MUTEXES.putIfAbsent(file.getAbsolutePath(), mutex);
+    this.mutex = existing != null ? existing : mutex;
+    File dir = file.getParentFile();
+    if (dir != null && !dir.exists() && !dir.mkdirs()) {
+      throw new IllegalArgumentException("Invalid registry store file " + file
+        + ", cause: Failed to create directory " + dir + "!");
+    }
+    load();
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Return the cached URLs of a service, or an empty list.
+   */
+  public List<URL> get(String serviceKey) {
+    byte[] record = records.get(serviceKey);
+    if (record == null) {
+      return Collections.emptyList();
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(record);
+    readString(buffer);
+    int count = buffer.getInt();
+    List<URL> urls = new ArrayList<URL>(count);
+    for (int i = 0; i < count; i++) {
+      urls.add(URL.valueOf(readString(buffer)));
+    }
+    return urls;
+  }
+
+  /**
+   * Replace the cached URLs of a service; the record is appended asynchronously.
+   */
+  public void put(String serviceKey, List<URL> urls) {
+    byte[] key = serviceKey.getBytes(UTF_8);
+    byte[][] values = new byte[urls.size()][];
+    int length = 4 + key.length + 4;
+    for (int i = 0; i < values.length; i++) {
+      values[i] = urls.get(i).toFullString().getBytes(UTF_8);
+      length += 4 + values[i].length;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.putInt(key.length).put(key).putInt(values.length);
+    for (byte[] value : values) {
+      buffer.putInt(value.length).put(value);
+    }
+    final byte[] record = buffer.array();
+    updated.add(serviceKey);
+    byte[] previous = records.put(serviceKey, record);
+    liveLength.addAndGet(4 + record.length - (previous != null ? 4 + previous.length : 0));
+    writer.execute(new Runnable() {
+      @Override
+      public void run() {
+        append(record);
+      }
+    });
+  }
+
+  public void close() {
+    writer.shutdown();
+  }
+
+  private void load() {
+    if (!file.exists() || file.length() < HEADER_LENGTH) {
+      return;
+    }
+    long start = System.currentTimeMillis();
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        FileChannel channel = raf.getChannel();
+        Map<String, byte[]> loaded;
+        synchronized (mutex) {
+          // Keeps other processes from compacting the file while it is read
+          FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+          try {
+            loaded = read(channel);
+          } finally {
+            lock.release();
+          }
+        }
+        if (loaded == null) {
+          logger.warn("Dubbox: ignoring registry cache {} with unknown format", file);
+          return;
+        }
+        records.putAll(loaded);
+        for (byte[] record : loaded.values()) {
+          liveLength.addAndGet(4 + record.length);
+        }
+      } finally {
+        raf.close();
+      }
+      logger.info("Dubbox: loaded {} services from registry cache {} in {} ms",
+        records.size(), file, System.currentTimeMillis() - start);
+    } catch (IOException e) {
+      logger.warn("Dubbox: failed to load registry cache " + file, e);
+    } catch (BufferUnderflowException e) {
+      logger.warn("Dubbox: failed to load corrupted registry cache " + file, e);
+    }
+  }
+
+  /**
+   * Reads the latest record of every key, to be called under a lock of the file.
+   *
+   * @return the records by key, or null if the file has an unknown format
+   */
+  private static Map<String, byte[]> read(FileChannel channel) throws IOException {
+    Map<String, byte[]> loaded = new HashMap<String, byte[]>();
+    long size = channel.size();
+    if (size < HEADER_LENGTH) {
+      return loaded;
+    }
+    // Read rather than mapped, a mapping outliving the lock would fault on a later truncation
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, buffer.position()) < 0) {
+        break;
+      }
+    }
+    buffer.flip();
+    if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+      return null;
+    }
+    while (buffer.remaining() >= 4) {
+      int length = buffer.getInt();
+      if (length <= 0 || length > buffer.remaining()) {
+        // Truncated by a crash during an append, the rest is rewritten on the next compaction
+        break;
+      }
+      byte[] record = new byte[length];
+      buffer.get(record);
+      loaded.put(readString(ByteBuffer.wrap(record)), record);
+    }
+    return loaded;
+  }
+
+  private void append(byte[] record) {
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        FileChannel channel = raf.getChannel();
+        synchronized (mutex) {
+          FileLock lock = channel.lock();
+          try {
+            long size = channel.size();
+            if (size < HEADER_LENGTH || (size > MIN_COMPACT_LENGTH && size > 2 * (HEADER_LENGTH + liveLength.get()))) {
+              compact(channel);
+            } else {
+              ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+              buffer.putInt(record.length).put(record).flip();
+              write(channel, size, buffer);
+            }
+          } finally {
+            lock.release();
+          }
+        }
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      logger.warn("Dubbox: failed to write registry cache " + file, e);
+    }
+  }
+
+  /**
+   * Rewrites the file with the latest record of every key. The records other processes appended
+   * since the load are merged first, unless this one replaced them since.
+   */
+  private void compact(FileChannel channel) throws IOException {
+    Map<String, byte[]> appended = null;
+    try {
+      appended = read(channel);
+    } catch (BufferUnderflowException e) {
+      logger.warn("Dubbox: rewriting corrupted registry cache " + file, e);
+    }
+    if (appended != null) {
+      for (Map.Entry<String, byte[]> entry : appended.entrySet()) {
+        if (updated.contains(entry.getKey())) {
+          continue;
+        }
+        byte[] record = entry.getValue();
+        byte[] previous = records.get(entry.getKey());
+        if (previous == null ? records.putIfAbsent(entry.getKey(), record) == null
+          : records.replace(entry.getKey(), previous, record)) {
+          liveLength.addAndGet(4 + record.length - (previous != null ? 4 + previous.length : 0));
+        }
+      }
+    }
+    List<byte[]> live = new ArrayList<byte[]>(records.values());
+    int length = HEADER_LENGTH;
+    for (byte[] record : live) {
+      length += 4 + record.length;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.putInt(MAGIC).put(VERSION);
+    for (byte[] record : live) {
+      buffer.putInt(record.length).put(record);
+    }
+    buffer.flip();
+    channel.truncate(0);
+    write(channel, 0, buffer);
+  }
+
+  private static void write(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+    channel.position(position);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.startup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the wall-clock time of the startup phases: the beans of the auto-configuration, the
+ * annotation scan, registry connections, service exports and reference initializations. Phases
+ * are recorded by the code running them, including extensions outside of the application context,
+ * so the recorder is static. It records only once enabled, until the phases are taken for the
+ * report.
+ */
+public final class StartupRecorder {
+
+  public static final String BEAN = "bean";
+
+  public static final String SCAN = "scan";
+
+  public static final String REGISTRY = "registry";
+
+  public static final String EXPORT = "export";
+
+  public static final String REFERENCE = "reference";
+
+  private static final List<Phase> phases = new ArrayList<Phase>();
+
+  private static volatile boolean enabled;
+
+  private StartupRecorder() {
+  }
+
+  /**
+   * Records a phase ending now.
+   *
+   * @param startNanos {@link System#nanoTime()} at the start of the phase
+   */
+  public static void record(String type, String name, long startNanos) {
+    if (!enabled) {
+      return;
+    }
+    long nanos = System.nanoTime() - startNanos;
+    Phase phase = new Phase(type, name, System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(nanos), nanos,
+      Thread.currentThread().getName());
+    synchronized (phases) {
+      if (enabled) {
+        phases.add(phase);
+      }
+    }
+  }
+
+  public static void setEnabled(boolean enabled) {
+    StartupRecorder.enabled = enabled;
+  }
+
+  /**
+   * Stops recording and takes the recorded phases, in the order they ended.
+   */
+  public static List<Phase> finish() {
+    synchronized (phases) {
+      enabled = false;
+      List<Phase> finished = new ArrayList<Phase>(phases);
+      phases.clear();
+      return finished;
+    }
+  }
+
+  /**
+   * @return the phases of every type, in the order the types first appear
+   */
+  public static Map<String, Summary> getSummaries(List<Phase> phases) {
+    Map<String, Summary> summaries = new LinkedHashMap<String, Summary>();
+    for (Phase phase : phases) {
+      Summary summary = summaries.get(phase.getType());
+      if (summary == null) {
+        summary = new Summary();
+        summaries.put(phase.getType(), summary);
+      }
+      summary.add(phase);
+    }
+    return summaries;
+  }
+
+  /**
+   * @return the summary of every type and the slowest phases, one per line
+   */
+  public static String report(List<Phase> phases, int slowest) {
+    StringBuilder report = new StringBuilder();
+    for (Map.Entry<String, Summary> entry : getSummaries(phases).entrySet()) {
+      Summary summary = entry.getValue();
+      report.append(String.format("%n  %-10s %4d phases %8d ms total %8d ms elapsed", entry.getKey(),
+        summary.getCount(), summary.getTotal(TimeUnit.MILLISECONDS), summary.getElapsed(TimeUnit.MILLISECONDS)));
+    }
+    phases = new ArrayList<Phase>(phases);
+    Collections.sort(phases, new Comparator<Phase>() {
+      @Override
+      public int compare(Phase o1, Phase o2) {
+        return o1.nanos < o2.nanos ? 1 : o1.nanos > o2.nanos ? -1 : 0;
+      }
+    });
+    if (!phases.isEmpty()) {
+      report.append(String.format("%n  slowest:"));
+    }
+    for (Phase phase : phases.subList(0, Math.min(slowest, phases.size()))) {
+      report.append(String.format("%n  %8d ms %-10s %s [%s]", phase.getTime(TimeUnit.MILLISECONDS),
+        phase.getType(), phase.getName(), phase.getThread()));
+    }
+    return report.toString();
+  }
+
+  public static class Phase {
+
+    private final String type;
+
+    private final String name;
+
+    private final long startTime;
+
+    private final long nanos;
+
+    private final String thread;
+
+    Phase(String type, String name, long startTime, long nanos, String thread) {
+      this.type = type;
+      this.name = name;
+      this.startTime = startTime;
+      this.nanos = nanos;
+      this.thread = thread;
+    }
+
+    public String getType() {
+      return type;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the start in milliseconds since the epoch
+     */
+    public long getStartTime() {
+      return startTime;
+    }
+
+    public long getTime(TimeUnit unit) {
+      return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public String getThread() {
+      return thread;
+    }
+  }
+
+  /**
+   * Phases of one type. Phases running concurrently or nested make the total exceed the elapsed
+   * time from the first start to the last end.
+   */
+  public static class Summary {
+
+    private int count;
+
+    private long nanos;
+
+    private long firstStart = Long.MAX_VALUE;
+
+    private long lastEnd = Long.MIN_VALUE;
+
+    private void add(Phase phase) {
+      count++;
+      nanos += phase.nanos;
+      firstStart = Math.min(firstStart, phase.startTime);
+      lastEnd = Math.max(lastEnd, phase.startTime + TimeUnit.NANOSECONDS.toMillis(phase.nanos));
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public long getTotal(TimeUnit unit) {
+      return unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getElapsed(TimeUnit unit) {
+      return unit.convert(count == 0 ? 0 : lastEnd - firstStart, TimeUnit.MILLISECONDS);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.startup;
+
+import org.falconia.spring.boot.autoconfigure.dubbox.DubboxAutoConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records the creation of the beans of the {@link DubboxAutoConfiguration}, from instantiation to
+ * the end of initialization and including the beans they depend on, and logs the startup report
+ * of the {@link StartupRecorder} once the application is ready. The recorder stops there, the
+ * reported phases are kept here.
+ */
+public class StartupTimingPostProcessor extends InstantiationAwareBeanPostProcessorAdapter
+  implements BeanFactoryAware, ApplicationListener<ApplicationReadyEvent> {
+
+  private static Logger logger = LoggerFactory.getLogger(StartupTimingPostProcessor.class);
+
+  private static final String CONFIGURATION = DubboxAutoConfiguration.class.getName();
+
+  private final ConcurrentMap<String, Long> starts = new ConcurrentHashMap<String, Long>();
+
+  private final AtomicBoolean reported = new AtomicBoolean();
+
+  private final int slowest;
+
+  private volatile List<StartupRecorder.Phase> phases = Collections.emptyList();
+
+  private ConfigurableListableBeanFactory beanFactory;
+
+  /**
+   * @param slowest number of the slowest phases listed by the report
+   */
+  public StartupTimingPostProcessor(int slowest) {
+    this.slowest = slowest;
+  }
+
+  @Override
+  public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+    if (beanFactory instanceof ConfigurableListableBeanFactory) {
+      this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+    }
+  }
+
+  @Override
+  public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) throws BeansException {
+    if (isDubboxBean(beanName)) {
+      starts.put(beanName, System.nanoTime());
+    }
+    return null;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+    Long start = beanName == null ? null : starts.remove(beanName);
+    if (start != null) {
+      StartupRecorder.record(StartupRecorder.BEAN, beanName, start);
+    }
+    return bean;
+  }
+
+  @Override
+  public void onApplicationEvent(ApplicationReadyEvent event) {
+    if (reported.compareAndSet(false, true)) {
+      phases = StartupRecorder.finish();
+      logger.info("Dubbox: startup report{}", StartupRecorder.report(phases, slowest));
+    }
+  }
+
+  /**
+   * @return the reported phases, none before the application is ready
+   */
+  public List<StartupRecorder.Phase> getPhases() {
+    return phases;
+  }
+
+  private boolean isDubboxBean(String beanName) {
+    if (beanFactory == null || beanName == null || !beanFactory.containsBeanDefinition(beanName)) {
+      return false;
+    }
+    String factoryBeanName = beanFactory.getBeanDefinition(beanName).getFactoryBeanName();
+    return factoryBeanName != null && factoryBeanName.startsWith(CONFIGURATION);
+  }
+}
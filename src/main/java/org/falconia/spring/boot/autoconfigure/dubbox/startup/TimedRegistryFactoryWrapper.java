@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.startup;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.ConcurrentHashSet;
+import com.alibaba.dubbo.registry.Registry;
+import com.alibaba.dubbo.registry.RegistryFactory;
+
+import java.util.Set;
+
+/**
+ * Wraps every {@link RegistryFactory} and records the first connection to each registry in the
+ * {@link StartupRecorder}.
+ */
+public class TimedRegistryFactoryWrapper implements RegistryFactory {
+
+  private static final Set<String> connected = new ConcurrentHashSet<String>();
+
+  private final RegistryFactory registryFactory;
+
+  public TimedRegistryFactoryWrapper(RegistryFactory registryFactory) {
+    this.registryFactory = registryFactory;
+  }
+
+  @Override
+  public Registry getRegistry(URL url) {
+    String key = url.toServiceString();
+    if (connected.contains(key)) {
+      return registryFactory.getRegistry(url);
+    }
+    long start = System.nanoTime();
+    Registry registry = registryFactory.getRegistry(url);
+    if (connected.add(key)) {
+      StartupRecorder.record(StartupRecorder.REGISTRY, key, start);
+    }
+    return registry;
+  }
+}
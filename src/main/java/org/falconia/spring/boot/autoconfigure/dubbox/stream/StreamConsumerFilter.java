@@ -0,0 +1,309 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.stream;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Consumer side of the chunked stream transfer. {@link InputStream} arguments are uploaded in
+ * chunks of {@code stream.chunk} bytes ahead of the invocation, and an {@code InputStream} returned
+ * by the provider is read back chunk by chunk as it is consumed, so neither side holds the whole
+ * content in memory and no single request comes near the payload limit. Up to {@code stream.window}
+ * chunk invocations are kept in flight in both directions, so a transfer is not bound to one chunk
+ * per round trip; a full window of uploaded chunks blocks the caller until the oldest one is
+ * acknowledged.
+ *
+ * <p>Active on references with {@code stream=true}, usually inherited from the service. Runs after
+ * the other consumer filters, so all chunks of a call go to the provider selected for it.
+ *
+ * <p>An uploaded stream can not be read again, so a call with {@code InputStream} arguments is not
+ * retried: the cluster gets a business exception, which it does not retry, when it tries again.
+ */
+@Activate(group = Constants.CONSUMER, value = StreamStore.STREAM_KEY, order = 100000)
+public class StreamConsumerFilter implements Filter {
+
+  public static final String NAME = "streamconsumer";
+
+  /**
+   * Attachment of the invocation of the cluster, left by the first try. Not sent to providers.
+   */
+  private static final String UPLOADED_KEY = "stream.uploaded";
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    URL url = invoker.getUrl();
+    if (!url.getParameter(StreamStore.STREAM_KEY, false) || Constants.LOCAL_PROTOCOL.equals(url.getProtocol())) {
+      return invoker.invoke(invocation);
+    }
+
+    Object[] args = invocation.getArguments();
+    Object[] sent = null;
+    if (args != null) {
+      for (int i = 0; i < args.length; i++) {
+        if (args[i] instanceof InputStream) {
+          if (sent == null) {
+            sent = args.clone();
+            retried(invoker, invocation);
+          }
+          sent[i] = upload(invoker, (InputStream) args[i]);
+        }
+      }
+    }
+    if (sent != null) {
+      Map<String, String> attachments = new HashMap<String, String>();
+      if (invocation.getAttachments() != null) {
+        attachments.putAll(invocation.getAttachments());
+        attachments.remove(UPLOADED_KEY);
+      }
+      invocation = new RpcInvocation(invocation.getMethodName(), invocation.getParameterTypes(), sent,
+        attachments, invocation.getInvoker());
+    }
+
+    Result result = invoker.invoke(invocation);
+    if (result.getValue() instanceof StreamToken) {
+      InputStream in = new RemoteInputStream(invoker, ((StreamToken) result.getValue()).getId());
+      if (result instanceof RpcResult) {
+        ((RpcResult) result).setValue(in);
+      } else {
+        result = new RpcResult(in);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Marks the invocation of the cluster as uploaded.
+   *
+   * @throws RpcException if it was already, on a retry
+   */
+  private static void retried(Invoker<?> invoker, Invocation invocation) {
+    String uploaded = invocation.getAttachment(UPLOADED_KEY);
+    if (uploaded != null) {
+      throw new RpcException(RpcException.BIZ_EXCEPTION, "Failed to invoke " + invocation.getMethodName()
+        + " again, its stream arguments were uploaded to " + uploaded + " and can not be read again");
+    }
+    if (invocation instanceof RpcInvocation) {
+      ((RpcInvocation) invocation).setAttachment(UPLOADED_KEY, invoker.getUrl().getAddress());
+    }
+  }
+
+  private static StreamToken upload(Invoker<?> invoker, InputStream in) {
+    String id = UUID.randomUUID().toString();
+    int chunk = invoker.getUrl().getPositiveParameter(StreamStore.CHUNK_KEY, StreamStore.DEFAULT_CHUNK);
+    int window = invoker.getUrl().getPositiveParameter(StreamStore.WINDOW_KEY, StreamStore.DEFAULT_WINDOW);
+    Deque<Future<?>> writes = new ArrayDeque<Future<?>>(window);
+    long offset = 0;
+    try {
+      int length;
+      do {
+        // a chunk in flight may still be serialized, each one gets its own buffer
+        byte[] buffer = new byte[chunk];
+        length = 0;
+        int n;
+        while (length < chunk && (n = in.read(buffer, length, chunk - length)) >= 0) {
+          length += n;
+        }
+        if (writes.size() == window) {
+          await(writes.poll());
+        }
+        // the first chunk is sent even if empty, it creates the upload
+        writes.add(invoke(invoker, StreamStore.WRITE_METHOD, new Class<?>[]{String.class, long.class, byte[].class},
+          new Object[]{id, offset, length < chunk ? Arrays.copyOf(buffer, length) : buffer}));
+        offset += length;
+      } while (length == chunk);
+    } catch (IOException e) {
+      throw new RpcException("Failed to read stream argument, cause: " + e.getMessage(), e);
+    }
+    while (!writes.isEmpty()) {
+      await(writes.poll());
+    }
+    return new StreamToken(id);
+  }
+
+  /**
+   * Sends a chunk invocation asynchronously, leaving the future of the {@code RpcContext} as it was.
+   */
+  private static Future<?> invoke(Invoker<?> invoker, String methodName, Class<?>[] parameterTypes, Object[] args) {
+    RpcInvocation invocation = new RpcInvocation(methodName, parameterTypes, args);
+    invocation.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+    RpcContext context = RpcContext.getContext();
+    Future<?> previous = context.getFuture();
+    try {
+      Result result = invoker.invoke(invocation);
+      Future<?> future = context.getFuture();
+      if (future == null || future == previous) {
+        // answered synchronously by a protocol without asynchronous calls
+        if (result.hasException()) {
+          Throwable e = result.getException();
+          throw e instanceof RpcException ? (RpcException) e : new RpcException(e.getMessage(), e);
+        }
+        FutureTask<Object> done = new FutureTask<Object>(new Runnable() {
+          @Override
+          public void run() {
+          }
+        }, result.getValue());
+        done.run();
+        future = done;
+      }
+      return future;
+    } finally {
+      context.setFuture(previous);
+    }
+  }
+
+  private static Object await(Future<?> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RpcException("Interrupted while waiting for a stream chunk", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause() != null ? e.getCause() : e;
+      throw cause instanceof RpcException ? (RpcException) cause : new RpcException(cause.getMessage(), cause);
+    }
+  }
+
+  /**
+   * Reads a stream returned by the provider, requesting up to {@code stream.window} chunks ahead
+   * of the one consumed.
+   */
+  private static class RemoteInputStream extends InputStream {
+
+    private final Invoker<?> invoker;
+
+    private final String id;
+
+    private final int window;
+
+    private final Deque<Future<?>> reads;
+
+    private long requested;
+
+    private byte[] chunk = new byte[0];
+
+    private int position;
+
+    private boolean eof;
+
+    private boolean closed;
+
+    RemoteInputStream(Invoker<?> invoker, String id) {
+      this.invoker = invoker;
+      this.id = id;
+      this.window = invoker.getUrl().getPositiveParameter(StreamStore.WINDOW_KEY, StreamStore.DEFAULT_WINDOW);
+      this.reads = new ArrayDeque<Future<?>>(window);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return fill() ? chunk[position++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      int n = Math.min(len, chunk.length - position);
+      System.arraycopy(chunk, position, b, off, n);
+      position += n;
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return chunk.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      reads.clear();
+      if (!eof) {
+        eof = true;
+        try {
+          await(invoke(invoker, StreamStore.CLOSE_METHOD, new Class<?>[]{String.class}, new Object[]{id}));
+        } catch (RpcException e) {
+          throw new IOException("Failed to close stream " + id + ", cause: " + e.getMessage(), e);
+        }
+      }
+    }
+
+    private boolean fill() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      while (position == chunk.length) {
+        if (eof) {
+          return false;
+        }
+        byte[] next;
+        try {
+          while (reads.size() < window) {
+            reads.add(invoke(invoker, StreamStore.READ_METHOD, new Class<?>[]{String.class, long.class},
+              new Object[]{id, requested++}));
+          }
+          next = (byte[]) await(reads.poll());
+        } catch (RpcException e) {
+          throw new IOException("Failed to read stream " + id + ", cause: " + e.getMessage(), e);
+        }
+        if (next == null) {
+          // the reads past the end answer null too, the provider discards the stream on close
+          eof = true;
+          reads.clear();
+          try {
+            invoke(invoker, StreamStore.CLOSE_METHOD, new Class<?>[]{String.class}, new Object[]{id});
+          } catch (RpcException e) {
+            // all the content was read, the provider discards the stream once it expires
+          }
+          return false;
+        }
+        chunk = next;
+        position = 0;
+      }
+      return true;
+    }
+  }
+}
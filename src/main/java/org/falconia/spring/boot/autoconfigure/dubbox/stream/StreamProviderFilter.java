@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.stream;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provider side of the chunked stream transfer. Answers the chunk invocations sent by
+ * {@link StreamConsumerFilter}, hands the spooled uploads to the service as {@link InputStream}
+ * arguments and registers returned {@code InputStream}s for download.
+ *
+ * <p>Active on services with {@code stream=true}. Runs ahead of the other provider filters, so the
+ * chunk invocations are not counted, limited or logged as service calls.
+ */
+@Activate(group = Constants.PROVIDER, value = StreamStore.STREAM_KEY, order = -100000)
+public class StreamProviderFilter implements Filter {
+
+  public static final String NAME = "streamprovider";
+
+  private static Logger logger = LoggerFactory.getLogger(StreamProviderFilter.class);
+
+  @Override
+  public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+    URL url = invoker.getUrl();
+    if (!url.getParameter(StreamStore.STREAM_KEY, false) || Constants.LOCAL_PROTOCOL.equals(url.getProtocol())) {
+      return invoker.invoke(invocation);
+    }
+
+    String methodName = invocation.getMethodName();
+    Object[] args = invocation.getArguments();
+    int timeout = url.getPositiveParameter(StreamStore.TIMEOUT_KEY, StreamStore.DEFAULT_TIMEOUT);
+    if (StreamStore.WRITE_METHOD.equals(methodName)) {
+      StreamStore.write((String) args[0], ((Number) args[1]).longValue(), (byte[]) args[2], timeout);
+      return new RpcResult();
+    }
+    if (StreamStore.READ_METHOD.equals(methodName)) {
+      return new RpcResult(StreamStore.read((String) args[0], ((Number) args[1]).longValue(),
+        url.getPositiveParameter(StreamStore.CHUNK_KEY, StreamStore.DEFAULT_CHUNK)));
+    }
+    if (StreamStore.CLOSE_METHOD.equals(methodName)) {
+      StreamStore.close((String) args[0]);
+      return new RpcResult();
+    }
+
+    List<InputStream> uploads = null;
+    if (args != null) {
+      for (int i = 0; i < args.length; i++) {
+        if (args[i] instanceof StreamToken) {
+          InputStream in = StreamStore.open(((StreamToken) args[i]).getId());
+          if (uploads == null) {
+            uploads = new ArrayList<InputStream>(1);
+          }
+          uploads.add(in);
+          args[i] = in;
+        }
+      }
+    }
+    Object value = null;
+    try {
+      Result result = invoker.invoke(invocation);
+      value = result.getValue();
+      if (!result.hasException() && value instanceof InputStream) {
+        StreamToken token = new StreamToken(StreamStore.register((InputStream) value, timeout));
+        if (result instanceof RpcResult) {
+          ((RpcResult) result).setValue(token);
+        } else {
+          result = new RpcResult(token);
+        }
+      }
+      return result;
+    } finally {
+      if (uploads != null) {
+        for (InputStream in : uploads) {
+          if (in != value) {
+            closeQuietly(in);
+          }
+        }
+      }
+    }
+  }
+
+  private static void closeQuietly(InputStream in) {
+    try {
+      in.close();
+    } catch (IOException e) {
+      logger.warn(e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.stream;
+
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.rpc.RpcException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider side state of the streams in transfer: uploads are spooled to temporary files, downloads
+ * keep the returned {@link InputStream} open between chunks. Streams idle for longer than their
+ * {@code stream.timeout} are discarded.
+ *
+ * <p>Consumers keep up to {@code stream.window} chunk invocations in flight, which the provider
+ * threads may run in any order: uploaded chunks are written at their offset, downloaded chunks are
+ * read by index and the ones read ahead of a late request are held until it arrives.
+ */
+public final class StreamStore {
+
+  public static final String STREAM_KEY = "stream";
+
+  public static final String CHUNK_KEY = "stream.chunk";
+
+  public static final int DEFAULT_CHUNK = 64 * 1024;
+
+  public static final String WINDOW_KEY = "stream.window";
+
+  public static final int DEFAULT_WINDOW = 8;
+
+  public static final String TIMEOUT_KEY = "stream.timeout";
+
+  public static final int DEFAULT_TIMEOUT = 60 * 1000;
+
+  static final String WRITE_METHOD = "$streamWrite";
+
+  static final String READ_METHOD = "$streamRead";
+
+  static final String CLOSE_METHOD = "$streamClose";
+
+  private static Logger logger = LoggerFactory.getLogger(StreamStore.class);
+
+  private static final ConcurrentMap<String, Upload> uploads = new ConcurrentHashMap<String, Upload>();
+
+  private static final ConcurrentMap<String, Download> downloads = new ConcurrentHashMap<String, Download>();
+
+  private static ScheduledExecutorService reaper;
+
+  private StreamStore() {
+  }
+
+  /**
+   * Writes a chunk at its offset in the upload with the given id, creating it on the first chunk
+   * received.
+   */
+  static void write(String id, long offset, byte[] chunk, int timeout) {
+    Upload upload = uploads.get(id);
+    if (upload == null) {
+      Upload created;
+      try {
+        created = new Upload(timeout);
+      } catch (IOException e) {
+        throw new RpcException("Failed to spool stream " + id + ", cause: " + e.getMessage(), e);
+      }
+      upload = uploads.putIfAbsent(id, created);
+      if (upload == null) {
+        upload = created;
+        startReaper();
+      } else {
+        created.discard();
+      }
+    }
+    synchronized (upload) {
+      try {
+        upload.out.seek(offset);
+        upload.out.write(chunk);
+      } catch (IOException e) {
+        throw new RpcException("Failed to spool stream " + id + ", cause: " + e.getMessage(), e);
+      }
+      upload.touch();
+    }
+  }
+
+  /**
+   * Completes the upload with the given id and opens it for reading, the spooled file is deleted
+   * once the stream is closed.
+   */
+  static InputStream open(String id) {
+    Upload upload = uploads.remove(id);
+    if (upload == null) {
+      throw new RpcException("Stream " + id + " not found, it may have expired.");
+    }
+    synchronized (upload) {
+      try {
+        upload.out.close();
+        final File file = upload.file;
+        return new FileInputStream(file) {
+          @Override
+          public void close() throws IOException {
+            try {
+              super.close();
+            } finally {
+              delete(file);
+            }
+          }
+        };
+      } catch (IOException e) {
+        upload.discard();
+        throw new RpcException("Failed to open stream " + id + ", cause: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Registers a returned stream for download and returns its id.
+   */
+  static String register(InputStream in, int timeout) {
+    String id = UUID.randomUUID().toString();
+    downloads.put(id, new Download(in, timeout));
+    startReaper();
+    return id;
+  }
+
+  /**
+   * Reads the chunk with the given index of the download with the given id, or {@code null} past
+   * its end. The chunks before it not requested yet are read ahead and held for their request.
+   */
+  static byte[] read(String id, long index, int chunk) {
+    Download download = downloads.get(id);
+    if (download == null) {
+      throw new RpcException("Stream " + id + " not found, it may have expired.");
+    }
+    synchronized (download) {
+      download.touch();
+      byte[] ahead = download.ahead.remove(index);
+      if (ahead != null) {
+        return ahead;
+      }
+      if (index < download.next) {
+        throw new RpcException("Chunk " + index + " of stream " + id + " was already read.");
+      }
+      try {
+        while (!download.exhausted) {
+          byte[] buffer = new byte[chunk];
+          int length = 0;
+          int n;
+          while (length < chunk && (n = download.in.read(buffer, length, chunk - length)) >= 0) {
+            length += n;
+          }
+          if (length == 0) {
+            download.exhausted = true;
+            break;
+          }
+          if (length < chunk) {
+            buffer = Arrays.copyOf(buffer, length);
+          }
+          if (download.next++ == index) {
+            return buffer;
+          }
+          download.ahead.put(download.next - 1, buffer);
+        }
+        return null;
+      } catch (IOException e) {
+        downloads.remove(id);
+        download.discard();
+        throw new RpcException("Failed to read stream " + id + ", cause: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Discards the download with the given id, once exhausted or when closed before.
+   */
+  static void close(String id) {
+    Download download = downloads.remove(id);
+    if (download != null) {
+      download.discard();
+    }
+  }
+
+  private static synchronized void startReaper() {
+    if (reaper != null) {
+      return;
+    }
+    reaper = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("DubboxStreamReaper", true));
+    reaper.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        reap(uploads);
+        reap(downloads);
+      }
+    }, 1, 1, TimeUnit.SECONDS);
+  }
+
+  private static void reap(Map<String, ? extends Transfer> transfers) {
+    long now = System.currentTimeMillis();
+    for (Iterator<? extends Map.Entry<String, ? extends Transfer>> it = transfers.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<String, ? extends Transfer> entry = it.next();
+      Transfer transfer = entry.getValue();
+      if (now - transfer.lastAccess > transfer.timeout) {
+        it.remove();
+        logger.warn("Dubbox: discard stream {} idle for more than {}ms", entry.getKey(), transfer.timeout);
+        synchronized (transfer) {
+          transfer.discard();
+        }
+      }
+    }
+  }
+
+  private static void delete(File file) {
+    if (!file.delete() && file.exists()) {
+      logger.warn("Dubbox: failed to delete spooled stream {}", file);
+    }
+  }
+
+  private abstract static class Transfer {
+
+    final int timeout;
+
+    volatile long lastAccess = System.currentTimeMillis();
+
+    Transfer(int timeout) {
+      this.timeout = timeout;
+    }
+
+    void touch() {
+      lastAccess = System.currentTimeMillis();
+    }
+
+    abstract void discard();
+  }
+
+  private static class Upload extends Transfer {
+
+    final File file;
+
+    final RandomAccessFile out;
+
+    Upload(int timeout) throws IOException {
+      super(timeout);
+      this.file = File.createTempFile("dubbox-stream-", ".tmp");
+      this.out = new RandomAccessFile(file, "rw");
+    }
+
+    @Override
+    void discard() {
+      try {
+        out.close();
+      } catch (IOException e) {
+        logger.warn(e.getMessage(), e);
+      }
+      delete(file);
+    }
+  }
+
+  private static class Download extends Transfer {
+
+    final InputStream in;
+
+    final Map<Long, byte[]> ahead = new HashMap<Long, byte[]>();
+
+    long next;
+
+    boolean exhausted;
+
+    Download(InputStream in, int timeout) {
+      super(timeout);
+      this.in = in;
+    }
+
+    @Override
+    void discard() {
+      try {
+        in.close();
+      } catch (IOException e) {
+        logger.warn(e.getMessage(), e);
+      }
+    }
+  }
+}
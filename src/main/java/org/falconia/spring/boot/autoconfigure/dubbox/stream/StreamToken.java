@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.stream;
+
+import com.alibaba.com.caucho.hessian.io.HessianHandle;
+
+import java.io.Serializable;
+
+/**
+ * Placeholder sent in place of a streamed {@link java.io.InputStream}, the content is transferred
+ * in chunks under its id.
+ *
+ * <p>Implements {@link HessianHandle} so hessian decodes it as is where an {@code InputStream} is
+ * expected.
+ */
+public final class StreamToken implements Serializable, HessianHandle {
+
+  private static final long serialVersionUID = 1L;
+
+  private String id;
+
+  public StreamToken() {
+  }
+
+  public StreamToken(String id) {
+    this.id = id;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public String toString() {
+    return "StreamToken [id=" + id + "]";
+  }
+}
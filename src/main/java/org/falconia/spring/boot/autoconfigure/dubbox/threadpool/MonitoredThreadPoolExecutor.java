@@ -0,0 +1,272 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.threadpool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ThreadPoolExecutor} of a provider, keeping the counters needed to tell saturation apart
+ * from slow services: rejected tasks and the time tasks wait in the queue before a thread picks
+ * them up.
+ *
+ * <p>Live executors are kept for {@link Listener listeners}, e.g. to publish their state, until
+ * they terminate.
+ */
+public class MonitoredThreadPoolExecutor extends ThreadPoolExecutor {
+
+  private static final List<MonitoredThreadPoolExecutor> executors = new ArrayList<MonitoredThreadPoolExecutor>();
+
+  private static final List<Listener> listeners = new ArrayList<Listener>();
+
+  private final String name;
+
+  private final int port;
+
+  private final String protocol;
+
+  private final String bulkhead;
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  private final AtomicLong queueWaitCount = new AtomicLong();
+
+  private final AtomicLong queueWaitNanos = new AtomicLong();
+
+  /**
+   * Takes over the settings and the handlers of an executor which has not run any task. A
+   * {@link LinkedBlockingQueue} is replaced with a {@link ResizableLinkedBlockingQueue} of the same
+   * capacity.
+   */
+  MonitoredThreadPoolExecutor(String name, int port, String protocol, String bulkhead, ThreadPoolExecutor executor) {
+    super(executor.getCorePoolSize(), executor.getMaximumPoolSize(), executor.getKeepAliveTime(TimeUnit.NANOSECONDS),
+      TimeUnit.NANOSECONDS, resizable(executor.getQueue()), executor.getThreadFactory(),
+      executor.getRejectedExecutionHandler());
+    allowCoreThreadTimeOut(executor.allowsCoreThreadTimeOut());
+    setRejectedExecutionHandler(new CountingRejectedExecutionHandler(executor.getRejectedExecutionHandler()));
+    this.name = name;
+    this.port = port;
+    this.protocol = protocol;
+    this.bulkhead = bulkhead;
+    created(this);
+  }
+
+  /**
+   * Adds the listener and calls it back for every live executor.
+   */
+  public static synchronized void addListener(Listener listener) {
+    listeners.add(listener);
+    for (MonitoredThreadPoolExecutor executor : executors) {
+      listener.onCreated(executor);
+    }
+  }
+
+  public static synchronized void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public static synchronized List<MonitoredThreadPoolExecutor> getExecutors() {
+    return Collections.unmodifiableList(new ArrayList<MonitoredThreadPoolExecutor>(executors));
+  }
+
+  private static synchronized void created(MonitoredThreadPoolExecutor executor) {
+    executors.add(executor);
+    for (Listener listener : listeners) {
+      listener.onCreated(executor);
+    }
+  }
+
+  private static synchronized void terminated(MonitoredThreadPoolExecutor executor) {
+    executors.remove(executor);
+  }
+
+  private static BlockingQueue<Runnable> resizable(BlockingQueue<Runnable> queue) {
+    if (queue instanceof LinkedBlockingQueue && !(queue instanceof ResizableLinkedBlockingQueue)) {
+      return new ResizableLinkedBlockingQueue<Runnable>(queue.remainingCapacity());
+    }
+    return queue;
+  }
+
+  /**
+   * Changes the number of threads in place. Pools created with equal core and maximum sizes keep
+   * them equal, otherwise only the maximum changes and the core size is lowered if it exceeds it.
+   */
+  public synchronized void setThreads(int threads) {
+    boolean fixed = getCorePoolSize() == getMaximumPoolSize();
+    // core must not exceed maximum at any step
+    if (threads >= getMaximumPoolSize()) {
+      setMaximumPoolSize(threads);
+      if (fixed) {
+        setCorePoolSize(threads);
+      }
+    } else {
+      if (fixed || getCorePoolSize() > threads) {
+        setCorePoolSize(threads);
+      }
+      setMaximumPoolSize(threads);
+    }
+  }
+
+  /**
+   * Changes the queue capacity in place, a negative capacity meaning unbounded.
+   *
+   * @return {@code false} if the pool was created without a queue, which is then left as is
+   */
+  public boolean setQueues(int queues) {
+    BlockingQueue<Runnable> queue = getQueue();
+    if (queues == 0 || !(queue instanceof ResizableLinkedBlockingQueue)) {
+      return false;
+    }
+    ((ResizableLinkedBlockingQueue<Runnable>) queue).setCapacity(queues < 0 ? Integer.MAX_VALUE : queues);
+    return true;
+  }
+
+  /**
+   * Queue capacity, {@code 0} for a pool handing tasks off without a queue.
+   */
+  public int getQueues() {
+    BlockingQueue<Runnable> queue = getQueue();
+    return queue instanceof ResizableLinkedBlockingQueue
+      ? ((ResizableLinkedBlockingQueue<Runnable>) queue).getCapacity() : queue.size() + queue.remainingCapacity();
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    super.execute(new QueuedTask(command));
+  }
+
+  @Override
+  protected void beforeExecute(Thread t, Runnable r) {
+    if (r instanceof QueuedTask) {
+      queueWaitNanos.addAndGet(System.nanoTime() - ((QueuedTask) r).queued);
+      queueWaitCount.incrementAndGet();
+    }
+    super.beforeExecute(t, r);
+  }
+
+  @Override
+  protected void terminated() {
+    super.terminated();
+    terminated(this);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * @return the bean ID of the named protocol served by this executor, {@code null} for the
+   * default protocol or one configured otherwise
+   */
+  public String getProtocol() {
+    return protocol;
+  }
+
+  /**
+   * @return the name of the bulkhead served by this executor, {@code null} for a protocol executor
+   */
+  public String getBulkhead() {
+    return bulkhead;
+  }
+
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  /**
+   * Number of tasks taken from the queue so far.
+   */
+  public long getQueueWaitCount() {
+    return queueWaitCount.get();
+  }
+
+  /**
+   * Total time the tasks taken so far spent in the queue.
+   */
+  public long getQueueWaitTime(TimeUnit unit) {
+    return unit.convert(queueWaitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * How long the task at the head of the queue has been waiting, zero if the queue is empty.
+   */
+  public long getOldestQueueWait(TimeUnit unit) {
+    BlockingQueue<Runnable> queue = getQueue();
+    Runnable head = queue.peek();
+    if (!(head instanceof QueuedTask)) {
+      return 0;
+    }
+    return unit.convert(System.nanoTime() - ((QueuedTask) head).queued, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return name + ":" + port + " " + super.toString();
+  }
+
+  private static class QueuedTask implements Runnable {
+
+    private final Runnable task;
+
+    private final long queued = System.nanoTime();
+
+    QueuedTask(Runnable task) {
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      task.run();
+    }
+
+    @Override
+    public String toString() {
+      return task.toString();
+    }
+  }
+
+  private class CountingRejectedExecutionHandler implements RejectedExecutionHandler {
+
+    private final RejectedExecutionHandler handler;
+
+    CountingRejectedExecutionHandler(RejectedExecutionHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+      rejected.incrementAndGet();
+      handler.rejectedExecution(r, executor);
+    }
+  }
+
+  public interface Listener {
+
+    void onCreated(MonitoredThreadPoolExecutor executor);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.threadpool;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import org.falconia.spring.boot.autoconfigure.dubbox.dispatcher.BulkheadDispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Wraps every {@link ThreadPool} and turns the {@link ThreadPoolExecutor}s created for providers
+ * into {@link MonitoredThreadPoolExecutor}s. Consumer side and non-pooled executors, such as the
+ * {@link VirtualThreadPool virtual} one, are returned as created.
+ */
+public class MonitoredThreadPoolWrapper implements ThreadPool {
+
+  private static Logger logger = LoggerFactory.getLogger(MonitoredThreadPoolWrapper.class);
+
+  /**
+   * Bean IDs of the named {@code spring.dubbo.protocols.<name>} by port, kept off their URLs.
+   */
+  private static final ConcurrentMap<Integer, String> protocolIds = new ConcurrentHashMap<Integer, String>();
+
+  private final ThreadPool threadPool;
+
+  public MonitoredThreadPoolWrapper(ThreadPool threadPool) {
+    this.threadPool = threadPool;
+  }
+
+  /**
+   * Names the executor of the provider server on the port after the protocol, the first one set
+   * when several share the port.
+   */
+  public static void setProtocolId(int port, String id) {
+    String previous = protocolIds.putIfAbsent(port, id);
+    if (previous != null && !previous.equals(id)) {
+      logger.warn("Dubbox: protocols '{}' and '{}' share port {}, its executor follows '{}'", previous, id, port,
+        previous);
+    }
+  }
+
+  @Override
+  public Executor getExecutor(URL url) {
+    Executor executor = threadPool.getExecutor(url);
+    if (!(executor instanceof ThreadPoolExecutor) || executor instanceof MonitoredThreadPoolExecutor
+      || Constants.CONSUMER_SIDE.equals(url.getParameter(Constants.SIDE_KEY))) {
+      return executor;
+    }
+    // Executors start their threads lazily, the one just created has none to discard
+    return new MonitoredThreadPoolExecutor(url.getParameter(Constants.THREAD_NAME_KEY, Constants.DEFAULT_THREAD_NAME),
+      url.getPort(), protocolIds.get(url.getPort()), url.getParameter(BulkheadDispatcher.BULKHEAD_KEY),
+      (ThreadPoolExecutor) executor);
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.threadpool;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LinkedBlockingQueue} whose capacity can be changed while in use. The capacity is checked
+ * by the non-blocking {@code offer} methods, the ones {@link java.util.concurrent.ThreadPoolExecutor}
+ * uses, and concurrent offers may overshoot it by a few elements. Shrinking the capacity keeps the
+ * queued elements.
+ */
+public class ResizableLinkedBlockingQueue<E> extends LinkedBlockingQueue<E> {
+
+  private static final long serialVersionUID = 1L;
+
+  private volatile int capacity;
+
+  public ResizableLinkedBlockingQueue(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void setCapacity(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+  }
+
+  @Override
+  public boolean offer(E e) {
+    return size() < capacity && super.offer(e);
+  }
+
+  @Override
+  public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    return size() < capacity && super.offer(e, timeout, unit);
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return Math.max(0, capacity - size());
+  }
+}
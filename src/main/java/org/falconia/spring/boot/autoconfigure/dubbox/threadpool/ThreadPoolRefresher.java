@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.threadpool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resizes the running provider pools in place when {@code spring.dubbo.protocol.threads} or
+ * {@code spring.dubbo.protocol.queues} change, e.g. on a refresh of the environment. The pools of
+ * the named {@code spring.dubbo.protocols.<name>} follow their own {@code threads} and
+ * {@code queues}, matched by name, or by port for an executor created without the name.
+ */
+public class ThreadPoolRefresher implements ApplicationListener<EnvironmentChangeEvent>, EnvironmentAware {
+
+  private static Logger logger = LoggerFactory.getLogger(ThreadPoolRefresher.class);
+
+  private static final String PREFIX = "spring.dubbo.protocol.";
+
+  private static final String NAMED_PREFIX = "spring.dubbo.protocols.";
+
+  private Environment environment;
+
+  @Override
+  public void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
+
+  @Override
+  public void onApplicationEvent(EnvironmentChangeEvent event) {
+    boolean changed = false;
+    for (String key : event.getKeys()) {
+      if (key.startsWith(PREFIX) || key.startsWith(NAMED_PREFIX)) {
+        changed = true;
+        break;
+      }
+    }
+    if (!changed) {
+      return;
+    }
+    Map<String, RelaxedPropertyResolver> namedProtocols = getNamedProtocols();
+    Map<Integer, RelaxedPropertyResolver> portProtocols = new HashMap<Integer, RelaxedPropertyResolver>();
+    for (RelaxedPropertyResolver protocol : namedProtocols.values()) {
+      Integer port = protocol.getProperty("port", Integer.class);
+      if (port != null) {
+        portProtocols.put(port, protocol);
+      }
+    }
+    for (MonitoredThreadPoolExecutor executor : MonitoredThreadPoolExecutor.getExecutors()) {
+      if (executor.getBulkhead() != null) {
+        // Sized by their own bulkhead settings
+        continue;
+      }
+      RelaxedPropertyResolver protocol = executor.getProtocol() != null
+        ? namedProtocols.get(executor.getProtocol()) : portProtocols.get(executor.getPort());
+      if (protocol == null) {
+        protocol = new RelaxedPropertyResolver(environment, PREFIX);
+      }
+      Integer threads = protocol.getProperty("threads", Integer.class);
+      Integer queues = protocol.getProperty("queues", Integer.class);
+      if (threads != null && threads > 0 && threads != executor.getMaximumPoolSize()) {
+        logger.info("Dubbox: resize threads of '{}' from {} to {}", executor.getName(), executor.getMaximumPoolSize(), threads);
+        executor.setThreads(threads);
+      }
+      int capacity = queues == null ? 0 : queues < 0 ? Integer.MAX_VALUE : queues;
+      if (queues != null && capacity != executor.getQueues()) {
+        if (executor.setQueues(queues)) {
+          logger.info("Dubbox: resize queue of '{}' to {}", executor.getName(), queues);
+        } else {
+          logger.warn("Dubbox: queue of '{}' can not change from {} to {} without a restart",
+            executor.getName(), executor.getQueues(), queues);
+        }
+      }
+    }
+  }
+
+  private Map<String, RelaxedPropertyResolver> getNamedProtocols() {
+    Map<String, RelaxedPropertyResolver> protocols = new HashMap<String, RelaxedPropertyResolver>();
+    Set<String> names = new HashSet<String>();
+    for (String key : new RelaxedPropertyResolver(environment, NAMED_PREFIX).getSubProperties("").keySet()) {
+      int index = key.indexOf('.');
+      if (index > 0) {
+        names.add(key.substring(0, index));
+      }
+    }
+    for (String name : names) {
+      protocols.put(name, new RelaxedPropertyResolver(environment, NAMED_PREFIX + name + "."));
+    }
+    return protocols;
+  }
+}
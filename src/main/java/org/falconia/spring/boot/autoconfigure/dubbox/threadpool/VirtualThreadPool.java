@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.falconia.spring.boot.autoconfigure.dubbox.threadpool;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.threadpool.ThreadPool;
+import com.alibaba.dubbo.common.threadpool.support.fixed.FixedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread pool running every request on its own virtual thread, selected with
+ * {@code threadpool="virtual"}.
+ *
+ * <p>Virtual threads are looked up reflectively so the starter still runs on Java 8. When the JVM
+ * does not support them the {@link FixedThreadPool} is used instead, sized by the usual
+ * {@code threads} and {@code queues} settings, which are otherwise ignored.
+ */
+public class VirtualThreadPool implements ThreadPool {
+
+  public static final String NAME = "virtual";
+
+  private static Logger logger = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+  private static final Method ofVirtual;
+
+  private static final Method name;
+
+  private static final Method factory;
+
+  private static final Method newThreadPerTaskExecutor;
+
+  static {
+    Method ofVirtualMethod = null;
+    Method nameMethod = null;
+    Method factoryMethod = null;
+    Method newThreadPerTaskExecutorMethod = null;
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+      nameMethod = builderClass.getMethod("name", String.class, long.class);
+      factoryMethod = builderClass.getMethod("factory");
+      newThreadPerTaskExecutorMethod = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+    } catch (Exception e) {
+      ofVirtualMethod = null;
+    }
+    ofVirtual = ofVirtualMethod;
+    name = nameMethod;
+    factory = factoryMethod;
+    newThreadPerTaskExecutor = newThreadPerTaskExecutorMethod;
+  }
+
+  private final ThreadPool fallback = new FixedThreadPool();
+
+  public static boolean isSupported() {
+    return ofVirtual != null;
+  }
+
+  @Override
+  public Executor getExecutor(URL url) {
+    String threadName = url.getParameter(Constants.THREAD_NAME_KEY, Constants.DEFAULT_THREAD_NAME);
+    if (isSupported()) {
+      try {
+        Object builder = name.invoke(ofVirtual.invoke(null), threadName + "-virtual-", 0L);
+        ThreadFactory threadFactory = (ThreadFactory) factory.invoke(builder);
+        return (Executor) newThreadPerTaskExecutor.invoke(null, threadFactory);
+      } catch (Exception e) {
+        // Java 19/20 expose the API but reject it unless preview features are enabled
+        logger.warn("Dubbox: virtual threads unavailable for '{}', falling back to '{}' pool: {}",
+          threadName, "fixed", e.getCause() != null ? e.getCause() : e);
+      }
+    } else {
+      logger.warn("Dubbox: virtual threads require Java 21+, falling back to '{}' pool for '{}'",
+        "fixed", threadName);
+    }
+    return fallback.getExecutor(url);
+  }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.transport;
+
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBufferFactory;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ChannelBuffer} view of a Netty 4 {@link ByteBuf}, sharing its content and indexes, so the
+ * codecs encode into and decode from the channel's buffers without copying. The view does not
+ * own the buffer, whoever allocated it releases it; copies are unpooled heap buffers.
+ */
+public class ByteBufChannelBuffer implements ChannelBuffer {
+
+  private final ByteBuf buffer;
+
+  public ByteBufChannelBuffer(ByteBuf buffer) {
+    if (buffer == null) {
+      throw new IllegalArgumentException("buffer == null");
+    }
+    this.buffer = buffer;
+  }
+
+  public ByteBuf byteBuf() {
+    return buffer;
+  }
+
+  @Override
+  public int capacity() {
+    return buffer.capacity();
+  }
+
+  @Override
+  public void clear() {
+    buffer.clear();
+  }
+
+  @Override
+  public ChannelBuffer copy() {
+    return copy(buffer.readerIndex(), buffer.readableBytes());
+  }
+
+  @Override
+  public ChannelBuffer copy(int index, int length) {
+    // Unpooled heap copy, callers do not know they would have to release a pooled one
+    ByteBuf copy = Unpooled.buffer(length);
+    copy.writeBytes(buffer, index, length);
+    return new ByteBufChannelBuffer(copy);
+  }
+
+  @Override
+  public void discardReadBytes() {
+    buffer.discardReadBytes();
+  }
+
+  @Override
+  public void ensureWritableBytes(int writableBytes) {
+    buffer.ensureWritable(writableBytes);
+  }
+
+  @Override
+  public ChannelBufferFactory factory() {
+    return ByteBufChannelBufferFactory.getInstance();
+  }
+
+  @Override
+  public byte getByte(int index) {
+    return buffer.getByte(index);
+  }
+
+  @Override
+  public void getBytes(int index, byte[] dst) {
+    buffer.getBytes(index, dst);
+  }
+
+  @Override
+  public void getBytes(int index, byte[] dst, int dstIndex, int length) {
+    buffer.getBytes(index, dst, dstIndex, length);
+  }
+
+  @Override
+  public void getBytes(int index, ByteBuffer dst) {
+    buffer.getBytes(index, dst);
+  }
+
+  @Override
+  public void getBytes(int index, ChannelBuffer dst) {
+    getBytes(index, dst, dst.writableBytes());
+  }
+
+  @Override
+  public void getBytes(int index, ChannelBuffer dst, int length) {
+    if (length > dst.writableBytes()) {
+      throw new IndexOutOfBoundsException();
+    }
+    getBytes(index, dst, dst.writerIndex(), length);
+    dst.writerIndex(dst.writerIndex() + length);
+  }
+
+  @Override
+  public void getBytes(int index, ChannelBuffer dst, int dstIndex, int length) {
+    if (dst instanceof ByteBufChannelBuffer) {
+      buffer.getBytes(index, ((ByteBufChannelBuffer) dst).buffer, dstIndex, length);
+    } else {
+      dst.setBytes(dstIndex, buffer.nioBuffer(index, length));
+    }
+  }
+
+  @Override
+  public void getBytes(int index, OutputStream dst, int length) throws IOException {
+    buffer.getBytes(index, dst, length);
+  }
+
+  @Override
+  public boolean isDirect() {
+    return buffer.isDirect();
+  }
+
+  @Override
+  public void markReaderIndex() {
+    buffer.markReaderIndex();
+  }
+
+  @Override
+  public void markWriterIndex() {
+    buffer.markWriterIndex();
+  }
+
+  @Override
+  public boolean readable() {
+    return buffer.isReadable();
+  }
+
+  @Override
+  public int readableBytes() {
+    return buffer.readableBytes();
+  }
+
+  @Override
+  public byte readByte() {
+    return buffer.readByte();
+  }
+
+  @Override
+  public void readBytes(byte[] dst) {
+    buffer.readBytes(dst);
+  }
+
+  @Override
+  public void readBytes(byte[] dst, int dstIndex, int length) {
+    buffer.readBytes(dst, dstIndex, length);
+  }
+
+  @Override
+  public void readBytes(ByteBuffer dst) {
+    buffer.readBytes(dst);
+  }
+
+  @Override
+  public void readBytes(ChannelBuffer dst) {
+    readBytes(dst, dst.writableBytes());
+  }
+
+  @Override
+  public void readBytes(ChannelBuffer dst, int length) {
+    if (length > dst.writableBytes()) {
+      throw new IndexOutOfBoundsException();
+    }
+    readBytes(dst, dst.writerIndex(), length);
+    dst.writerIndex(dst.writerIndex() + length);
+  }
+
+  @Override
+  public void readBytes(ChannelBuffer dst, int dstIndex, int length) {
+    if (length > buffer.readableBytes()) {
+      throw new IndexOutOfBoundsException();
+    }
+    getBytes(buffer.readerIndex(), dst, dstIndex, length);
+    buffer.skipBytes(length);
+  }
+
+  @Override
+  public ChannelBuffer readBytes(int length) {
+    if (length == 0) {
+      return ChannelBuffers.EMPTY_BUFFER;
+    }
+    ChannelBuffer copy = copy(buffer.readerIndex(), length);
+    buffer.skipBytes(length);
+    return copy;
+  }
+
+  @Override
+  public void resetReaderIndex() {
+    buffer.resetReaderIndex();
+  }
+
+  @Override
+  public void resetWriterIndex() {
+    buffer.resetWriterIndex();
+  }
+
+  @Override
+  public int readerIndex() {
+    return buffer.readerIndex();
+  }
+
+  @Override
+  public void readerIndex(int readerIndex) {
+    buffer.readerIndex(readerIndex);
+  }
+
+  @Override
+  public void readBytes(OutputStream dst, int length) throws IOException {
+    buffer.readBytes(dst, length);
+  }
+
+  @Override
+  public void setByte(int index, int value) {
+    buffer.setByte(index, value);
+  }
+
+  @Override
+  public void setBytes(int index, byte[] src) {
+    buffer.setBytes(index, src);
+  }
+
+  @Override
+  public void setBytes(int index, byte[] src, int srcIndex, int length) {
+    buffer.setBytes(index, src, srcIndex, length);
+  }
+
+  @Override
+  public void setBytes(int index, ByteBuffer src) {
+    buffer.setBytes(index, src);
+  }
+
+  @Override
+  public void setBytes(int index, ChannelBuffer src) {
+    setBytes(index, src, src.readableBytes());
+  }
+
+  @Override
+  public void setBytes(int index, ChannelBuffer src, int length) {
+    if (length > src.readableBytes()) {
+      throw new IndexOutOfBoundsException();
+    }
+    setBytes(index, src, src.readerIndex(), length);
+    src.readerIndex(src.readerIndex() + length);
+  }
+
+  @Override
+  public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
+    if (src instanceof ByteBufChannelBuffer) {
+      buffer.setBytes(index, ((ByteBufChannelBuffer) src).buffer, srcIndex, length);
+    } else {
+      buffer.setBytes(index, src.toByteBuffer(srcIndex, length));
+    }
+  }
+
+  @Override
+  public int setBytes(int index, InputStream src, int length) throws IOException {
+    return buffer.setBytes(index, src, length);
+  }
+
+  @Override
+  public void setIndex(int readerIndex, int writerIndex) {
+    buffer.setIndex(readerIndex, writerIndex);
+  }
+
+  @Override
+  public void skipBytes(int length) {
+    buffer.skipBytes(length);
+  }
+
+  @Override
+  public ByteBuffer toByteBuffer() {
+    return buffer.nioBuffer();
+  }
+
+  @Override
+  public ByteBuffer toByteBuffer(int index, int length) {
+    return buffer.nioBuffer(index, length);
+  }
+
+  @Override
+  public boolean writable() {
+    return buffer.isWritable();
+  }
+
+  @Override
+  public int writableBytes() {
+    return buffer.writableBytes();
+  }
+
+  @Override
+  public void writeByte(int value) {
+    buffer.writeByte(value);
+  }
+
+  @Override
+  public void writeBytes(byte[] src) {
+    buffer.writeBytes(src);
+  }
+
+  @Override
+  public void writeBytes(byte[] src, int index, int length) {
+    buffer.writeBytes(src, index, length);
+  }
+
+  @Override
+  public void writeBytes(ByteBuffer src) {
+    buffer.writeBytes(src);
+  }
+
+  @Override
+  public void writeBytes(ChannelBuffer src) {
+    writeBytes(src, src.readableBytes());
+  }
+
+  @Override
+  public void writeBytes(ChannelBuffer src, int length) {
+    if (length > src.readableBytes()) {
+      throw new IndexOutOfBoundsException();
+    }
+    writeBytes(src, src.readerIndex(), length);
+    src.readerIndex(src.readerIndex() + length);
+  }
+
+  @Override
+  public void writeBytes(ChannelBuffer src, int srcIndex, int length) {
+    if (src instanceof ByteBufChannelBuffer) {
+      buffer.writeBytes(((ByteBufChannelBuffer) src).buffer, srcIndex, length);
+    } else {
+      buffer.writeBytes(src.toByteBuffer(srcIndex, length));
+    }
+  }
+
+  @Override
+  public int writeBytes(InputStream src, int length) throws IOException {
+    return buffer.writeBytes(src, length);
+  }
+
+  @Override
+  public int writerIndex() {
+    return buffer.writerIndex();
+  }
+
+  @Override
+  public void writerIndex(int writerIndex) {
+    // The codecs skip the header and write it last, possibly past the capacity
+    if (writerIndex > buffer.capacity()) {
+      buffer.ensureWritable(writerIndex - buffer.writerIndex());
+    }
+    buffer.writerIndex(writerIndex);
+  }
+
+  @Override
+  public byte[] array() {
+    return buffer.array();
+  }
+
+  @Override
+  public boolean hasArray() {
+    return buffer.hasArray();
+  }
+
+  @Override
+  public int arrayOffset() {
+    return buffer.arrayOffset();
+  }
+
+  @Override
+  public int compareTo(ChannelBuffer that) {
+    return ChannelBuffers.compare(this, that);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ChannelBuffer && ChannelBuffers.equals(this, (ChannelBuffer) o);
+  }
+
+  @Override
+  public int hashCode() {
+    return buffer.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "ByteBufChannelBuffer(" + buffer + ")";
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.transport;
+
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBufferFactory;
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Creates unpooled {@link ByteBufChannelBuffer}s, for buffers handed out to code that does not
+ * release them.
+ */
+public class ByteBufChannelBufferFactory implements ChannelBufferFactory {
+
+  private static final ByteBufChannelBufferFactory INSTANCE = new ByteBufChannelBufferFactory();
+
+  public static ChannelBufferFactory getInstance() {
+    return INSTANCE;
+  }
+
+  @Override
+  public ChannelBuffer getBuffer(int capacity) {
+    return new ByteBufChannelBuffer(Unpooled.buffer(capacity));
+  }
+
+  @Override
+  public ChannelBuffer getBuffer(byte[] array, int offset, int length) {
+    return new ByteBufChannelBuffer(Unpooled.wrappedBuffer(array, offset, length));
+  }
+
+  @Override
+  public ChannelBuffer getBuffer(ByteBuffer nioBuffer) {
+    return new ByteBufChannelBuffer(Unpooled.wrappedBuffer(nioBuffer));
+  }
+}
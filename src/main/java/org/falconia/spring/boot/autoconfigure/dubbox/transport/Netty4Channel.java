@@ -0,0 +1,173 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.transport;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.transport.AbstractChannel;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dubbo {@link com.alibaba.dubbo.remoting.Channel} over a Netty 4 {@link Channel}.
+ */
+final class Netty4Channel extends AbstractChannel {
+
+  private static Logger logger = LoggerFactory.getLogger(Netty4Channel.class);
+
+  private static final ConcurrentMap<Channel, Netty4Channel> channelMap = new ConcurrentHashMap<Channel, Netty4Channel>();
+
+  private final Channel channel;
+
+  private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+  private Netty4Channel(Channel channel, URL url, ChannelHandler handler) {
+    super(url, handler);
+    if (channel == null) {
+      throw new IllegalArgumentException("netty channel == null;");
+    }
+    this.channel = channel;
+  }
+
+  static Netty4Channel getOrAddChannel(Channel ch, URL url, ChannelHandler handler) {
+    if (ch == null) {
+      return null;
+    }
+    Netty4Channel ret = channelMap.get(ch);
+    if (ret == null) {
+      Netty4Channel nc = new Netty4Channel(ch, url, handler);
+      if (ch.isActive()) {
+        ret = channelMap.putIfAbsent(ch, nc);
+      }
+      if (ret == null) {
+        ret = nc;
+      }
+    }
+    return ret;
+  }
+
+  static void removeChannelIfDisconnected(Channel ch) {
+    if (ch != null && !ch.isActive()) {
+      channelMap.remove(ch);
+    }
+  }
+
+  @Override
+  public InetSocketAddress getLocalAddress() {
+    return (InetSocketAddress) channel.localAddress();
+  }
+
+  @Override
+  public InetSocketAddress getRemoteAddress() {
+    return (InetSocketAddress) channel.remoteAddress();
+  }
+
+  @Override
+  public boolean isConnected() {
+    return channel.isActive();
+  }
+
+  @Override
+  public void send(Object message, boolean sent) throws RemotingException {
+    super.send(message, sent);
+
+    boolean success = true;
+    int timeout = 0;
+    try {
+      ChannelFuture future = channel.writeAndFlush(message);
+      if (sent) {
+        timeout = getUrl().getPositiveParameter("timeout", 1000);
+        success = future.await(timeout);
+      }
+      Throwable cause = future.cause();
+      if (cause != null) {
+        throw cause;
+      }
+    } catch (Throwable e) {
+      throw new RemotingException(this, "Failed to send message " + message + " to " + getRemoteAddress()
+        + ", cause: " + e.getMessage(), e);
+    }
+    if (!success) {
+      throw new RemotingException(this, "Failed to send message " + message + " to " + getRemoteAddress()
+        + " in timeout(" + timeout + "ms) limit");
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      super.close();
+    } catch (Exception e) {
+      logger.warn(e.getMessage(), e);
+    }
+    try {
+      removeChannelIfDisconnected(channel);
+    } catch (Exception e) {
+      logger.warn(e.getMessage(), e);
+    }
+    attributes.clear();
+    logger.info("Dubbox: close netty channel {}", channel);
+    channel.close();
+  }
+
+  @Override
+  public boolean hasAttribute(String key) {
+    return attributes.containsKey(key);
+  }
+
+  @Override
+  public Object getAttribute(String key) {
+    return attributes.get(key);
+  }
+
+  @Override
+  public void setAttribute(String key, Object value) {
+    if (value == null) {
+      attributes.remove(key);
+    } else {
+      attributes.put(key, value);
+    }
+  }
+
+  @Override
+  public void removeAttribute(String key) {
+    attributes.remove(key);
+  }
+
+  @Override
+  public int hashCode() {
+    return channel.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return this == obj || obj instanceof Netty4Channel && channel.equals(((Netty4Channel) obj).channel);
+  }
+
+  @Override
+  public String toString() {
+    return "Netty4Channel [channel=" + channel + "]";
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.transport;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.Version;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.transport.AbstractClient;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty 4 client of {@link Netty4Transporter}. All open clients share one event loop group, sized by
+ * the {@code iothreads} parameter of the client creating it and shut down when the last one closes.
+ */
+class Netty4Client extends AbstractClient {
+
+  private static Logger logger = LoggerFactory.getLogger(Netty4Client.class);
+
+  private static EventLoopGroup workerGroup;
+
+  private static int clients;
+
+  private EventLoopGroup group;
+
+  private Bootstrap bootstrap;
+
+  private volatile io.netty.channel.Channel channel;
+
+  Netty4Client(URL url, ChannelHandler handler) throws RemotingException {
+    super(url, wrapChannelHandler(url, handler));
+  }
+
+  @Override
+  protected void doOpen() throws Throwable {
+    final Netty4Handler nettyHandler = new Netty4Handler(getUrl(), this);
+    group = acquireGroup(getUrl());
+    bootstrap = new Bootstrap()
+      .group(group)
+      .channel(NioSocketChannel.class)
+      .option(ChannelOption.SO_KEEPALIVE, Boolean.TRUE)
+      .option(ChannelOption.TCP_NODELAY, Boolean.TRUE)
+      .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, getConnectTimeout())
+      .option(ChannelOption.ALLOCATOR, Netty4Transporter.getAllocator(getUrl()))
+      .handler(new ChannelInitializer<SocketChannel>() {
+        @Override
+        protected void initChannel(SocketChannel ch) {
+          Netty4CodecAdapter adapter = new Netty4CodecAdapter(getCodec(), getUrl(), Netty4Client.this);
+          ch.pipeline()
+            .addLast("decoder", adapter.getDecoder())
+            .addLast("encoder", adapter.getEncoder())
+            .addLast("handler", nettyHandler);
+        }
+      });
+  }
+
+  @Override
+  protected void doConnect() throws Throwable {
+    long start = System.currentTimeMillis();
+    ChannelFuture future = bootstrap.connect(getConnectAddress());
+    try {
+      boolean ret = future.awaitUninterruptibly(getConnectTimeout(), TimeUnit.MILLISECONDS);
+      if (ret && future.isSuccess()) {
+        io.netty.channel.Channel newChannel = future.channel();
+        io.netty.channel.Channel oldChannel = channel;
+        if (oldChannel != null) {
+          logger.info("Dubbox: close old netty channel {} on create new netty channel {}", oldChannel, newChannel);
+          try {
+            oldChannel.close();
+          } finally {
+            Netty4Channel.removeChannelIfDisconnected(oldChannel);
+          }
+        }
+        if (isClosed()) {
+          logger.info("Dubbox: close new netty channel {}, because the client closed.", newChannel);
+          try {
+            newChannel.close();
+          } finally {
+            channel = null;
+            Netty4Channel.removeChannelIfDisconnected(newChannel);
+          }
+        } else {
+          channel = newChannel;
+        }
+      } else if (future.cause() != null) {
+        throw new RemotingException(this, "client(url: " + getUrl() + ") failed to connect to server "
+          + getRemoteAddress() + ", error message is:" + future.cause().getMessage(), future.cause());
+      } else {
+        throw new RemotingException(this, "client(url: " + getUrl() + ") failed to connect to server "
+          + getRemoteAddress() + " client-side timeout " + getConnectTimeout() + "ms (elapsed: "
+          + (System.currentTimeMillis() - start) + "ms) from netty client " + NetUtils.getLocalHost()
+          + " using dubbo version " + Version.getVersion());
+      }
+    } finally {
+      if (!isConnected()) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  @Override
+  protected void doDisConnect() throws Throwable {
+    Netty4Channel.removeChannelIfDisconnected(channel);
+  }
+
+  @Override
+  protected void doClose() throws Throwable {
+    // the constructor closes the client too when opening fails, close() may be called again
+    EventLoopGroup g;
+    synchronized (this) {
+      g = group;
+      group = null;
+    }
+    if (g != null) {
+      releaseGroup();
+    }
+  }
+
+  @Override
+  protected Channel getChannel() {
+    io.netty.channel.Channel c = channel;
+    if (c == null || !c.isActive()) {
+      return null;
+    }
+    return Netty4Channel.getOrAddChannel(c, getUrl(), this);
+  }
+
+  private static synchronized EventLoopGroup acquireGroup(URL url) {
+    if (workerGroup == null) {
+      workerGroup = new NioEventLoopGroup(url.getPositiveParameter(Constants.IO_THREADS_KEY, Constants.DEFAULT_IO_THREADS),
+        new NamedThreadFactory("Netty4ClientWorker", true));
+    }
+    clients++;
+    return workerGroup;
+  }
+
+  private static synchronized void releaseGroup() {
+    if (--clients == 0) {
+      workerGroup.shutdownGracefully();
+      workerGroup = null;
+    }
+  }
+}
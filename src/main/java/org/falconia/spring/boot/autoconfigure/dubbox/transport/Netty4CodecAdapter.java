@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.transport;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Codec2;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs the Dubbo {@link Codec2} directly on the channel's {@link ByteBuf}s: messages are encoded
+ * into the outbound buffer and decoded from the cumulated inbound buffer, without intermediate
+ * copies.
+ */
+final class Netty4CodecAdapter {
+
+  private final Codec2 codec;
+
+  private final URL url;
+
+  private final ChannelHandler handler;
+
+  private final int bufferSize;
+
+  Netty4CodecAdapter(Codec2 codec, URL url, ChannelHandler handler) {
+    this.codec = codec;
+    this.url = url;
+    this.handler = handler;
+    this.bufferSize = url.getPositiveParameter(Netty4Transporter.ENCODE_BUFFER_KEY, Netty4Transporter.DEFAULT_ENCODE_BUFFER);
+  }
+
+  io.netty.channel.ChannelHandler getEncoder() {
+    return new InternalEncoder();
+  }
+
+  io.netty.channel.ChannelHandler getDecoder() {
+    return new InternalDecoder();
+  }
+
+  private class InternalEncoder extends MessageToByteEncoder<Object> {
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, Object msg, boolean preferDirect) {
+      return preferDirect ? ctx.alloc().ioBuffer(bufferSize) : ctx.alloc().heapBuffer(bufferSize);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Object msg, ByteBuf out) throws Exception {
+      Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+      try {
+        codec.encode(channel, new ByteBufChannelBuffer(out), msg);
+      } finally {
+        Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+      }
+    }
+  }
+
+  private class InternalDecoder extends ByteToMessageDecoder {
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+      ByteBufChannelBuffer message = new ByteBufChannelBuffer(in);
+      Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+      try {
+        do {
+          int saveReaderIndex = message.readerIndex();
+          Object msg = codec.decode(channel, message);
+          if (msg == Codec2.DecodeResult.NEED_MORE_INPUT) {
+            message.readerIndex(saveReaderIndex);
+            break;
+          }
+          if (saveReaderIndex == message.readerIndex()) {
+            throw new IOException("Decode without read data.");
+          }
+          if (msg != null) {
+            out.add(msg);
+          }
+        } while (message.readable());
+      } finally {
+        Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.transport;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler.Sharable;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Forwards the Netty 4 channel events to the Dubbo {@link ChannelHandler}.
+ */
+@Sharable
+class Netty4Handler extends ChannelDuplexHandler {
+
+  private final Map<String, Channel> channels = new ConcurrentHashMap<String, Channel>();
+
+  private final URL url;
+
+  private final ChannelHandler handler;
+
+  Netty4Handler(URL url, ChannelHandler handler) {
+    if (url == null) {
+      throw new IllegalArgumentException("url == null");
+    }
+    if (handler == null) {
+      throw new IllegalArgumentException("handler == null");
+    }
+    this.url = url;
+    this.handler = handler;
+  }
+
+  Map<String, Channel> getChannels() {
+    return channels;
+  }
+
+  @Override
+  public void channelActive(ChannelHandlerContext ctx) throws Exception {
+    Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+    try {
+      if (channel != null) {
+        channels.put(NetUtils.toAddressString((InetSocketAddress) ctx.channel().remoteAddress()), channel);
+      }
+      handler.connected(channel);
+    } finally {
+      Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+    }
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+    try {
+      channels.remove(NetUtils.toAddressString((InetSocketAddress) ctx.channel().remoteAddress()));
+      handler.disconnected(channel);
+    } finally {
+      Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+    }
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+    try {
+      handler.received(channel, msg);
+    } finally {
+      Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+    }
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+    super.write(ctx, msg, promise);
+    Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+    try {
+      handler.sent(channel, msg);
+    } finally {
+      Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+    }
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+    Netty4Channel channel = Netty4Channel.getOrAddChannel(ctx.channel(), url, handler);
+    try {
+      handler.caught(channel, cause);
+    } finally {
+      Netty4Channel.removeChannelIfDisconnected(ctx.channel());
+    }
+  }
+}
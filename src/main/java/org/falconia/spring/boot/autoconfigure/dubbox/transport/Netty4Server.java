@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.transport;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.ExecutorUtil;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.transport.AbstractServer;
+import com.alibaba.dubbo.remoting.transport.dispatcher.ChannelHandlers;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Netty 4 server of {@link Netty4Transporter}.
+ */
+class Netty4Server extends AbstractServer {
+
+  private static Logger logger = LoggerFactory.getLogger(Netty4Server.class);
+
+  private Map<String, Channel> channels;
+
+  private EventLoopGroup bossGroup;
+
+  private EventLoopGroup workerGroup;
+
+  private io.netty.channel.Channel channel;
+
+  Netty4Server(URL url, ChannelHandler handler) throws RemotingException {
+    super(url, ChannelHandlers.wrap(handler, ExecutorUtil.setThreadName(url, SERVER_THREAD_POOL_NAME)));
+  }
+
+  @Override
+  protected void doOpen() throws Throwable {
+    bossGroup = new NioEventLoopGroup(1, new NamedThreadFactory("Netty4ServerBoss", true));
+    workerGroup = new NioEventLoopGroup(getUrl().getPositiveParameter(Constants.IO_THREADS_KEY, Constants.DEFAULT_IO_THREADS),
+      new NamedThreadFactory("Netty4ServerWorker", true));
+    ByteBufAllocator allocator = Netty4Transporter.getAllocator(getUrl());
+
+    final Netty4Handler nettyHandler = new Netty4Handler(getUrl(), this);
+    channels = nettyHandler.getChannels();
+
+    ServerBootstrap bootstrap = new ServerBootstrap()
+      .group(bossGroup, workerGroup)
+      .channel(NioServerSocketChannel.class)
+      .option(ChannelOption.ALLOCATOR, allocator)
+      .childOption(ChannelOption.TCP_NODELAY, Boolean.TRUE)
+      .childOption(ChannelOption.ALLOCATOR, allocator)
+      .childHandler(new ChannelInitializer<SocketChannel>() {
+        @Override
+        protected void initChannel(SocketChannel ch) {
+          Netty4CodecAdapter adapter = new Netty4CodecAdapter(getCodec(), getUrl(), Netty4Server.this);
+          ch.pipeline()
+            .addLast("decoder", adapter.getDecoder())
+            .addLast("encoder", adapter.getEncoder())
+            .addLast("handler", nettyHandler);
+        }
+      });
+    ChannelFuture future = bootstrap.bind(getBindAddress());
+    future.syncUninterruptibly();
+    channel = future.channel();
+  }
+
+  @Override
+  protected void doClose() throws Throwable {
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (Throwable e) {
+      logger.warn(e.getMessage(), e);
+    }
+    try {
+      for (Channel channel : getChannels()) {
+        try {
+          channel.close();
+        } catch (Throwable e) {
+          logger.warn(e.getMessage(), e);
+        }
+      }
+    } catch (Throwable e) {
+      logger.warn(e.getMessage(), e);
+    }
+    try {
+      if (bossGroup != null) {
+        bossGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
+      }
+    } catch (Throwable e) {
+      logger.warn(e.getMessage(), e);
+    }
+    if (channels != null) {
+      channels.clear();
+    }
+  }
+
+  public Collection<Channel> getChannels() {
+    Collection<Channel> chs = new HashSet<Channel>();
+    for (Channel channel : channels.values()) {
+      if (channel.isConnected()) {
+        chs.add(channel);
+      } else {
+        channels.remove(NetUtils.toAddressString(channel.getRemoteAddress()));
+      }
+    }
+    return chs;
+  }
+
+  public Channel getChannel(InetSocketAddress remoteAddress) {
+    return channels.get(NetUtils.toAddressString(remoteAddress));
+  }
+
+  public boolean isBound() {
+    return channel != null && channel.isActive();
+  }
+}
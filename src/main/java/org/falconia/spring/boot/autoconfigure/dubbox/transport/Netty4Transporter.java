@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.transport;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Client;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.Server;
+import com.alibaba.dubbo.remoting.Transporter;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * Netty 4 {@link Transporter} whose buffers come from a configurable {@link ByteBufAllocator}.
+ * Pooled direct buffers are used by default; {@code allocator=unpooled} and
+ * {@code direct.buffer=false} switch to unpooled or heap buffers.
+ */
+public class Netty4Transporter implements Transporter {
+
+  public static final String NAME = "netty4pooled";
+
+  public static final String ALLOCATOR_KEY = "allocator";
+
+  public static final String POOLED_ALLOCATOR = "pooled";
+
+  public static final String UNPOOLED_ALLOCATOR = "unpooled";
+
+  public static final String DIRECT_BUFFER_KEY = "direct.buffer";
+
+  /**
+   * Initial capacity of the buffer a message is encoded into, it grows on demand.
+   */
+  public static final String ENCODE_BUFFER_KEY = Constants.BUFFER_KEY;
+
+  public static final int DEFAULT_ENCODE_BUFFER = 1024;
+
+  private static final ByteBufAllocator POOLED_HEAP = new PooledByteBufAllocator(false);
+
+  private static final ByteBufAllocator UNPOOLED_HEAP = new UnpooledByteBufAllocator(false);
+
+  public Server bind(URL url, ChannelHandler listener) throws RemotingException {
+    return new Netty4Server(url, listener);
+  }
+
+  public Client connect(URL url, ChannelHandler listener) throws RemotingException {
+    return new Netty4Client(url, listener);
+  }
+
+  static ByteBufAllocator getAllocator(URL url) {
+    String allocator = url.getParameter(ALLOCATOR_KEY, POOLED_ALLOCATOR);
+    boolean direct = url.getParameter(DIRECT_BUFFER_KEY, true);
+    if (POOLED_ALLOCATOR.equals(allocator)) {
+      return direct ? PooledByteBufAllocator.DEFAULT : POOLED_HEAP;
+    }
+    if (UNPOOLED_ALLOCATOR.equals(allocator)) {
+      return direct ? UnpooledByteBufAllocator.DEFAULT : UNPOOLED_HEAP;
+    }
+    throw new IllegalStateException("Unsupported allocator " + allocator + ", expected "
+      + POOLED_ALLOCATOR + " or " + UNPOOLED_ALLOCATOR);
+  }
+}
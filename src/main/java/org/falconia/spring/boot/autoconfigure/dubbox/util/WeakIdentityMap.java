@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent map comparing its keys by identity and holding them weakly, so that state kept per
+ * invoker or per URL goes away with it. Entries of collected keys are purged on the next insert.
+ */
+public class WeakIdentityMap<K, V> {
+
+  private final ConcurrentMap<Object, V> map = new ConcurrentHashMap<Object, V>();
+
+  private final ReferenceQueue<K> queue = new ReferenceQueue<K>();
+
+  public V get(K key) {
+    return map.get(new Lookup(key));
+  }
+
+  /**
+   * @return the value already mapped to the key, or {@code null} if the given one was added
+   */
+  public V putIfAbsent(K key, V value) {
+    purge();
+    return map.putIfAbsent(new WeakKey<K>(key, queue), value);
+  }
+
+  public V remove(K key) {
+    return map.remove(new Lookup(key));
+  }
+
+  /**
+   * Number of entries, including those of keys collected since the last insert.
+   */
+  public int size() {
+    return map.size();
+  }
+
+  private void purge() {
+    Reference<? extends K> reference;
+    while ((reference = queue.poll()) != null) {
+      map.remove(reference);
+    }
+  }
+
+  private static final class WeakKey<K> extends WeakReference<K> {
+
+    private final int hash;
+
+    WeakKey(K key, ReferenceQueue<K> queue) {
+      super(key, queue);
+      this.hash = System.identityHashCode(key);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      Object key = get();
+      if (key == null) {
+        return false;
+      }
+      return o instanceof Lookup ? ((Lookup) o).key == key : o instanceof WeakKey && ((WeakKey<?>) o).get() == key;
+    }
+  }
+
+  /**
+   * Key of a lookup, holding the key strongly while it runs.
+   */
+  private static final class Lookup {
+
+    private final Object key;
+
+    Lookup(Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(key);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof WeakKey && ((WeakKey<?>) o).get() == key;
+    }
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.falconia.spring.boot.autoconfigure.dubbox.codec;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.Channel;
+import com.alibaba.dubbo.remoting.ChannelHandler;
+import com.alibaba.dubbo.remoting.Codec2.DecodeResult;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.support.MultiMessage;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.protocol.dubbo.DubboCountCodec;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips of {@link CompressionCodecWrapper} frames through the dubbo codec.
+ */
+public class CompressionCodecWrapperTests {
+
+  private final Channel channel = new TestChannel(
+    URL.valueOf("dubbo://127.0.0.1:20880/demo.Echo?compression=lz4&compression.threshold=1024"));
+
+  private final CompressionCodecWrapper codec = new CompressionCodecWrapper(new DubboCountCodec());
+
+  @Test
+  public void decodesPlainAndCompressedFramesInOrder() throws IOException {
+    String[] payloads = { "first", "second", repeat("third", 1000), "fourth", repeat("fifth", 1000) };
+    ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(1024);
+    List<Integer> starts = new ArrayList<Integer>();
+    for (String payload : payloads) {
+      starts.add(buffer.writerIndex());
+      codec.encode(channel, buffer, request(payload));
+    }
+    assertFalse(isCompressed(buffer, starts.get(0)));
+    assertFalse(isCompressed(buffer, starts.get(1)));
+    assertTrue(isCompressed(buffer, starts.get(2)));
+    assertFalse(isCompressed(buffer, starts.get(3)));
+    assertTrue(isCompressed(buffer, starts.get(4)));
+
+    List<Object> messages = new ArrayList<Object>();
+    // The two plain frames are decoded together, stopping before the compressed one
+    decode(buffer, messages);
+    assertEquals(2, messages.size());
+    assertEquals(starts.get(2).intValue(), buffer.readerIndex());
+    while (buffer.readable()) {
+      decode(buffer, messages);
+    }
+    assertEquals(payloads.length, messages.size());
+    for (int i = 0; i < payloads.length; i++) {
+      assertEquals(payloads[i], payload(messages.get(i)));
+    }
+  }
+
+  @Test
+  public void waitsForTheRestOfATruncatedCompressedFrame() throws IOException {
+    ChannelBuffer frame = ChannelBuffers.dynamicBuffer(1024);
+    codec.encode(channel, frame, request(repeat("payload", 1000)));
+    assertTrue(isCompressed(frame, 0));
+    byte[] bytes = new byte[frame.readableBytes()];
+    frame.readBytes(bytes);
+
+    for (int length : new int[] { 1, CompressionCodecWrapper.HEADER_LENGTH - 1, bytes.length - 1 }) {
+      ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(bytes, 0, length);
+      assertSame(DecodeResult.NEED_MORE_INPUT, codec.decode(channel, buffer));
+      assertEquals(0, buffer.readerIndex());
+    }
+    ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(bytes);
+    assertEquals(repeat("payload", 1000), payload(codec.decode(channel, buffer)));
+    assertFalse(buffer.readable());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsACompressedLengthOverTheBound() throws IOException {
+    int length = 4096;
+    byte[] header = new byte[CompressionCodecWrapper.HEADER_LENGTH];
+    header[0] = CompressionCodecWrapper.MAGIC_HIGH;
+    header[1] = CompressionCodecWrapper.MAGIC_LOW;
+    header[2] = Compression.LZ4.getId();
+    writeInt(header, 4, length);
+    writeInt(header, 8, Compression.LZ4.maxCompressedLength(length) + 1);
+    codec.decode(channel, ChannelBuffers.wrappedBuffer(header));
+  }
+
+  private void decode(ChannelBuffer buffer, List<Object> messages) throws IOException {
+    Object msg = codec.decode(channel, buffer);
+    if (msg instanceof MultiMessage) {
+      for (Object message : (MultiMessage) msg) {
+        messages.add(message);
+      }
+    } else {
+      messages.add(msg);
+    }
+  }
+
+  private static Request request(String payload) {
+    RpcInvocation invocation = new RpcInvocation("echo", new Class<?>[] { String.class }, new Object[] { payload });
+    invocation.setAttachment(Constants.PATH_KEY, "demo.Echo");
+    invocation.setAttachment(Constants.VERSION_KEY, "0.0.0");
+    Request request = new Request();
+    request.setVersion("2.0.0");
+    request.setTwoWay(true);
+    request.setData(invocation);
+    return request;
+  }
+
+  private static Object payload(Object msg) {
+    return ((Invocation) ((Request) msg).getData()).getArguments()[0];
+  }
+
+  private static boolean isCompressed(ChannelBuffer buffer, int index) {
+    return buffer.getByte(index) == CompressionCodecWrapper.MAGIC_HIGH
+      && buffer.getByte(index + 1) == CompressionCodecWrapper.MAGIC_LOW;
+  }
+
+  private static String repeat(String s, int count) {
+    StringBuilder builder = new StringBuilder(s.length() * count);
+    for (int i = 0; i < count; i++) {
+      builder.append(s);
+    }
+    return builder.toString();
+  }
+
+  private static void writeInt(byte[] bytes, int index, int value) {
+    bytes[index] = (byte) (value >>> 24);
+    bytes[index + 1] = (byte) (value >>> 16);
+    bytes[index + 2] = (byte) (value >>> 8);
+    bytes[index + 3] = (byte) value;
+  }
+
+  private static class TestChannel implements Channel {
+
+    private final URL url;
+
+    private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+
+    TestChannel(URL url) {
+      this.url = url;
+    }
+
+    @Override
+    public URL getUrl() {
+      return url;
+    }
+
+    @Override
+    public ChannelHandler getChannelHandler() {
+      return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+      return new InetSocketAddress("127.0.0.1", url.getPort());
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+      return new InetSocketAddress("127.0.0.1", 54321);
+    }
+
+    @Override
+    public boolean isConnected() {
+      return true;
+    }
+
+    @Override
+    public void send(Object message) {
+    }
+
+    @Override
+    public void send(Object message, boolean sent) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void close(int timeout) {
+    }
+
+    @Override
+    public boolean isClosed() {
+      return false;
+    }
+
+    @Override
+    public boolean hasAttribute(String key) {
+      return attributes.containsKey(key);
+    }
+
+    @Override
+    public Object getAttribute(String key) {
+      return attributes.get(key);
+    }
+
+    @Override
+    public void setAttribute(String key, Object value) {
+      attributes.put(key, value);
+    }
+
+    @Override
+    public void removeAttribute(String key) {
+      attributes.remove(key);
+    }
+  }
+}